@@ -0,0 +1,215 @@
+package com.example.productservice.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * Small in-process LRU cache with size and TTL based eviction.
+ *
+ * Entries are evicted when the total weight exceeds the configured maximum
+ * (least recently used first) or when they are older than the time-to-live.
+ * Hit, miss and eviction counters are kept for the admin endpoints.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class BoundedCache<K, V> {
+
+    private final String name;
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final ToIntFunction<V> weigher;
+
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentWeight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a cache where every entry has a weight of 1
+     *
+     * @param name Cache name used in statistics
+     * @param maxEntries Maximum number of entries
+     * @param ttl Time-to-live of an entry
+     * @param unit Unit of the time-to-live
+     */
+    public BoundedCache(String name, long maxEntries, long ttl, TimeUnit unit) {
+        this(name, maxEntries, ttl, unit, value -> 1);
+    }
+
+    /**
+     * Creates a cache bounded by the total weight of its entries
+     *
+     * @param name Cache name used in statistics
+     * @param maxWeight Maximum total weight of all entries
+     * @param ttl Time-to-live of an entry
+     * @param unit Unit of the time-to-live
+     * @param weigher Function computing the weight of a value
+     */
+    public BoundedCache(String name, long maxWeight, long ttl, TimeUnit unit, ToIntFunction<V> weigher) {
+        this.name = name;
+        this.maxWeight = maxWeight;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.weigher = weigher;
+    }
+
+    /**
+     * Returns the cached value or null if it is absent or expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        if (isExpired(entry, System.nanoTime())) {
+            removeEntry(key, entry);
+            evictions.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * Returns the cached value or null if it is absent or expired, without counting a hit or a miss
+     * For lookups that only probe for a related entry, so they do not skew the hit rate of the cache
+     */
+    public synchronized V getIfPresentQuietly(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (isExpired(entry, System.nanoTime())) {
+            removeEntry(key, entry);
+            evictions.incrementAndGet();
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Stores a value, evicting expired and least recently used entries as needed
+     */
+    public synchronized void put(K key, V value) {
+        if (!isEnabled() || value == null) {
+            return;
+        }
+
+        int weight = Math.max(1, weigher.applyAsInt(value));
+        if (weight > maxWeight) {
+            return;
+        }
+
+        Entry<V> previous = entries.put(key, new Entry<>(value, weight, System.nanoTime()));
+        if (previous != null) {
+            currentWeight -= previous.weight;
+        }
+        currentWeight += weight;
+
+        evictIfNeeded();
+    }
+
+    /**
+     * Removes a single entry
+     */
+    public synchronized void invalidate(K key) {
+        Entry<V> entry = entries.remove(key);
+        if (entry != null) {
+            currentWeight -= entry.weight;
+        }
+    }
+
+    /**
+     * Removes all entries
+     *
+     * @return Number of entries removed
+     */
+    public synchronized int invalidateAll() {
+        int size = entries.size();
+        entries.clear();
+        currentWeight = 0;
+        return size;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public boolean isEnabled() {
+        return maxWeight > 0 && ttlNanos > 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long requests = hitCount + missCount;
+
+        stats.put("name", name);
+        stats.put("size", entries.size());
+        stats.put("weight", currentWeight);
+        stats.put("maxWeight", maxWeight);
+        stats.put("ttlSeconds", TimeUnit.NANOSECONDS.toSeconds(ttlNanos));
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.get());
+        stats.put("hitRate", requests > 0 ? (double) hitCount / requests : 0.0);
+        return stats;
+    }
+
+    private void evictIfNeeded() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+
+        // Iteration runs from least to most recently used
+        while (iterator.hasNext()) {
+            Map.Entry<K, Entry<V>> eldest = iterator.next();
+            boolean expired = isExpired(eldest.getValue(), now);
+            if (!expired && currentWeight <= maxWeight) {
+                break;
+            }
+            currentWeight -= eldest.getValue().weight;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private boolean isExpired(Entry<V> entry, long now) {
+        return now - entry.createdAt > ttlNanos;
+    }
+
+    private void removeEntry(K key, Entry<V> entry) {
+        entries.remove(key);
+        currentWeight -= entry.weight;
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final int weight;
+        private final long createdAt;
+
+        private Entry(V value, int weight, long createdAt) {
+            this.value = value;
+            this.weight = weight;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.productservice.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the in-process caches and request coalescers so they can be
+ * inspected and invalidated from the admin endpoints
+ */
+@Component
+public class SearchCacheManager {
+
+    private final Map<String, BoundedCache<?, ?>> caches = new ConcurrentHashMap<>();
+
+    private final Map<String, SingleFlight<?, ?>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a cache under its name
+     *
+     * @param cache The cache to register
+     * @return The same cache, for fluent field initialization
+     */
+    public <K, V> BoundedCache<K, V> register(BoundedCache<K, V> cache) {
+        caches.put(cache.getName(), cache);
+        return cache;
+    }
+
+    /**
+     * Registers a request coalescer so its statistics are reported
+     *
+     * @param flight The coalescer to register
+     * @return The same coalescer, for fluent field initialization
+     */
+    public <K, V> SingleFlight<K, V> register(SingleFlight<K, V> flight) {
+        flights.put(flight.getName(), flight);
+        return flight;
+    }
+
+    /**
+     * Invalidates a single cache by name
+     *
+     * @param name The cache name
+     * @return Number of entries removed, or -1 if no such cache exists
+     */
+    public int invalidate(String name) {
+        BoundedCache<?, ?> cache = caches.get(name);
+        return cache != null ? cache.invalidateAll() : -1;
+    }
+
+    /**
+     * Invalidates every registered cache
+     *
+     * @return Number of entries removed per cache
+     */
+    public Map<String, Integer> invalidateAll() {
+        Map<String, Integer> removed = new LinkedHashMap<>();
+        for (BoundedCache<?, ?> cache : caches.values()) {
+            removed.put(cache.getName(), cache.invalidateAll());
+        }
+        return removed;
+    }
+
+    /**
+     * Returns statistics for every registered request coalescer
+     */
+    public List<Map<String, Object>> getFlightStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (SingleFlight<?, ?> flight : flights.values()) {
+            stats.add(flight.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Returns statistics for every registered cache
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (BoundedCache<?, ?> cache : caches.values()) {
+            stats.add(cache.getStats());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.productservice.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces identical concurrent calls into a single execution.
+ *
+ * The first caller for a key runs the loader on its own thread. Callers that
+ * arrive while it is running wait on the same future, up to the configured
+ * timeout, and receive the same value or the same failure.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class SingleFlight<K, V> {
+
+    private final String name;
+    private final long timeoutMillis;
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    /**
+     * @param name Name used in statistics
+     * @param timeoutMillis Maximum time a waiting caller blocks on the leader
+     */
+    public SingleFlight(String name, long timeoutMillis) {
+        this.name = name;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Runs the loader, or joins an identical call that is already running
+     *
+     * @param key Key identifying identical calls
+     * @param loader The remote call to execute
+     * @return The loaded value
+     * @throws Exception The loader failure, or a TimeoutException for waiting callers
+     */
+    public V execute(K key, Callable<V> loader) throws Exception {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(existing);
+        }
+
+        executions.incrementAndGet();
+        try {
+            V value = loader.call();
+            future.complete(value);
+            return value;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } catch (Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns a snapshot of the coalescing statistics
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("inFlight", inFlight.size());
+        stats.put("executions", executions.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("timeouts", timeouts.get());
+        stats.put("timeoutMillis", timeoutMillis);
+        return stats;
+    }
+
+    private V await(CompletableFuture<V> future) throws Exception {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (java.util.concurrent.TimeoutException e) {
+            timeouts.incrementAndGet();
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.productservice.controller;
+
+import com.example.productservice.cache.SearchCacheManager;
+import com.example.productservice.service.ProductService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/products/admin/cache")
+@Tag(name = "Cache Administration", description = "Inspect and invalidate the in-process search caches")
+public class CacheAdminController {
+
+    @Autowired
+    private SearchCacheManager searchCacheManager;
+
+    @Autowired
+    private ProductService productService;
+
+    /**
+     * Returns hit/miss/eviction statistics for every cache
+     *
+     * @return ResponseEntity containing cache statistics
+     */
+    @Operation(summary = "Cache statistics", description = "Returns cache counters and in-flight request coalescing counters")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Statistics returned")
+    })
+    @GetMapping
+    public ResponseEntity<?> getCacheStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("caches", searchCacheManager.getStats());
+        response.put("coalescing", searchCacheManager.getFlightStats());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Invalidates every cache
+     *
+     * @return ResponseEntity with the number of entries removed per cache
+     */
+    @Operation(summary = "Invalidate all caches", description = "Removes every entry from every cache")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Caches invalidated")
+    })
+    @DeleteMapping
+    public ResponseEntity<?> invalidateAll() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "All caches invalidated");
+        response.put("removed", searchCacheManager.invalidateAll());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Invalidates a single cache by name
+     *
+     * @param name The cache name
+     * @return ResponseEntity with the number of entries removed
+     */
+    @Operation(summary = "Invalidate a cache", description = "Removes every entry from the named cache")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Cache invalidated"),
+        @ApiResponse(responseCode = "404", description = "Cache not found")
+    })
+    @DeleteMapping("/{name}")
+    public ResponseEntity<?> invalidate(
+            @Parameter(description = "The cache name", required = true)
+            @PathVariable String name) {
+        int removed = searchCacheManager.invalidate(name);
+        if (removed < 0) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Cache " + name + " invalidated");
+        response.put("removed", removed);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Invalidates the near-cache entries for a single product
+     *
+     * @param productId The product ID
+     * @return ResponseEntity confirming the invalidation
+     */
+    @Operation(summary = "Invalidate a product", description = "Removes a product from the product near-cache and the negative cache")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Product invalidated")
+    })
+    @DeleteMapping("/products/{productId}")
+    public ResponseEntity<?> invalidateProduct(
+            @Parameter(description = "The unique identifier of the product", required = true)
+            @PathVariable String productId) {
+        productService.invalidateProduct(productId);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Product " + productId + " invalidated");
+        return ResponseEntity.ok(response);
+    }
+}
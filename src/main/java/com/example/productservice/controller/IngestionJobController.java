@@ -0,0 +1,173 @@
+package com.example.productservice.controller;
+
+import com.example.productservice.model.IngestionJob;
+import com.example.productservice.service.FeedInput;
+import com.example.productservice.service.IngestionJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/api/products/ingest/jobs")
+@CrossOrigin(origins = "*")
+@Tag(name = "Ingestion Jobs", description = "Asynchronous CSV ingestion into Azure AI Search")
+public class IngestionJobController {
+
+    private static final String JOBS_PATH = "/api/products/ingest/jobs/";
+
+    @Autowired
+    private IngestionJobService ingestionJobService;
+
+    /**
+     * Submit a CSV feed as a multipart upload
+     * Uploads are capped by spring.servlet.multipart.max-file-size; larger feeds go through {@link #submitStream}
+     *
+     * @param file The CSV file to ingest, plain or gzip/zlib compressed
+     * @param fullFeed True when the file is the complete catalog
+     * @return 202 with the job ID
+     */
+    @Operation(summary = "Submit ingestion job (multipart)", description = "Spools the uploaded CSV file to disk and ingests it in the background; uploads are capped at spring.servlet.multipart.max-file-size, so stream larger feeds as a raw body")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Job accepted",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = IngestionJob.class))),
+        @ApiResponse(responseCode = "400", description = "Invalid file"),
+        @ApiResponse(responseCode = "413", description = "File larger than the multipart upload limit"),
+        @ApiResponse(responseCode = "503", description = "Search index not configured or job queue full")
+    })
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> submitMultipart(
+            @RequestParam("file") MultipartFile file,
+            @Parameter(description = "True when the file is the complete catalog; products missing from it are deleted")
+            @RequestParam(value = "fullFeed", defaultValue = "false") boolean fullFeed) {
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().body("File is empty");
+        }
+
+        String fileName = file.getOriginalFilename();
+        if (!FeedInput.isSupportedFileName(fileName)) {
+            return ResponseEntity.badRequest().body("File must be a CSV file, optionally gzip or zlib compressed");
+        }
+
+        try {
+            return submit(file.getInputStream(), fileName, fullFeed);
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error reading CSV file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Submit a CSV feed as the raw request body
+     * The body is streamed to disk, so it is not limited by request buffer sizes or the multipart upload limit
+     * A gzip or zlib compressed body is stored compressed and inflated while parsing
+     *
+     * @param request The HTTP request carrying the CSV data
+     * @param fileName Optional feed name for reporting
+     * @param fullFeed True when the body is the complete catalog
+     * @return 202 with the job ID
+     */
+    @Operation(summary = "Submit ingestion job (raw body)", description = "Streams a CSV request body to disk and ingests it in the background; the path for feeds of any size")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Job accepted",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = IngestionJob.class))),
+        @ApiResponse(responseCode = "400", description = "Unsupported compression format"),
+        @ApiResponse(responseCode = "503", description = "Search index not configured or job queue full")
+    })
+    @PostMapping(consumes = {MediaType.APPLICATION_OCTET_STREAM_VALUE, "text/csv", "application/gzip"})
+    public ResponseEntity<?> submitStream(
+            HttpServletRequest request,
+            @Parameter(description = "Name of the feed, used for reporting")
+            @RequestParam(value = "fileName", defaultValue = "product_feed.csv") String fileName,
+            @Parameter(description = "True when the body is the complete catalog; products missing from it are deleted")
+            @RequestParam(value = "fullFeed", defaultValue = "false") boolean fullFeed) {
+        try {
+            return submit(request.getInputStream(), fileName, fullFeed);
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error reading CSV data: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Status and progress of a job
+     *
+     * @param jobId The job ID
+     * @return The job status or 404
+     */
+    @Operation(summary = "Get ingestion job", description = "Returns rows parsed, documents indexed and failed, throughput and ETA")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Job found",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = IngestionJob.class))),
+        @ApiResponse(responseCode = "404", description = "Job not found")
+    })
+    @GetMapping(value = "/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getJob(
+            @Parameter(description = "The ingestion job ID", required = true)
+            @PathVariable String jobId) {
+        IngestionJob job = ingestionJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    /**
+     * Status of every retained job
+     *
+     * @return The jobs, oldest first
+     */
+    @Operation(summary = "List ingestion jobs", description = "Returns the status of recent ingestion jobs")
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getJobs() {
+        return ResponseEntity.ok(ingestionJobService.getJobs());
+    }
+
+    private ResponseEntity<?> submit(InputStream input, String fileName, boolean fullFeed) throws IOException {
+        Map<String, Object> response = new HashMap<>();
+        if (!ingestionJobService.isIndexConfigured()) {
+            response.put("message", "Azure Search client is not configured");
+            response.put("status", "error");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        }
+
+        IngestionJob job;
+        try {
+            job = ingestionJobService.submit(input, fileName, fullFeed);
+        } catch (RejectedExecutionException e) {
+            response.put("message", "Too many ingestion jobs queued, retry later");
+            response.put("status", "error");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+        } catch (IllegalArgumentException e) {
+            response.put("message", e.getMessage());
+            response.put("status", "error");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        response.put("message", "Ingestion job accepted");
+        response.put("jobId", job.getJobId());
+        response.put("status", job.getStatus());
+        response.put("totalBytes", job.getTotalBytes());
+        response.put("statusUrl", JOBS_PATH + job.getJobId());
+        return ResponseEntity.accepted()
+                .header("Location", JOBS_PATH + job.getJobId())
+                .body(response);
+    }
+}
@@ -4,9 +4,13 @@ import com.example.productservice.model.Product;
 import com.example.productservice.model.ApparelProduct;
 import com.example.productservice.model.ApparelSemanticSearchRequest;
 import com.example.productservice.model.ApparelSemanticSearchResponse;
+import com.example.productservice.model.IngestionResult;
 import com.example.productservice.service.ProductService;
 import com.example.productservice.service.CsvParserService;
+import com.example.productservice.service.ProductIngestionService;
+import com.example.productservice.service.FeedInput;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -38,6 +42,12 @@ public class ProductController {
     @Autowired
     private CsvParserService csvParserService;
     
+    @Autowired
+    private ProductIngestionService productIngestionService;
+    
+    @Value("${product.upload.parse-max-bytes:10485760}")
+    private long parseMaxBytes;
+    
     /**
      * GET endpoint to retrieve product information by ID
      * Returns product data in JSON-LD format
@@ -68,10 +78,60 @@ public class ProductController {
         }
     }
     
+    /**
+     * POST endpoint to retrieve many products in one call
+     * Results are returned in input order with an explicit found flag per ID
+     * 
+     * @param productIds The product IDs to resolve
+     * @return ResponseEntity containing one entry per requested ID
+     */
+    @Operation(summary = "Get products by IDs", description = "Retrieves many products in one call, in input order with not-found markers")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Lookup completed"),
+        @ApiResponse(responseCode = "400", description = "No product IDs supplied"),
+        @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping(value = "/batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getProductsByIds(@RequestBody List<String> productIds) {
+        try {
+            if (productIds == null || productIds.isEmpty()) {
+                return ResponseEntity.badRequest().body("At least one product ID is required");
+            }
+            
+            List<Product> products = productService.getProductsByIds(productIds);
+            
+            List<Map<String, Object>> results = new ArrayList<>();
+            int found = 0;
+            for (int i = 0; i < productIds.size(); i++) {
+                Product product = products.get(i);
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("productId", productIds.get(i));
+                entry.put("found", product != null);
+                if (product != null) {
+                    entry.put("product", product);
+                    found++;
+                }
+                results.add(entry);
+            }
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("totalRequested", productIds.size());
+            response.put("totalFound", found);
+            response.put("results", results);
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error retrieving products: " + e.getMessage());
+        }
+    }
+    
     /**
      * POST endpoint to upload and parse CSV file
+     * Every parsed product is returned in the response, so files are limited to product.upload.parse-max-bytes
      * 
-     * @param file The CSV file to upload
+     * @param file The CSV file to upload, plain or gzip/zlib compressed
      * @return ResponseEntity containing the parsed products
      */
     @PostMapping(value = "/upload-csv", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -81,8 +141,13 @@ public class ProductController {
                 return ResponseEntity.badRequest().body("File is empty");
             }
             
-            if (!file.getOriginalFilename().toLowerCase().endsWith(".csv")) {
-                return ResponseEntity.badRequest().body("File must be a CSV file");
+            if (!FeedInput.isSupportedFileName(file.getOriginalFilename())) {
+                return ResponseEntity.badRequest().body("File must be a CSV file, optionally gzip or zlib compressed");
+            }
+            
+            if (file.getSize() > parseMaxBytes) {
+                return ResponseEntity.status(HttpStatus.CONTENT_TOO_LARGE)
+                        .body("File is larger than " + parseMaxBytes + " bytes; use /upload-csv-to-search or /api/products/ingest/jobs for large feeds");
             }
             
             // Use the product feed field mapping
@@ -96,6 +161,8 @@ public class ProductController {
             
             return ResponseEntity.ok(response);
             
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Error parsing CSV file: " + e.getMessage());
@@ -105,39 +172,52 @@ public class ProductController {
     /**
      * POST endpoint to upload CSV file and upload to Azure AI Search
      * 
-     * @param file The CSV file to upload
+     * @param file The CSV file to upload, plain or gzip/zlib compressed
+     * @param fullFeed True when the file is the complete catalog, so products missing from it are deleted
      * @return ResponseEntity with upload status
      */
     @PostMapping(value = "/upload-csv-to-search", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<?> uploadCsvToSearch(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<?> uploadCsvToSearch(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "fullFeed", defaultValue = "false") boolean fullFeed) {
         try {
             if (file.isEmpty()) {
                 return ResponseEntity.badRequest().body("File is empty");
             }
             
-            if (!file.getOriginalFilename().toLowerCase().endsWith(".csv")) {
-                return ResponseEntity.badRequest().body("File must be a CSV file");
+            if (!FeedInput.isSupportedFileName(file.getOriginalFilename())) {
+                return ResponseEntity.badRequest().body("File must be a CSV file, optionally gzip or zlib compressed");
             }
             
-            // Parse CSV file
-            Map<String, String> fieldMapping = csvParserService.getProductFeedFieldMapping();
-            List<Product> products = csvParserService.parseCsvFile(file, fieldMapping);
+            Map<String, Object> response = new HashMap<>();
+            if (!productIngestionService.isIndexConfigured()) {
+                response.put("message", "Failed to upload to Azure AI Search");
+                response.put("status", "error");
+                return ResponseEntity.ok(response);
+            }
             
-            // Upload to Azure AI Search
-            boolean uploadSuccess = productService.uploadProductsToSearch(products);
+            // Stream rows from the upload straight into the index without materializing the feed
+            Map<String, String> fieldMapping = csvParserService.getProductFeedFieldMapping();
+            IngestionResult result = productIngestionService.ingestCsvUpload(file, fieldMapping, fullFeed);
             
-            Map<String, Object> response = new HashMap<>();
-            if (uploadSuccess) {
+            if (result.getIndexing().getDocumentsFailed() == 0) {
                 response.put("message", "CSV file uploaded to Azure AI Search successfully");
-                response.put("totalProducts", products.size());
                 response.put("status", "success");
             } else {
                 response.put("message", "Failed to upload to Azure AI Search");
                 response.put("status", "error");
             }
+            response.put("totalProducts", result.getRowsParsed());
+            response.put("products", result.getProducts());
+            response.put("rowsSkipped", result.getRowsSkipped());
+            response.put("cellErrors", result.getCellErrors());
+            response.put("unchangedProducts", result.getDocumentsUnchanged());
+            response.put("indexing", result.getIndexing());
             
             return ResponseEntity.ok(response);
             
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Error processing CSV file: " + e.getMessage());
@@ -3,6 +3,8 @@ package com.example.productservice.model;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Schema(description = "Request model for apparel semantic search")
@@ -220,28 +222,56 @@ public class ApparelSemanticSearchRequest {
         this.select = "product_id,title,brand,color,size,material,price,rating,description,review_text,keyPhrases,reviewSentimentLabel,reviewPositiveScore";
     }
     
+    // Helper method to build a canonical cache key for this request
+    public String toCacheKey() {
+        StringBuilder key = new StringBuilder();
+        appendKeyPart(key, "queryType", queryType);
+        appendKeyPart(key, "semanticConfiguration", semanticConfiguration);
+        appendKeyPart(key, "search", search != null ? search.trim() : null);
+        appendKeyPart(key, "facets", facets != null ? String.join(";", sorted(facets)) : null);
+        appendKeyPart(key, "select", select != null ? String.join(",", sorted(List.of(select.split(",")))) : null);
+        appendKeyPart(key, "top", top);
+        appendKeyPart(key, "skip", skip);
+        appendKeyPart(key, "count", count);
+        appendKeyPart(key, "filter", buildFilterString());
+        return key.toString();
+    }
+    
+    private static void appendKeyPart(StringBuilder key, String name, Object value) {
+        key.append(name).append('=').append(value).append('\0');
+    }
+    
+    private static List<String> sorted(List<String> values) {
+        List<String> normalized = new ArrayList<>(values.size());
+        for (String value : values) {
+            normalized.add(value.trim());
+        }
+        Collections.sort(normalized);
+        return normalized;
+    }
+    
     // Helper method to build OData filter string
     public String buildFilterString() {
         StringBuilder filter = new StringBuilder();
         
         if (brandFilter != null && !brandFilter.trim().isEmpty()) {
             if (filter.length() > 0) filter.append(" and ");
-            filter.append("brand eq '").append(brandFilter).append("'");
+            filter.append("brand eq '").append(escapeODataString(brandFilter)).append("'");
         }
         
         if (colorFilter != null && !colorFilter.trim().isEmpty()) {
             if (filter.length() > 0) filter.append(" and ");
-            filter.append("color eq '").append(colorFilter).append("'");
+            filter.append("color eq '").append(escapeODataString(colorFilter)).append("'");
         }
         
         if (sizeFilter != null && !sizeFilter.trim().isEmpty()) {
             if (filter.length() > 0) filter.append(" and ");
-            filter.append("size eq '").append(sizeFilter).append("'");
+            filter.append("size eq '").append(escapeODataString(sizeFilter)).append("'");
         }
         
         if (materialFilter != null && !materialFilter.trim().isEmpty()) {
             if (filter.length() > 0) filter.append(" and ");
-            filter.append("material eq '").append(materialFilter).append("'");
+            filter.append("material eq '").append(escapeODataString(materialFilter)).append("'");
         }
         
         if (minPrice != null) {
@@ -261,4 +291,11 @@ public class ApparelSemanticSearchRequest {
         
         return filter.length() > 0 ? filter.toString() : null;
     }
+    
+    /**
+     * Escape a value for use inside a quoted OData string literal by doubling single quotes
+     */
+    private static String escapeODataString(String value) {
+        return value.replace("'", "''");
+    }
 }
@@ -0,0 +1,182 @@
+package com.example.productservice.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Outcome and throughput of a bulk indexing run")
+public class IndexingReport {
+
+    @JsonProperty("documentsSubmitted")
+    @Schema(description = "Number of documents handed to the index writer")
+    private long documentsSubmitted;
+
+    @JsonProperty("documentsIndexed")
+    @Schema(description = "Number of documents acknowledged by the index")
+    private long documentsIndexed;
+
+    @JsonProperty("documentsDeleted")
+    @Schema(description = "Number of deletes acknowledged by the index")
+    private long documentsDeleted;
+
+    @JsonProperty("documentsFailed")
+    @Schema(description = "Number of documents that failed after all retries")
+    private long documentsFailed;
+
+    @JsonProperty("batches")
+    @Schema(description = "Number of batches sent, including retries")
+    private long batches;
+
+    @JsonProperty("retries")
+    @Schema(description = "Number of batch retries for failed keys")
+    private long retries;
+
+    @JsonProperty("throttledBatches")
+    @Schema(description = "Number of batch requests rejected because the service was throttling")
+    private long throttledBatches;
+
+    @JsonProperty("batchSize")
+    @Schema(description = "Documents per batch chosen by the adaptive controller at the end of the run")
+    private int batchSize;
+
+    @JsonProperty("concurrency")
+    @Schema(description = "Concurrent batch requests allowed by the adaptive controller at the end of the run")
+    private int concurrency;
+
+    @JsonProperty("elapsedMillis")
+    @Schema(description = "Wall-clock duration of the run in milliseconds")
+    private long elapsedMillis;
+
+    @JsonProperty("documentsPerSecond")
+    @Schema(description = "Indexed documents per second")
+    private double documentsPerSecond;
+
+    @JsonProperty("averageBatchLatencyMillis")
+    @Schema(description = "Average latency of a batch request in milliseconds")
+    private double averageBatchLatencyMillis;
+
+    @JsonProperty("maxBatchLatencyMillis")
+    @Schema(description = "Slowest batch request in milliseconds")
+    private long maxBatchLatencyMillis;
+
+    @JsonProperty("failedKeys")
+    @Schema(description = "Sample of document keys that could not be indexed")
+    private List<String> failedKeys;
+
+    // Default constructor
+    public IndexingReport() {}
+
+    // Getters and Setters
+    public long getDocumentsSubmitted() {
+        return documentsSubmitted;
+    }
+
+    public void setDocumentsSubmitted(long documentsSubmitted) {
+        this.documentsSubmitted = documentsSubmitted;
+    }
+
+    public long getDocumentsIndexed() {
+        return documentsIndexed;
+    }
+
+    public void setDocumentsIndexed(long documentsIndexed) {
+        this.documentsIndexed = documentsIndexed;
+    }
+
+    public long getDocumentsDeleted() {
+        return documentsDeleted;
+    }
+
+    public void setDocumentsDeleted(long documentsDeleted) {
+        this.documentsDeleted = documentsDeleted;
+    }
+
+    public long getDocumentsFailed() {
+        return documentsFailed;
+    }
+
+    public void setDocumentsFailed(long documentsFailed) {
+        this.documentsFailed = documentsFailed;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public void setBatches(long batches) {
+        this.batches = batches;
+    }
+
+    public long getRetries() {
+        return retries;
+    }
+
+    public void setRetries(long retries) {
+        this.retries = retries;
+    }
+
+    public long getThrottledBatches() {
+        return throttledBatches;
+    }
+
+    public void setThrottledBatches(long throttledBatches) {
+        this.throttledBatches = throttledBatches;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public double getDocumentsPerSecond() {
+        return documentsPerSecond;
+    }
+
+    public void setDocumentsPerSecond(double documentsPerSecond) {
+        this.documentsPerSecond = documentsPerSecond;
+    }
+
+    public double getAverageBatchLatencyMillis() {
+        return averageBatchLatencyMillis;
+    }
+
+    public void setAverageBatchLatencyMillis(double averageBatchLatencyMillis) {
+        this.averageBatchLatencyMillis = averageBatchLatencyMillis;
+    }
+
+    public long getMaxBatchLatencyMillis() {
+        return maxBatchLatencyMillis;
+    }
+
+    public void setMaxBatchLatencyMillis(long maxBatchLatencyMillis) {
+        this.maxBatchLatencyMillis = maxBatchLatencyMillis;
+    }
+
+    public List<String> getFailedKeys() {
+        return failedKeys;
+    }
+
+    public void setFailedKeys(List<String> failedKeys) {
+        this.failedKeys = failedKeys;
+    }
+}
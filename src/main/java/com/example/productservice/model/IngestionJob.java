@@ -0,0 +1,226 @@
+package com.example.productservice.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.LocalDateTime;
+
+@Schema(description = "Status and progress of an asynchronous CSV ingestion job")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IngestionJob {
+
+    @JsonProperty("jobId")
+    @Schema(description = "Unique identifier of the job")
+    private String jobId;
+
+    @JsonProperty("status")
+    @Schema(description = "Job status", allowableValues = {"QUEUED", "RUNNING", "COMPLETED", "FAILED"})
+    private String status;
+
+    @JsonProperty("fileName")
+    @Schema(description = "Name of the uploaded feed")
+    private String fileName;
+
+    @JsonProperty("totalBytes")
+    @Schema(description = "Size of the uploaded feed in bytes")
+    private long totalBytes;
+
+    @JsonProperty("compression")
+    @Schema(description = "Compression format of the uploaded feed; sizes and progress are in uploaded bytes",
+            allowableValues = {"none", "gzip", "zlib"})
+    private String compression;
+
+    @JsonProperty("resumedFromOffset")
+    @Schema(description = "Byte offset the job resumed from after the service restarted, absent for a fresh run")
+    private Long resumedFromOffset;
+
+    @JsonProperty("bytesProcessed")
+    @Schema(description = "Bytes of the feed consumed by the parser")
+    private long bytesProcessed;
+
+    @JsonProperty("rowsParsed")
+    @Schema(description = "Rows mapped to products so far")
+    private long rowsParsed;
+
+    @JsonProperty("documentsIndexed")
+    @Schema(description = "Documents acknowledged by the index so far")
+    private long documentsIndexed;
+
+    @JsonProperty("documentsFailed")
+    @Schema(description = "Documents that failed after all retries so far")
+    private long documentsFailed;
+
+    @JsonProperty("rowsPerSecond")
+    @Schema(description = "Parse throughput since the job started")
+    private double rowsPerSecond;
+
+    @JsonProperty("etaSeconds")
+    @Schema(description = "Estimated seconds until the feed is fully parsed, based on bytes processed")
+    private Long etaSeconds;
+
+    @JsonProperty("submittedAt")
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @Schema(description = "When the job was accepted")
+    private LocalDateTime submittedAt;
+
+    @JsonProperty("startedAt")
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @Schema(description = "When ingestion started")
+    private LocalDateTime startedAt;
+
+    @JsonProperty("completedAt")
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @Schema(description = "When ingestion completed or failed")
+    private LocalDateTime completedAt;
+
+    @JsonProperty("error")
+    @Schema(description = "Failure reason when the job failed")
+    private String error;
+
+    @JsonProperty("result")
+    @Schema(description = "Final parse and indexing statistics once the job completed")
+    private IngestionResult result;
+
+    // Default constructor
+    public IngestionJob() {}
+
+    // Getters and Setters
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    public Long getResumedFromOffset() {
+        return resumedFromOffset;
+    }
+
+    public void setResumedFromOffset(Long resumedFromOffset) {
+        this.resumedFromOffset = resumedFromOffset;
+    }
+
+    public long getBytesProcessed() {
+        return bytesProcessed;
+    }
+
+    public void setBytesProcessed(long bytesProcessed) {
+        this.bytesProcessed = bytesProcessed;
+    }
+
+    public long getRowsParsed() {
+        return rowsParsed;
+    }
+
+    public void setRowsParsed(long rowsParsed) {
+        this.rowsParsed = rowsParsed;
+    }
+
+    public long getDocumentsIndexed() {
+        return documentsIndexed;
+    }
+
+    public void setDocumentsIndexed(long documentsIndexed) {
+        this.documentsIndexed = documentsIndexed;
+    }
+
+    public long getDocumentsFailed() {
+        return documentsFailed;
+    }
+
+    public void setDocumentsFailed(long documentsFailed) {
+        this.documentsFailed = documentsFailed;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(double rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    public Long getEtaSeconds() {
+        return etaSeconds;
+    }
+
+    public void setEtaSeconds(Long etaSeconds) {
+        this.etaSeconds = etaSeconds;
+    }
+
+    public LocalDateTime getSubmittedAt() {
+        return submittedAt;
+    }
+
+    public void setSubmittedAt(LocalDateTime submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public IngestionResult getResult() {
+        return result;
+    }
+
+    public void setResult(IngestionResult result) {
+        this.result = result;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.productservice.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Outcome of a streaming CSV ingestion into the search index")
+public class IngestionResult {
+
+    @JsonProperty("rowsParsed")
+    @Schema(description = "Number of CSV rows mapped to products")
+    private long rowsParsed;
+
+    @JsonProperty("rowsSkipped")
+    @Schema(description = "Number of CSV rows that could not be mapped")
+    private long rowsSkipped;
+
+    @JsonProperty("cellErrors")
+    @Schema(description = "Number of cells whose value could not be parsed for their field")
+    private long cellErrors;
+
+    @JsonProperty("rowsWithCellErrors")
+    @Schema(description = "Number of mapped rows with at least one unparseable cell")
+    private long rowsWithCellErrors;
+
+    @JsonProperty("products")
+    @Schema(description = "Number of product documents built from the rows after grouping SKU variants")
+    private long products;
+
+    @JsonProperty("documentsUnchanged")
+    @Schema(description = "Number of products skipped because their content matched the last indexed version")
+    private long documentsUnchanged;
+
+    @JsonProperty("indexing")
+    @Schema(description = "Indexing throughput and failures")
+    private IndexingReport indexing;
+
+    @JsonProperty("compression")
+    @Schema(description = "Compression format detected for the feed", allowableValues = {"none", "gzip", "zlib"})
+    private String compression;
+
+    @JsonProperty("inputBytes")
+    @Schema(description = "Bytes read from the feed as uploaded, before decompression")
+    private long inputBytes;
+
+    @JsonProperty("uncompressedBytes")
+    @Schema(description = "Bytes of CSV data after decompression")
+    private long uncompressedBytes;
+
+    @JsonProperty("inputMegabytesPerSecond")
+    @Schema(description = "Ingestion throughput in uploaded megabytes per second")
+    private double inputMegabytesPerSecond;
+
+    @JsonProperty("uncompressedMegabytesPerSecond")
+    @Schema(description = "Ingestion throughput in uncompressed megabytes per second")
+    private double uncompressedMegabytesPerSecond;
+
+    @JsonProperty("resumedFromOffset")
+    @Schema(description = "Byte offset the run resumed from after an interrupted ingestion, 0 for a full run")
+    private long resumedFromOffset;
+
+    // Default constructor
+    public IngestionResult() {}
+
+    // Getters and Setters
+    public long getRowsParsed() {
+        return rowsParsed;
+    }
+
+    public void setRowsParsed(long rowsParsed) {
+        this.rowsParsed = rowsParsed;
+    }
+
+    public long getRowsSkipped() {
+        return rowsSkipped;
+    }
+
+    public void setRowsSkipped(long rowsSkipped) {
+        this.rowsSkipped = rowsSkipped;
+    }
+
+    public long getCellErrors() {
+        return cellErrors;
+    }
+
+    public void setCellErrors(long cellErrors) {
+        this.cellErrors = cellErrors;
+    }
+
+    public long getRowsWithCellErrors() {
+        return rowsWithCellErrors;
+    }
+
+    public void setRowsWithCellErrors(long rowsWithCellErrors) {
+        this.rowsWithCellErrors = rowsWithCellErrors;
+    }
+
+    public long getProducts() {
+        return products;
+    }
+
+    public void setProducts(long products) {
+        this.products = products;
+    }
+
+    public long getDocumentsUnchanged() {
+        return documentsUnchanged;
+    }
+
+    public void setDocumentsUnchanged(long documentsUnchanged) {
+        this.documentsUnchanged = documentsUnchanged;
+    }
+
+    public IndexingReport getIndexing() {
+        return indexing;
+    }
+
+    public void setIndexing(IndexingReport indexing) {
+        this.indexing = indexing;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    public long getInputBytes() {
+        return inputBytes;
+    }
+
+    public void setInputBytes(long inputBytes) {
+        this.inputBytes = inputBytes;
+    }
+
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    public void setUncompressedBytes(long uncompressedBytes) {
+        this.uncompressedBytes = uncompressedBytes;
+    }
+
+    public double getInputMegabytesPerSecond() {
+        return inputMegabytesPerSecond;
+    }
+
+    public void setInputMegabytesPerSecond(double inputMegabytesPerSecond) {
+        this.inputMegabytesPerSecond = inputMegabytesPerSecond;
+    }
+
+    public double getUncompressedMegabytesPerSecond() {
+        return uncompressedMegabytesPerSecond;
+    }
+
+    public void setUncompressedMegabytesPerSecond(double uncompressedMegabytesPerSecond) {
+        this.uncompressedMegabytesPerSecond = uncompressedMegabytesPerSecond;
+    }
+
+    public long getResumedFromOffset() {
+        return resumedFromOffset;
+    }
+
+    public void setResumedFromOffset(long resumedFromOffset) {
+        this.resumedFromOffset = resumedFromOffset;
+    }
+}
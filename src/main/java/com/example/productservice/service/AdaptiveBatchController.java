@@ -0,0 +1,190 @@
+package com.example.productservice.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AIMD controller for index batch size and request concurrency.
+ *
+ * Every clean batch grows the batch size by a fixed step; once batches are
+ * at full size, a full window of clean batches (one per concurrent slot) adds
+ * a slot. A congestion signal
+ * shrinks both by a constant factor: a throttled batch, a share of
+ * per-document failures above the threshold, or latency above the target,
+ * which shrinks the batch size only. Batches sent before the last decrease
+ * cannot trigger another one, so a burst of throttled responses to one
+ * window only backs off once. Retry-after hints pause every sender until the
+ * requested time.
+ */
+class AdaptiveBatchController {
+
+    private final boolean enabled;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int batchSizeStep;
+    private final int maxConcurrency;
+    private final double decreaseFactor;
+    private final long targetLatencyNanos;
+    private final double failureRateThreshold;
+
+    private int batchSize;
+    private int concurrency;
+    private int inFlight;
+    private int cleanBatches;
+    private long lastDecreaseNanos = System.nanoTime();
+    private long pausedUntilNanos = System.nanoTime();
+
+    /**
+     * @param enabled False to keep batch size and concurrency at their maximum; retry-after hints are still honored
+     */
+    AdaptiveBatchController(boolean enabled, int minBatchSize, int maxBatchSize, int initialBatchSize, int batchSizeStep,
+                            int maxConcurrency, int initialConcurrency, double decreaseFactor,
+                            long targetLatencyMillis, double failureRateThreshold) {
+        this.enabled = enabled;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.minBatchSize = Math.max(1, Math.min(minBatchSize, this.maxBatchSize));
+        this.batchSizeStep = Math.max(1, batchSizeStep);
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.decreaseFactor = decreaseFactor;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.failureRateThreshold = failureRateThreshold;
+
+        this.batchSize = enabled ? clamp(initialBatchSize, this.minBatchSize, this.maxBatchSize) : this.maxBatchSize;
+        this.concurrency = enabled ? clamp(initialConcurrency, 1, this.maxConcurrency) : this.maxConcurrency;
+    }
+
+    /**
+     * Current target number of documents per batch
+     */
+    synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Current number of batches allowed in flight
+     */
+    synchronized int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Wait for a free request slot and for any retry-after pause to end
+     */
+    synchronized void acquire() throws InterruptedException {
+        while (true) {
+            if (waitForResume()) {
+                continue;
+            }
+            if (inFlight < concurrency) {
+                break;
+            }
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * Return a request slot taken by {@link #acquire()}
+     */
+    synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * Wait for any retry-after pause to end before re-sending
+     */
+    synchronized void awaitResume() throws InterruptedException {
+        while (waitForResume()) {
+            // Pause may have been extended while waiting
+        }
+    }
+
+    /**
+     * Record an accepted batch
+     *
+     * @param sentAtNanos When the batch was sent
+     * @param latencyNanos Round-trip time of the request
+     * @param documents Documents in the batch
+     * @param retriableFailures Documents that failed with a transient status
+     * @param retryAfterMillis Retry-after hint of the response, or -1 if none
+     */
+    synchronized void onAccepted(long sentAtNanos, long latencyNanos, int documents, int retriableFailures,
+                                 long retryAfterMillis) {
+        pause(retryAfterMillis);
+        if (!enabled) {
+            return;
+        }
+
+        // Small batches, such as retries of a few failed keys, are too noisy to judge a failure rate
+        if (documents >= minBatchSize && (double) retriableFailures / documents > failureRateThreshold) {
+            decrease(sentAtNanos, true, "document failure rate " + retriableFailures + "/" + documents);
+        } else if (latencyNanos > targetLatencyNanos) {
+            decrease(sentAtNanos, false, "batch latency " + TimeUnit.NANOSECONDS.toMillis(latencyNanos) + "ms");
+        } else {
+            // Batch size is the cheaper lever, so concurrency only grows once batches are full size
+            if (batchSize < maxBatchSize) {
+                batchSize = Math.min(maxBatchSize, batchSize + batchSizeStep);
+            } else if (++cleanBatches >= concurrency && concurrency < maxConcurrency) {
+                concurrency++;
+                cleanBatches = 0;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Record a batch the service rejected because it is throttling
+     *
+     * @param sentAtNanos When the batch was sent
+     * @param statusCode The throttling status
+     * @param retryAfterMillis Retry-after hint of the response, or -1 if none
+     */
+    synchronized void onThrottled(long sentAtNanos, int statusCode, long retryAfterMillis) {
+        pause(retryAfterMillis);
+        if (enabled) {
+            decrease(sentAtNanos, true, "throttled (" + statusCode + ")");
+        }
+    }
+
+    private void decrease(long sentAtNanos, boolean reduceConcurrency, String reason) {
+        cleanBatches = 0;
+        if (sentAtNanos - lastDecreaseNanos < 0) {
+            // Already backed off for the window this batch was sent in
+            return;
+        }
+        lastDecreaseNanos = System.nanoTime();
+        batchSize = Math.max(minBatchSize, (int) (batchSize * decreaseFactor));
+        if (reduceConcurrency) {
+            concurrency = Math.max(1, Math.min(concurrency - 1, (int) Math.ceil(concurrency * decreaseFactor)));
+        }
+        System.out.println("Index writer backing off after " + reason + ": batch size " + batchSize +
+                         ", concurrency " + concurrency);
+    }
+
+    private void pause(long retryAfterMillis) {
+        if (retryAfterMillis > 0) {
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis);
+            if (until - pausedUntilNanos > 0) {
+                pausedUntilNanos = until;
+            }
+        }
+    }
+
+    /**
+     * Wait once for the current pause
+     *
+     * @return True if the caller waited and must re-check
+     */
+    private boolean waitForResume() throws InterruptedException {
+        long remaining = pausedUntilNanos - System.nanoTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        return true;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.productservice.service;
+
+import com.azure.core.exception.HttpResponseException;
+import com.azure.core.http.HttpHeaderName;
+import com.azure.core.http.HttpHeaders;
+import com.azure.core.http.HttpResponse;
+import com.azure.core.http.rest.Response;
+import com.azure.core.util.Context;
+import com.azure.search.documents.SearchClient;
+import com.azure.search.documents.indexes.models.IndexDocumentsBatch;
+import com.azure.search.documents.models.IndexAction;
+import com.azure.search.documents.models.IndexDocumentsOptions;
+import com.azure.search.documents.models.IndexDocumentsResult;
+import com.azure.search.documents.models.IndexingResult;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends index batches to Azure AI Search
+ */
+class AzureIndexBatchSink implements IndexBatchSink {
+
+    private final SearchClient searchClient;
+
+    AzureIndexBatchSink(SearchClient searchClient) {
+        this.searchClient = searchClient;
+    }
+
+    @Override
+    public BatchResult send(List<IndexAction<Map<String, Object>>> actions) {
+        Response<IndexDocumentsResult> response;
+        try {
+            response = searchClient.indexDocumentsWithResponse(
+                new IndexDocumentsBatch<Map<String, Object>>().addActions(actions),
+                new IndexDocumentsOptions().setThrowOnAnyError(false), Context.NONE);
+        } catch (HttpResponseException e) {
+            HttpResponse httpResponse = e.getResponse();
+            if (httpResponse == null) {
+                throw new BatchRejectedException(0, -1, e.getMessage(), e);
+            }
+            throw new BatchRejectedException(httpResponse.getStatusCode(), retryAfterMillis(httpResponse.getHeaders()),
+                                             e.getMessage(), e);
+        }
+
+        List<DocumentResult> results = new ArrayList<>(actions.size());
+        for (IndexingResult result : response.getValue().getResults()) {
+            results.add(new DocumentResult(result.getKey(), result.isSucceeded(), result.getStatusCode(),
+                                           result.getErrorMessage()));
+        }
+        return new BatchResult(results, retryAfterMillis(response.getHeaders()));
+    }
+
+    /**
+     * Read the retry delay from the millisecond headers Azure sends, or the standard Retry-After header
+     *
+     * @return Delay in milliseconds, or -1 if the response has no usable hint
+     */
+    static long retryAfterMillis(HttpHeaders headers) {
+        if (headers == null) {
+            return -1;
+        }
+        for (HttpHeaderName name : new HttpHeaderName[] {HttpHeaderName.RETRY_AFTER_MS, HttpHeaderName.X_MS_RETRY_AFTER_MS}) {
+            String value = headers.getValue(name);
+            if (value != null) {
+                try {
+                    return Math.max(0, Long.parseLong(value.trim()));
+                } catch (NumberFormatException e) {
+                    // Fall through to the next header
+                }
+            }
+        }
+
+        String value = headers.getValue(HttpHeaderName.RETRY_AFTER);
+        if (value == null) {
+            return -1;
+        }
+        value = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            // Retry-After may also be an HTTP date
+        }
+        try {
+            ZonedDateTime retryAt = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(retryAt.getZone()), retryAt).toMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.productservice.service;
+
+/**
+ * Filter over the local catalog that evaluates to the bitmap of the matching products.
+ *
+ * Implemented by {@link ODataFilter}: leaves select from the bitmap indexes of
+ * a {@link ColumnarCatalog}, and and, or and not combine the bitmaps of their
+ * operands, so the cost of a filter depends on the number of matching
+ * products rather than on the catalog size.
+ */
+@FunctionalInterface
+interface CatalogFilter {
+
+    /**
+     * Products of the catalog that pass the filter
+     */
+    CompressedBitmap evaluate(ColumnarCatalog catalog);
+}
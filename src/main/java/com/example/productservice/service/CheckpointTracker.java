@@ -0,0 +1,171 @@
+package com.example.productservice.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks which part of a feed is durably indexed and advances its checkpoint.
+ *
+ * The feed is divided into segments at the chunk boundaries reported by the
+ * parser. Every product is charged to the segment of its first row, and a
+ * segment stays open while any of its products is still buffered for
+ * grouping or awaiting acknowledgement from the index. The checkpoint is the
+ * start of the oldest open segment, so everything before it has been indexed
+ * (or has failed for good) and resuming there re-sends at most the products
+ * of a few segments, which is harmless because document keys are idempotent.
+ *
+ * Row and segment callbacks come from the parsing thread; acknowledgements
+ * come from the index writer threads.
+ */
+class CheckpointTracker {
+
+    private final IngestionCheckpoint checkpoint;
+    private final long saveIntervalNanos;
+    private final long startOffset;
+
+    // Parsing thread only
+    private final ArrayDeque<Integer> bufferedRowSegments = new ArrayDeque<>();
+    private String carryProductId;
+    private String lastRowProductId;
+    private int emittingSegment;
+    private long lastSaveNanos = System.nanoTime();
+
+    // Written by the parsing thread, read under the lock by the writer threads
+    private final List<Long> segmentStarts = new ArrayList<>();
+    private final List<String> segmentCarryIds = new ArrayList<>();
+    private int[] outstanding = new int[16];
+    private int currentSegment;
+
+    // Key -> {segment of the first pending copy, pending copies}, guarded by this
+    private final Map<String, int[]> pendingDocuments = new HashMap<>();
+
+    CheckpointTracker(IngestionCheckpoint checkpoint, long saveIntervalMillis) {
+        this.checkpoint = checkpoint;
+        this.saveIntervalNanos = saveIntervalMillis * 1_000_000;
+        this.startOffset = checkpoint.getOffset();
+        this.carryProductId = checkpoint.getCarryProductId();
+        segmentStarts.add(startOffset);
+        segmentCarryIds.add(carryProductId);
+    }
+
+    /**
+     * Offset the parse starts from
+     */
+    long getStartOffset() {
+        return startOffset;
+    }
+
+    /**
+     * Register a parsed row before it is grouped
+     *
+     * @return False if the row belongs to the product straddling the checkpoint, which was already indexed
+     */
+    boolean rowParsed(String productId) {
+        lastRowProductId = productId;
+        if (carryProductId != null) {
+            if (carryProductId.equals(productId)) {
+                return false;
+            }
+            carryProductId = null;
+        }
+        bufferedRowSegments.add(currentSegment);
+        return true;
+    }
+
+    /**
+     * Called by the grouping session just before it emits a product built from the oldest buffered rows
+     */
+    void groupEmitted(int rows) {
+        emittingSegment = bufferedRowSegments.peek();
+        for (int i = 0; i < rows; i++) {
+            bufferedRowSegments.poll();
+        }
+    }
+
+    /**
+     * Register a document of the product being emitted, before it is handed to the index writer
+     */
+    synchronized void documentQueued(String key) {
+        int[] pending = pendingDocuments.get(key);
+        if (pending != null) {
+            // A key repeated in the feed holds the earliest segment until every copy is acknowledged
+            pending[1]++;
+            return;
+        }
+        pendingDocuments.put(key, new int[] {emittingSegment, 1});
+        outstanding[emittingSegment]++;
+    }
+
+    /**
+     * Mark documents as acknowledged by the index
+     */
+    synchronized void documentsCompleted(List<String> keys) {
+        for (String key : keys) {
+            documentCompleted(key);
+        }
+    }
+
+    /**
+     * Mark a document as acknowledged or as failed after all retries
+     */
+    synchronized void documentCompleted(String key) {
+        int[] pending = pendingDocuments.get(key);
+        if (pending != null && --pending[1] == 0) {
+            pendingDocuments.remove(key);
+            outstanding[pending[0]]--;
+        }
+    }
+
+    /**
+     * Called by the parser once every row before the offset has been consumed
+     * Saves the checkpoint when the save interval has elapsed
+     */
+    void chunkConsumed(long endOffset) throws IOException {
+        synchronized (this) {
+            segmentStarts.add(endOffset);
+            segmentCarryIds.add(lastRowProductId);
+            currentSegment++;
+            if (currentSegment >= outstanding.length) {
+                outstanding = Arrays.copyOf(outstanding, outstanding.length * 2);
+            }
+        }
+
+        long now = System.nanoTime();
+        if (now - lastSaveNanos >= saveIntervalNanos) {
+            lastSaveNanos = now;
+            save();
+        }
+    }
+
+    /**
+     * Persist the start of the oldest open segment if it moved forward
+     */
+    void save() throws IOException {
+        long offset;
+        String carryId;
+        synchronized (this) {
+            int durable = currentSegment;
+            Integer oldestBuffered = bufferedRowSegments.peek();
+            if (oldestBuffered != null) {
+                durable = Math.min(durable, oldestBuffered);
+            }
+            for (int segment = 0; segment < durable; segment++) {
+                if (outstanding[segment] > 0) {
+                    durable = segment;
+                    break;
+                }
+            }
+            offset = segmentStarts.get(durable);
+            carryId = segmentCarryIds.get(durable);
+        }
+
+        if (offset > checkpoint.getOffset()) {
+            checkpoint.save(offset, carryId);
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package com.example.productservice.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable compressed set of non-negative ints, in the style of Roaring bitmaps.
+ *
+ * Values are split by their high 16 bits into chunks. A chunk with at most
+ * 4096 values is stored as a sorted array of its low 16 bits, a denser chunk
+ * as a 65536-bit bitmap, so a chunk never takes more than 8 KB and sparse
+ * sets stay small. AND, OR and AND NOT walk the two sorted chunk lists and
+ * combine matching chunks with the cheapest routine for their two kinds, and
+ * every result knows its cardinality.
+ */
+final class CompressedBitmap {
+
+    /** Largest chunk kept as a sorted array; above this a bitmap is smaller */
+    private static final int ARRAY_MAX = 4096;
+
+    private static final int BITMAP_WORDS = 1024;
+
+    private static final CompressedBitmap EMPTY = new CompressedBitmap(new char[0], new Container[0], 0);
+
+    private final char[] keys;
+    private final Container[] containers;
+    private final int size;
+    private final long cardinality;
+
+    private CompressedBitmap(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality();
+        }
+        this.cardinality = total;
+    }
+
+    /**
+     * The empty set
+     */
+    static CompressedBitmap empty() {
+        return EMPTY;
+    }
+
+    /**
+     * The values 0 (inclusive) to end (exclusive)
+     */
+    static CompressedBitmap range(int end) {
+        Builder builder = new Builder();
+        for (int value = 0; value < end; value++) {
+            builder.add(value);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Number of values in the set
+     */
+    long cardinality() {
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    boolean contains(int value) {
+        int index = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    /**
+     * Visit the values in ascending order
+     */
+    void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * The smallest values in ascending order
+     *
+     * @param limit Maximum number of values to return
+     */
+    int[] toArray(int limit) {
+        int[] values = new int[(int) Math.min(limit, cardinality)];
+        int count = 0;
+        for (int i = 0; i < size && count < values.length; i++) {
+            count = containers[i].copyTo(keys[i] << 16, values, count);
+        }
+        return values;
+    }
+
+    CompressedBitmap and(CompressedBitmap other) {
+        Builder result = new Builder();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result.build();
+    }
+
+    CompressedBitmap or(CompressedBitmap other) {
+        Builder result = new Builder();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i]);
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j]);
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result.build();
+    }
+
+    CompressedBitmap andNot(CompressedBitmap other) {
+        Builder result = new Builder();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.size && other.keys[j] == keys[i]) {
+                result.append(keys[i], containers[i].andNot(other.containers[j]));
+            } else {
+                result.append(keys[i], containers[i]);
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * Union of many sets, smallest first so intermediate results stay small
+     */
+    static CompressedBitmap orAll(List<CompressedBitmap> bitmaps) {
+        CompressedBitmap[] sorted = bitmaps.toArray(new CompressedBitmap[0]);
+        Arrays.sort(sorted, (a, b) -> Long.compare(a.cardinality, b.cardinality));
+        CompressedBitmap result = EMPTY;
+        for (CompressedBitmap bitmap : sorted) {
+            result = result.or(bitmap);
+        }
+        return result;
+    }
+
+    /**
+     * Approximate heap used by the set
+     */
+    long estimatedBytes() {
+        long bytes = 32 + keys.length * 2L + containers.length * 8L;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i].estimatedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Builds a set from values added in ascending order
+     */
+    static final class Builder {
+        private char[] keys = new char[4];
+        private Container[] containers = new Container[4];
+        private int size;
+
+        private int currentKey = -1;
+        private final char[] pending = new char[ARRAY_MAX];
+        private int pendingCount;
+        private long[] pendingWords;
+        private int last = -1;
+
+        /**
+         * Add a value greater than every value added before
+         */
+        void add(int value) {
+            if (value <= last) {
+                throw new IllegalArgumentException("Values must be added in ascending order: " + value + " after " + last);
+            }
+            last = value;
+            int key = value >>> 16;
+            if (key != currentKey) {
+                flush();
+                currentKey = key;
+            }
+            char low = (char) value;
+            if (pendingWords == null && pendingCount < ARRAY_MAX) {
+                pending[pendingCount++] = low;
+                return;
+            }
+            if (pendingWords == null) {
+                pendingWords = new long[BITMAP_WORDS];
+                for (int i = 0; i < pendingCount; i++) {
+                    pendingWords[pending[i] >>> 6] |= 1L << pending[i];
+                }
+            }
+            pendingWords[low >>> 6] |= 1L << low;
+            pendingCount++;
+        }
+
+        CompressedBitmap build() {
+            flush();
+            return size == 0 ? EMPTY : new CompressedBitmap(keys, containers, size);
+        }
+
+        private void flush() {
+            if (currentKey < 0 || pendingCount == 0) {
+                return;
+            }
+            append((char) currentKey, pendingWords != null
+                ? new BitmapContainer(pendingWords, pendingCount)
+                : new ArrayContainer(Arrays.copyOf(pending, pendingCount)));
+            pendingCount = 0;
+            pendingWords = null;
+        }
+
+        private void append(char key, Container container) {
+            if (container == null || container.cardinality() == 0) {
+                return;
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                containers = Arrays.copyOf(containers, size * 2);
+            }
+            keys[size] = key;
+            containers[size] = container;
+            size++;
+        }
+    }
+
+    /**
+     * The low 16 bits of the values sharing one high 16-bit key
+     */
+    private interface Container {
+        int cardinality();
+
+        boolean contains(char low);
+
+        Container and(Container other);
+
+        Container or(Container other);
+
+        Container andNot(Container other);
+
+        void forEach(int base, IntConsumer consumer);
+
+        int copyTo(int base, int[] values, int offset);
+
+        long estimatedBytes();
+    }
+
+    /**
+     * Sorted array of at most 4096 values
+     */
+    private static final class ArrayContainer implements Container {
+        private final char[] values;
+
+        private ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        public boolean contains(char low) {
+            return Arrays.binarySearch(values, low) >= 0;
+        }
+
+        @Override
+        public Container and(Container other) {
+            char[] result = new char[Math.min(values.length, other.cardinality())];
+            int count = 0;
+            if (other instanceof ArrayContainer) {
+                char[] others = ((ArrayContainer) other).values;
+                int i = 0;
+                int j = 0;
+                while (i < values.length && j < others.length) {
+                    if (values[i] < others[j]) {
+                        i++;
+                    } else if (values[i] > others[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (char value : values) {
+                    if (other.contains(value)) {
+                        result[count++] = value;
+                    }
+                }
+            }
+            return new ArrayContainer(Arrays.copyOf(result, count));
+        }
+
+        @Override
+        public Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            char[] others = ((ArrayContainer) other).values;
+            char[] result = new char[values.length + others.length];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < values.length || j < others.length) {
+                if (j == others.length || (i < values.length && values[i] < others[j])) {
+                    result[count++] = values[i++];
+                } else if (i == values.length || values[i] > others[j]) {
+                    result[count++] = others[j++];
+                } else {
+                    result[count++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            if (count <= ARRAY_MAX) {
+                return new ArrayContainer(Arrays.copyOf(result, count));
+            }
+            long[] words = new long[BITMAP_WORDS];
+            for (int k = 0; k < count; k++) {
+                words[result[k] >>> 6] |= 1L << result[k];
+            }
+            return new BitmapContainer(words, count);
+        }
+
+        @Override
+        public Container andNot(Container other) {
+            char[] result = new char[values.length];
+            int count = 0;
+            for (char value : values) {
+                if (!other.contains(value)) {
+                    result[count++] = value;
+                }
+            }
+            return new ArrayContainer(Arrays.copyOf(result, count));
+        }
+
+        @Override
+        public void forEach(int base, IntConsumer consumer) {
+            for (char value : values) {
+                consumer.accept(base | value);
+            }
+        }
+
+        @Override
+        public int copyTo(int base, int[] target, int offset) {
+            int count = Math.min(values.length, target.length - offset);
+            for (int i = 0; i < count; i++) {
+                target[offset + i] = base | values[i];
+            }
+            return offset + count;
+        }
+
+        @Override
+        public long estimatedBytes() {
+            return 32 + values.length * 2L;
+        }
+    }
+
+    /**
+     * 65536-bit bitmap holding more than 4096 values
+     */
+    private static final class BitmapContainer implements Container {
+        private final long[] words;
+        private final int cardinality;
+
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        public Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] others = ((BitmapContainer) other).words;
+            long[] result = new long[BITMAP_WORDS];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = words[i] & others[i];
+                count += Long.bitCount(result[i]);
+            }
+            return fromWords(result, count);
+        }
+
+        @Override
+        public Container or(Container other) {
+            long[] result = words.clone();
+            int count = cardinality;
+            if (other instanceof ArrayContainer) {
+                for (char value : ((ArrayContainer) other).values) {
+                    long bit = 1L << value;
+                    if ((result[value >>> 6] & bit) == 0) {
+                        result[value >>> 6] |= bit;
+                        count++;
+                    }
+                }
+            } else {
+                long[] others = ((BitmapContainer) other).words;
+                count = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result[i] |= others[i];
+                    count += Long.bitCount(result[i]);
+                }
+            }
+            return new BitmapContainer(result, count);
+        }
+
+        @Override
+        public Container andNot(Container other) {
+            long[] result = words.clone();
+            int count = cardinality;
+            if (other instanceof ArrayContainer) {
+                for (char value : ((ArrayContainer) other).values) {
+                    long bit = 1L << value;
+                    if ((result[value >>> 6] & bit) != 0) {
+                        result[value >>> 6] &= ~bit;
+                        count--;
+                    }
+                }
+            } else {
+                long[] others = ((BitmapContainer) other).words;
+                count = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result[i] &= ~others[i];
+                    count += Long.bitCount(result[i]);
+                }
+            }
+            return fromWords(result, count);
+        }
+
+        @Override
+        public void forEach(int base, IntConsumer consumer) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    consumer.accept(base | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        public int copyTo(int base, int[] target, int offset) {
+            for (int i = 0; i < BITMAP_WORDS && offset < target.length; i++) {
+                long word = words[i];
+                while (word != 0 && offset < target.length) {
+                    target[offset++] = base | (i << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        @Override
+        public long estimatedBytes() {
+            return 32 + BITMAP_WORDS * 8L;
+        }
+
+        /**
+         * Keep a sparse result as an array so it stays small
+         */
+        private static Container fromWords(long[] words, int count) {
+            if (count > ARRAY_MAX) {
+                return new BitmapContainer(words, count);
+            }
+            char[] values = new char[count];
+            int index = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[index++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.productservice.service;
+
+import com.example.productservice.model.Product;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Column bindings compiled from a CSV header row and a field mapping.
+ *
+ * Each binding pairs a column index with the setter for its Product field, so
+ * mapping a row is a series of indexed assignments. Bindings keep the
+ * iteration order of the field mapping, so when several columns target the
+ * same field the last one wins, as it did when the mapping was applied per row.
+ */
+final class CsvBindingPlan {
+
+    /**
+     * Assigns a non-empty cell value to a Product field
+     */
+    interface FieldBinder {
+        /**
+         * @return false if the value could not be parsed for the field
+         */
+        boolean bind(Product product, String value);
+    }
+
+    private final int[] columns;
+    private final String[] fieldNames;
+    private final FieldBinder[] binders;
+    private final boolean[] usedColumns;
+
+    private CsvBindingPlan(int[] columns, String[] fieldNames, FieldBinder[] binders, int columnCount) {
+        this.columns = columns;
+        this.fieldNames = fieldNames;
+        this.binders = binders;
+        this.usedColumns = new boolean[columnCount];
+        for (int column : columns) {
+            usedColumns[column] = true;
+        }
+    }
+
+    /**
+     * Compile the bindings for a header row
+     *
+     * @param headers Trimmed column headers
+     * @param fieldMapping Mapping from CSV columns to Product fields
+     * @return The compiled plan
+     */
+    static CsvBindingPlan compile(String[] headers, Map<String, String> fieldMapping) {
+        List<Integer> columns = new ArrayList<>();
+        List<String> fieldNames = new ArrayList<>();
+        List<FieldBinder> binders = new ArrayList<>();
+
+        for (Map.Entry<String, String> mapping : fieldMapping.entrySet()) {
+            int column = lastIndexOf(headers, mapping.getKey());
+            if (column < 0) {
+                continue;
+            }
+            columns.add(column);
+            fieldNames.add(mapping.getValue());
+            binders.add(binderFor(mapping.getValue()));
+        }
+
+        int[] columnIndexes = new int[columns.size()];
+        for (int i = 0; i < columnIndexes.length; i++) {
+            columnIndexes[i] = columns.get(i);
+        }
+        return new CsvBindingPlan(columnIndexes, fieldNames.toArray(new String[0]),
+                                  binders.toArray(new FieldBinder[0]), headers.length);
+    }
+
+    /**
+     * Columns read by at least one binding; other columns need not be materialized
+     */
+    boolean[] getUsedColumns() {
+        return usedColumns;
+    }
+
+    /**
+     * Apply every binding to a product
+     *
+     * @param product The product to populate
+     * @param values Row values indexed by column; unused columns may be null
+     * @return Number of cells in the row that could not be parsed
+     */
+    int apply(Product product, String[] values) {
+        int cellErrors = 0;
+        for (int i = 0; i < binders.length; i++) {
+            String value = values[columns[i]];
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            try {
+                if (!binders[i].bind(product, value)) {
+                    cellErrors++;
+                }
+            } catch (Exception e) {
+                System.err.println("Error setting field " + fieldNames[i] + " with value " + value + ": " + e.getMessage());
+                cellErrors++;
+            }
+        }
+        return cellErrors;
+    }
+
+    /**
+     * Header lookup matching the previous per-row map, where a repeated header kept its last value
+     */
+    private static int lastIndexOf(String[] headers, String column) {
+        for (int i = headers.length - 1; i >= 0; i--) {
+            if (headers[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Resolve the setter for a Product field name
+     *
+     * @param fieldName The field name from the mapping
+     * @return Setter for the field; unknown names become custom attributes
+     */
+    private static FieldBinder binderFor(String fieldName) {
+        switch (fieldName.toLowerCase()) {
+            case "id":
+                return text(Product::setId);
+            case "name":
+                return text(Product::setName);
+            case "description":
+                return text(Product::setDescription);
+            case "brand":
+                return text(Product::setBrand);
+            case "category":
+                return text(Product::setCategory);
+            case "price":
+                return (product, value) -> {
+                    BigDecimal price = CsvValueParser.parsePrice(value);
+                    if (price == null) {
+                        return false;
+                    }
+                    product.setPrice(price);
+                    return true;
+                };
+            case "currency":
+                return text(Product::setCurrency);
+            case "sku":
+                return text(Product::setSku);
+            case "image":
+                return text(Product::setImage);
+            case "tags":
+                return text((product, value) -> product.setTags(Arrays.asList(value.split(";"))));
+            case "instock":
+            case "in_stock":
+            case "in-stock":
+                return text((product, value) -> product.setInStock(Boolean.parseBoolean(value) ||
+                                                                   value.equalsIgnoreCase("yes") ||
+                                                                   value.equalsIgnoreCase("y") ||
+                                                                   value.equals("1")));
+            case "stockquantity":
+            case "stock_quantity":
+            case "stock-quantity":
+                return (product, value) -> {
+                    long quantity = CsvValueParser.parseInt(value);
+                    if (quantity == CsvValueParser.INVALID_INT) {
+                        return false;
+                    }
+                    product.setStockQuantity((int) quantity);
+                    return true;
+                };
+            case "manufacturer":
+                return text(Product::setManufacturer);
+            case "model":
+                return text(Product::setModel);
+            case "specifications":
+            case "specs":
+                return text((product, value) -> product.setSpecifications(Arrays.asList(value.split(";"))));
+            case "createdat":
+            case "created_at":
+            case "created-at":
+                return timestamp(Product::setCreatedAt);
+            case "updatedat":
+            case "updated_at":
+            case "updated-at":
+                return timestamp(Product::setUpdatedAt);
+            case "color":
+                return text((product, value) -> product.addCustomAttribute("color", value));
+            case "rating":
+                return (product, value) -> {
+                    double rating = CsvValueParser.parseDouble(value);
+                    if (Double.isNaN(rating)) {
+                        // Kept as text like before, but still reported as a bad cell
+                        product.addCustomAttribute("rating", value);
+                        return false;
+                    }
+                    product.addCustomAttribute("rating", rating);
+                    return true;
+                };
+            case "categoryid":
+            case "category_id":
+                return text((product, value) -> product.addCustomAttribute("categoryId", value));
+            default:
+                // Handle custom attributes
+                return text((product, value) -> product.addCustomAttribute(fieldName, value));
+        }
+    }
+
+    private static FieldBinder text(BiConsumer<Product, String> setter) {
+        return (product, value) -> {
+            setter.accept(product, value);
+            return true;
+        };
+    }
+
+    private static FieldBinder timestamp(BiConsumer<Product, LocalDateTime> setter) {
+        return (product, value) -> {
+            LocalDateTime timestamp = CsvValueParser.parseTimestamp(value);
+            if (timestamp == null) {
+                return false;
+            }
+            setter.accept(product, timestamp);
+            return true;
+        };
+    }
+}
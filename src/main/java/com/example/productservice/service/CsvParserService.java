@@ -1,24 +1,54 @@
 package com.example.productservice.service;
 
 import com.example.productservice.model.Product;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.math.BigDecimal;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 @Service
 public class CsvParserService {
     
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    /** Size of the mapped window used when scanning for chunk boundaries */
+    private static final int SCAN_WINDOW_BYTES = 64 * 1024 * 1024;
+    
+    /** Upper bound on distinct feed layouts kept in the binding plan cache */
+    private static final int MAX_CACHED_PLANS = 256;
+    
+    // Compiled column bindings keyed by header row and field mapping
+    private final Map<String, CsvBindingPlan> bindingPlans = new ConcurrentHashMap<>();
+    
+    @Value("${product.ingest.parallelism:0}")
+    private int parserParallelism;
+    
+    @Value("${product.ingest.chunk-size-bytes:8388608}")
+    private long chunkSizeBytes;
+    
+    @Value("${product.ingest.max-in-flight-bytes:33554432}")
+    private long maxInFlightBytes;
     
     /**
      * Parse CSV file and convert to Product objects
+     * gzip and zlib compressed files are decompressed while parsing
      * 
      * @param file The uploaded CSV file
      * @param fieldMapping Configuration for mapping CSV columns to Product fields
@@ -26,101 +56,358 @@ public class CsvParserService {
      */
     public List<Product> parseCsvFile(MultipartFile file, Map<String, String> fieldMapping) throws IOException {
         List<Product> products = new ArrayList<>();
+        parseCsvStream(FeedInput.open(file.getInputStream()), fieldMapping, products::add);
+        return products;
+    }
+    
+    /**
+     * Parse CSV data row by row, handing each Product to the consumer as soon as it is mapped
+     * Nothing is accumulated, so memory use does not depend on the size of the feed
+     * 
+     * @param input The CSV data; closed when parsing completes
+     * @param fieldMapping Configuration for mapping CSV columns to Product fields
+     * @param consumer Receives every successfully mapped Product in file order
+     * @return Row statistics for the parse
+     */
+    public ParseStats parseCsvStream(InputStream input, Map<String, String> fieldMapping, Consumer<Product> consumer) throws IOException {
+        ParseStats stats = new ParseStats();
         
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            String line;
+        try (Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8)) {
+            CsvTokenizer tokenizer = new CsvTokenizer(reader);
             String[] headers = null;
-            int lineNumber = 0;
+            CsvBindingPlan plan = null;
             
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-                
+            while (tokenizer.nextRecord()) {
                 // Skip empty lines
-                if (line.trim().isEmpty()) {
+                if (tokenizer.isBlankRecord()) {
                     continue;
                 }
                 
-                // Parse headers from first line
+                // Parse headers from first record
                 if (headers == null) {
-                    headers = parseCsvLine(line);
+                    headers = tokenizer.getFields();
+                    plan = bindingPlan(headers, fieldMapping);
                     continue;
                 }
                 
-                // Parse data line
-                String[] values = parseCsvLine(line);
-                if (values.length != headers.length) {
-                    System.err.println("Warning: Line " + lineNumber + " has " + values.length + 
-                                     " columns but expected " + headers.length);
-                    continue;
-                }
-                
-                Product product = mapCsvRowToProduct(headers, values, fieldMapping);
+                // Parse data record
+                Product product = parseDataRecord(tokenizer, headers.length, plan, stats);
                 if (product != null) {
-                    products.add(product);
+                    consumer.accept(product);
                 }
             }
         }
         
-        return products;
+        return stats;
+    }
+    
+    /**
+     * Parse a CSV file in parallel chunks
+     * The file is memory-mapped and split on record boundaries outside quoted fields; chunks are
+     * parsed on a fork-join pool and handed to the consumer in file order with stable line numbers
+     * 
+     * @param path The CSV file
+     * @param fieldMapping Configuration for mapping CSV columns to Product fields
+     * @param consumer Receives every successfully mapped Product in file order
+     * @return Row statistics for the parse
+     */
+    public ParseStats parseCsvFileParallel(Path path, Map<String, String> fieldMapping, Consumer<Product> consumer) throws IOException {
+        return parseCsvFileParallel(path, fieldMapping, consumer, bytes -> {});
+    }
+    
+    /**
+     * Parse a CSV file in parallel chunks, reporting progress as chunks are handed to the consumer
+     * 
+     * @param path The CSV file
+     * @param fieldMapping Configuration for mapping CSV columns to Product fields
+     * @param consumer Receives every successfully mapped Product in file order
+     * @param progress Receives the file offset up to which rows have been consumed
+     * @return Row statistics for the parse
+     */
+    public ParseStats parseCsvFileParallel(Path path, Map<String, String> fieldMapping, Consumer<Product> consumer,
+                                           LongConsumer progress) throws IOException {
+        return parseCsvFileParallel(path, fieldMapping, consumer, progress, 0);
     }
     
     /**
-     * Parse a CSV line handling quoted values and commas within quotes
+     * Parse a CSV file in parallel chunks, starting at a record boundary reported by an earlier parse
+     * The header is still read from the start of the file and line numbers are those of the whole file
      * 
-     * @param line The CSV line to parse
-     * @return Array of field values
+     * @param path The CSV file
+     * @param fieldMapping Configuration for mapping CSV columns to Product fields
+     * @param consumer Receives every successfully mapped Product after the start offset in file order
+     * @param progress Receives the file offset up to which rows have been consumed
+     * @param startOffset A chunk end offset previously passed to a progress callback for this file, or 0
+     * @return Row statistics for the rows after the start offset
+     * @throws IOException if the start offset is not a record boundary of the file
      */
-    private String[] parseCsvLine(String line) {
-        List<String> fields = new ArrayList<>();
+    public ParseStats parseCsvFileParallel(Path path, Map<String, String> fieldMapping, Consumer<Product> consumer,
+                                           LongConsumer progress, long startOffset) throws IOException {
+        ParseStats stats = new ParseStats();
+        int parallelism = parserParallelism > 0 ? parserParallelism : Runtime.getRuntime().availableProcessors();
+        // Every worker gets a chunk within the in-flight budget, however many cores there are
+        long chunkBytes = Math.max(1024 * 1024, Math.min(chunkSizeBytes, maxInFlightBytes / parallelism));
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<long[]> chunks = splitIntoChunks(channel, chunkBytes, startOffset);
+            if (chunks.isEmpty()) {
+                return stats;
+            }
+            
+            // The header is parsed on the calling thread from the first chunk
+            long[] firstChunk = chunks.get(0);
+            String[] headers = readHeaders(channel, firstChunk);
+            if (headers == null) {
+                return stats;
+            }
+            CsvBindingPlan plan = bindingPlan(headers, fieldMapping);
+            
+            int firstIndex = 0;
+            while (firstIndex < chunks.size() && chunks.get(firstIndex)[0] < startOffset) {
+                firstIndex++;
+            }
+            if (startOffset > 0 && startOffset < channel.size() &&
+                (firstIndex == chunks.size() || chunks.get(firstIndex)[0] != startOffset)) {
+                throw new IOException("Offset " + startOffset + " is not a record boundary of " + path);
+            }
+            
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                Deque<Future<ChunkResult>> window = new ArrayDeque<>();
+                Deque<long[]> windowChunks = new ArrayDeque<>();
+                long windowBytes = 0;
+                for (long[] chunk : chunks.subList(firstIndex, chunks.size())) {
+                    // Parsed chunks are held as products until the consumer takes them, so bound both their
+                    // number and their source bytes; a single chunk is always allowed
+                    long chunkLength = chunk[1] - chunk[0];
+                    while (!window.isEmpty() && (window.size() >= parallelism * 2 || windowBytes + chunkLength > maxInFlightBytes)) {
+                        long[] drained = windowChunks.poll();
+                        drainChunk(window.poll(), stats, consumer);
+                        windowBytes -= drained[1] - drained[0];
+                        progress.accept(drained[1]);
+                    }
+                    window.add(pool.submit(() -> parseChunk(channel, chunk, headers.length, plan)));
+                    windowChunks.add(chunk);
+                    windowBytes += chunkLength;
+                }
+                while (!window.isEmpty()) {
+                    drainChunk(window.poll(), stats, consumer);
+                    progress.accept(windowChunks.poll()[1]);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        
+        return stats;
+    }
+    
+    /**
+     * Split a file into chunks that end on a record terminator outside quoted fields
+     * Terminators are those of CsvTokenizer: LF, CRLF and a bare CR. CSV delimiters, quotes and
+     * terminators are ASCII, so scanning raw UTF-8 bytes is safe
+     * 
+     * @param boundary An offset that must start a chunk if it is a record boundary, or 0
+     * @return Chunks as {startOffset, endOffset, firstLineNumber}
+     */
+    private List<long[]> splitIntoChunks(FileChannel channel, long targetChunkBytes, long boundary) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        long size = channel.size();
+        long chunkStart = 0;
+        long chunkFirstLine = 1;
+        long lineNumber = 1;
         boolean inQuotes = false;
-        StringBuilder currentField = new StringBuilder();
+        boolean pendingCr = false;
         
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
+        for (long windowStart = 0; windowStart < size; windowStart += SCAN_WINDOW_BYTES) {
+            long windowLength = Math.min(SCAN_WINDOW_BYTES, size - windowStart);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
             
-            if (c == '"') {
-                inQuotes = !inQuotes;
-            } else if (c == ',' && !inQuotes) {
-                fields.add(currentField.toString().trim());
-                currentField = new StringBuilder();
-            } else {
-                currentField.append(c);
+            for (int i = 0; i < windowLength; i++) {
+                byte b = buffer.get(i);
+                if (pendingCr) {
+                    pendingCr = false;
+                    if (b != '\n') {
+                        // The previous byte was a CR without LF, which ends a record on its own
+                        lineNumber++;
+                        long position = windowStart + i;
+                        if (!inQuotes && (position - chunkStart >= targetChunkBytes || position == boundary)) {
+                            chunks.add(new long[] { chunkStart, position, chunkFirstLine });
+                            chunkStart = position;
+                            chunkFirstLine = lineNumber;
+                        }
+                    }
+                }
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n') {
+                    lineNumber++;
+                    long position = windowStart + i + 1;
+                    if (!inQuotes && (position - chunkStart >= targetChunkBytes || position == boundary)) {
+                        chunks.add(new long[] { chunkStart, position, chunkFirstLine });
+                        chunkStart = position;
+                        chunkFirstLine = lineNumber;
+                    }
+                } else if (b == '\r') {
+                    pendingCr = true;
+                }
+            }
+        }
+        
+        if (chunkStart < size) {
+            chunks.add(new long[] { chunkStart, size, chunkFirstLine });
+        }
+        return chunks;
+    }
+    
+    /**
+     * Read the header row from the start of the first chunk
+     */
+    private String[] readHeaders(FileChannel channel, long[] firstChunk) throws IOException {
+        CsvTokenizer tokenizer = chunkTokenizer(decodeChunk(channel, firstChunk), firstChunk);
+        while (tokenizer.nextRecord()) {
+            if (!tokenizer.isBlankRecord()) {
+                return tokenizer.getFields();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Parse one chunk into products; runs on the fork-join pool
+     */
+    private ChunkResult parseChunk(FileChannel channel, long[] chunk, int columnCount, CsvBindingPlan plan) {
+        ChunkResult result = new ChunkResult();
+        try {
+            CsvTokenizer tokenizer = chunkTokenizer(decodeChunk(channel, chunk), chunk);
+            boolean headerPending = chunk[0] == 0;
+            
+            while (tokenizer.nextRecord()) {
+                if (tokenizer.isBlankRecord()) {
+                    continue;
+                }
+                
+                if (headerPending) {
+                    headerPending = false;
+                    continue;
+                }
+                
+                Product product = parseDataRecord(tokenizer, columnCount, plan, result.stats);
+                if (product != null) {
+                    result.products.add(product);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        
+        return result;
+    }
+    
+    private void drainChunk(Future<ChunkResult> future, ParseStats stats, Consumer<Product> consumer) throws IOException {
+        ChunkResult result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing CSV chunks", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
             }
+            throw new IOException("Error parsing CSV chunk: " + e.getCause().getMessage(), e.getCause());
         }
         
-        // Add the last field
-        fields.add(currentField.toString().trim());
+        stats.rowsParsed += result.stats.rowsParsed;
+        stats.rowsSkipped += result.stats.rowsSkipped;
+        stats.cellErrors += result.stats.cellErrors;
+        stats.rowsWithCellErrors += result.stats.rowsWithCellErrors;
+        for (Product product : result.products) {
+            consumer.accept(product);
+        }
+    }
+    
+    private CharBuffer decodeChunk(FileChannel channel, long[] chunk) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+        return StandardCharsets.UTF_8.decode(buffer);
+    }
+    
+    private static CsvTokenizer chunkTokenizer(CharBuffer text, long[] chunk) {
+        return new CsvTokenizer(text.array(), text.arrayOffset() + text.position(), text.remaining(), chunk[2]);
+    }
+    
+    /**
+     * Compiled bindings for a header row and field mapping, reused across uploads with the same layout
+     */
+    private CsvBindingPlan bindingPlan(String[] headers, Map<String, String> fieldMapping) {
+        StringBuilder signature = new StringBuilder();
+        for (String header : headers) {
+            signature.append(header).append('\0');
+        }
+        for (Map.Entry<String, String> mapping : fieldMapping.entrySet()) {
+            signature.append('\1').append(mapping.getKey()).append('\0').append(mapping.getValue());
+        }
         
-        return fields.toArray(new String[0]);
+        String key = signature.toString();
+        CsvBindingPlan plan = bindingPlans.get(key);
+        if (plan == null) {
+            if (bindingPlans.size() >= MAX_CACHED_PLANS) {
+                bindingPlans.clear();
+            }
+            plan = CsvBindingPlan.compile(headers, fieldMapping);
+            bindingPlans.put(key, plan);
+        }
+        return plan;
     }
     
     /**
-     * Map a CSV row to a Product object using field mapping configuration
+     * Map the current tokenizer record, updating the row statistics
      * 
-     * @param headers Array of column headers
-     * @param values Array of field values
-     * @param fieldMapping Mapping from CSV columns to Product fields
+     * @return Product object or null if the row was skipped
+     */
+    private Product parseDataRecord(CsvTokenizer tokenizer, int columnCount, CsvBindingPlan plan, ParseStats stats) {
+        if (tokenizer.getFieldCount() != columnCount) {
+            System.err.println("Warning: Line " + tokenizer.getLineNumber() + " has " + tokenizer.getFieldCount() + 
+                             " columns but expected " + columnCount);
+            stats.rowsSkipped++;
+            return null;
+        }
+        
+        // Only columns referenced by the field mapping are turned into Strings
+        boolean[] usedColumns = plan.getUsedColumns();
+        String[] values = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            if (usedColumns[i]) {
+                values[i] = tokenizer.getField(i);
+            }
+        }
+        
+        Product product = mapCsvRowToProduct(plan, values, stats);
+        if (product != null) {
+            stats.rowsParsed++;
+        } else {
+            stats.rowsSkipped++;
+        }
+        return product;
+    }
+    
+    /**
+     * Map a CSV row to a Product object using the compiled column bindings
+     * 
+     * @param plan Column bindings compiled from the header row and field mapping
+     * @param values Array of trimmed field values; null for columns the mapping does not use
+     * @param stats Receives the number of cells that could not be parsed
      * @return Product object or null if mapping fails
      */
-    private Product mapCsvRowToProduct(String[] headers, String[] values, Map<String, String> fieldMapping) {
+    private Product mapCsvRowToProduct(CsvBindingPlan plan, String[] values, ParseStats stats) {
         try {
             Product product = new Product();
             
-            // Create a map of header to value for easier lookup
-            Map<String, String> rowData = new HashMap<>();
-            for (int i = 0; i < headers.length && i < values.length; i++) {
-                rowData.put(headers[i].trim(), values[i].trim());
-            }
-            
-            // Map each field using the field mapping configuration
-            for (Map.Entry<String, String> mapping : fieldMapping.entrySet()) {
-                String csvColumn = mapping.getKey();
-                String productField = mapping.getValue();
-                String value = rowData.get(csvColumn);
-                
-                if (value != null && !value.isEmpty()) {
-                    setProductField(product, productField, value);
-                }
+            // Map each bound column using the field mapping configuration
+            int cellErrors = plan.apply(product, values);
+            if (cellErrors > 0) {
+                stats.cellErrors += cellErrors;
+                stats.rowsWithCellErrors++;
             }
             
             // Set default values if not provided
@@ -148,117 +435,6 @@ public class CsvParserService {
         }
     }
     
-    /**
-     * Set a product field value using reflection-like approach
-     * 
-     * @param product The product object
-     * @param fieldName The field name to set
-     * @param value The value to set
-     */
-    private void setProductField(Product product, String fieldName, String value) {
-        try {
-            switch (fieldName.toLowerCase()) {
-                case "id":
-                    product.setId(value);
-                    break;
-                case "name":
-                    product.setName(value);
-                    break;
-                case "description":
-                    product.setDescription(value);
-                    break;
-                case "brand":
-                    product.setBrand(value);
-                    break;
-                case "category":
-                    product.setCategory(value);
-                    break;
-                case "price":
-                    if (!value.isEmpty()) {
-                        product.setPrice(new BigDecimal(value.replaceAll("[^\\d.-]", "")));
-                    }
-                    break;
-                case "currency":
-                    product.setCurrency(value);
-                    break;
-                case "sku":
-                    product.setSku(value);
-                    break;
-                case "image":
-                    product.setImage(value);
-                    break;
-                case "tags":
-                    if (!value.isEmpty()) {
-                        product.setTags(Arrays.asList(value.split(";")));
-                    }
-                    break;
-                case "instock":
-                case "in_stock":
-                case "in-stock":
-                    product.setInStock(Boolean.parseBoolean(value) || 
-                                     value.equalsIgnoreCase("yes") || 
-                                     value.equalsIgnoreCase("y") ||
-                                     value.equals("1"));
-                    break;
-                case "stockquantity":
-                case "stock_quantity":
-                case "stock-quantity":
-                    if (!value.isEmpty()) {
-                        product.setStockQuantity(Integer.parseInt(value));
-                    }
-                    break;
-                case "manufacturer":
-                    product.setManufacturer(value);
-                    break;
-                case "model":
-                    product.setModel(value);
-                    break;
-                case "specifications":
-                case "specs":
-                    if (!value.isEmpty()) {
-                        product.setSpecifications(Arrays.asList(value.split(";")));
-                    }
-                    break;
-                case "createdat":
-                case "created_at":
-                case "created-at":
-                    if (!value.isEmpty()) {
-                        product.setCreatedAt(LocalDateTime.parse(value, DATE_FORMATTER));
-                    }
-                    break;
-                case "updatedat":
-                case "updated_at":
-                case "updated-at":
-                    if (!value.isEmpty()) {
-                        product.setUpdatedAt(LocalDateTime.parse(value, DATE_FORMATTER));
-                    }
-                    break;
-                case "color":
-                    product.addCustomAttribute("color", value);
-                    break;
-                case "rating":
-                    if (!value.isEmpty()) {
-                        try {
-                            product.addCustomAttribute("rating", Double.parseDouble(value));
-                        } catch (NumberFormatException e) {
-                            product.addCustomAttribute("rating", value);
-                        }
-                    }
-                    break;
-                case "categoryid":
-                case "category_id":
-                    product.addCustomAttribute("categoryId", value);
-                    break;
-                default:
-                    // Handle custom attributes
-                    product.addCustomAttribute(fieldName, value);
-                    break;
-            }
-        } catch (Exception e) {
-            System.err.println("Error setting field " + fieldName + " with value " + value + ": " + e.getMessage());
-        }
-    }
-    
     /**
      * Get default field mapping configuration for product_feed.csv format
      * This maps the specific CSV columns to Product model fields
@@ -333,4 +509,32 @@ public class CsvParserService {
         
         return mapping;
     }
+    
+    /**
+     * Products and statistics of one parsed chunk
+     */
+    private static class ChunkResult {
+        private final List<Product> products = new ArrayList<>();
+        private final ParseStats stats = new ParseStats();
+    }
+    
+    /**
+     * Row statistics of a CSV parse
+     */
+    public static class ParseStats {
+        private long rowsParsed;
+        private long rowsSkipped;
+        private long cellErrors;
+        private long rowsWithCellErrors;
+        
+        public long getRowsParsed() { return rowsParsed; }
+        
+        public long getRowsSkipped() { return rowsSkipped; }
+        
+        /** Number of cells whose value could not be parsed for their field */
+        public long getCellErrors() { return cellErrors; }
+        
+        /** Number of mapped rows with at least one unparseable cell */
+        public long getRowsWithCellErrors() { return rowsWithCellErrors; }
+    }
 }
@@ -0,0 +1,224 @@
+package com.example.productservice.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reusable RFC 4180 CSV tokenizer.
+ *
+ * Records are read into a single reusable char buffer and fields are exposed
+ * as slices of it, so no String is created until a caller asks for a field.
+ * Supports quoted fields, escaped quotes ({@code ""}), delimiters and line
+ * breaks inside quotes, and LF, CRLF or CR record terminators. Field values
+ * are returned trimmed, as the previous line parser did.
+ */
+public class CsvTokenizer {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char[] input;
+    private int inputPosition;
+    private int inputLength;
+
+    private char[] record = new char[1024];
+    private int recordLength;
+    private int[] fieldStarts = new int[32];
+    private int[] fieldEnds = new int[32];
+    private int fieldCount;
+
+    private long nextLineNumber;
+    private long recordLineNumber;
+
+    /**
+     * Tokenize characters from a reader
+     *
+     * @param reader The CSV source
+     */
+    public CsvTokenizer(Reader reader) {
+        this.reader = reader;
+        this.input = new char[READ_BUFFER_SIZE];
+        this.nextLineNumber = 1;
+    }
+
+    /**
+     * Tokenize an in-memory character range without copying it
+     *
+     * @param chars The CSV characters
+     * @param offset Start of the range
+     * @param length Length of the range
+     * @param firstLineNumber Physical line number of the first character
+     */
+    public CsvTokenizer(char[] chars, int offset, int length, long firstLineNumber) {
+        this.reader = null;
+        this.input = chars;
+        this.inputPosition = offset;
+        this.inputLength = offset + length;
+        this.nextLineNumber = firstLineNumber;
+    }
+
+    /**
+     * Advance to the next record
+     *
+     * @return false when the input is exhausted
+     */
+    public boolean nextRecord() throws IOException {
+        recordLength = 0;
+        fieldCount = 0;
+        recordLineNumber = nextLineNumber;
+
+        int c = read();
+        if (c < 0) {
+            return false;
+        }
+
+        boolean inQuotes = false;
+        int fieldStart = 0;
+
+        while (c >= 0) {
+            if (c == '"') {
+                if (inQuotes && peek() == '"') {
+                    // Escaped quote inside a quoted field
+                    read();
+                    append('"');
+                } else {
+                    inQuotes = !inQuotes;
+                }
+            } else if (inQuotes) {
+                if (c == '\n' || (c == '\r' && peek() != '\n')) {
+                    nextLineNumber++;
+                }
+                append((char) c);
+            } else if (c == ',') {
+                endField(fieldStart);
+                fieldStart = recordLength;
+            } else if (c == '\n') {
+                nextLineNumber++;
+                break;
+            } else if (c == '\r') {
+                if (peek() == '\n') {
+                    read();
+                }
+                nextLineNumber++;
+                break;
+            } else {
+                append((char) c);
+            }
+            c = read();
+        }
+
+        endField(fieldStart);
+        return true;
+    }
+
+    /**
+     * Number of fields in the current record
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Physical line number on which the current record starts
+     */
+    public long getLineNumber() {
+        return recordLineNumber;
+    }
+
+    /**
+     * Returns true when the current record is an empty or whitespace-only line
+     */
+    public boolean isBlankRecord() {
+        return fieldCount == 1 && isBlankField(0);
+    }
+
+    /**
+     * Returns true when a field is empty after trimming
+     */
+    public boolean isBlankField(int index) {
+        return trimmedStart(index) >= trimmedEnd(index);
+    }
+
+    /**
+     * Materialize a trimmed field value
+     */
+    public String getField(int index) {
+        int start = trimmedStart(index);
+        int end = trimmedEnd(index);
+        return start < end ? new String(record, start, end - start) : "";
+    }
+
+    /**
+     * Copy every field of the current record into a new array
+     */
+    public String[] getFields() {
+        String[] fields = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            fields[i] = getField(i);
+        }
+        return fields;
+    }
+
+    private int trimmedStart(int index) {
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+        while (start < end && record[start] <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private int trimmedEnd(int index) {
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+        while (end > start && record[end - 1] <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private void endField(int fieldStart) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = fieldStart;
+        fieldEnds[fieldCount] = recordLength;
+        fieldCount++;
+    }
+
+    private void append(char c) {
+        if (recordLength == record.length) {
+            record = Arrays.copyOf(record, recordLength * 2);
+        }
+        record[recordLength++] = c;
+    }
+
+    private int read() throws IOException {
+        if (inputPosition >= inputLength && !fill()) {
+            return -1;
+        }
+        return input[inputPosition++];
+    }
+
+    private int peek() throws IOException {
+        if (inputPosition >= inputLength && !fill()) {
+            return -1;
+        }
+        return input[inputPosition];
+    }
+
+    private boolean fill() throws IOException {
+        if (reader == null) {
+            return false;
+        }
+        int read = reader.read(input, 0, input.length);
+        if (read <= 0) {
+            return false;
+        }
+        inputPosition = 0;
+        inputLength = read;
+        return true;
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.productservice.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+
+/**
+ * Parsers for the numeric and timestamp CSV columns.
+ *
+ * Values are scanned character by character instead of going through regular
+ * expressions or exception-driven library parsing. Every parser reports an
+ * invalid cell through its return value so callers can count it.
+ */
+final class CsvValueParser {
+
+    /** Returned by {@link #parseInt(String)} for an invalid cell */
+    static final long INVALID_INT = Long.MIN_VALUE;
+
+    /** Digits that always fit in an unscaled long */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    /** Powers of ten that are exact as doubles */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** Length of a "yyyy-MM-dd HH:mm:ss" timestamp */
+    private static final int TIMESTAMP_LENGTH = 19;
+
+    /** Length of the "yyyy-MM-dd" prefix */
+    private static final int DATE_LENGTH = 10;
+
+    // Feeds usually carry many rows from the same day, so the last date prefix is kept
+    private static volatile CachedDate lastDate;
+
+    private CsvValueParser() {}
+
+    /**
+     * Parse a price, ignoring currency symbols, grouping separators and other
+     * characters that are not digits, '.' or a leading '-'
+     *
+     * @param value The cell value
+     * @return The price or null if the cell holds no valid number
+     */
+    static BigDecimal parsePrice(String value) {
+        long unscaled = 0;
+        int significantDigits = 0;
+        int scale = 0;
+        boolean sawDigit = false;
+        boolean negative = false;
+        boolean fraction = false;
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (significantDigits == MAX_LONG_DIGITS) {
+                    return parseLongPrice(value);
+                }
+                unscaled = unscaled * 10 + (c - '0');
+                if (unscaled != 0) {
+                    significantDigits++;
+                }
+                if (fraction) {
+                    scale++;
+                }
+                sawDigit = true;
+            } else if (c == '.') {
+                if (fraction) {
+                    return null;
+                }
+                fraction = true;
+            } else if (c == '-') {
+                if (negative || sawDigit || fraction) {
+                    return null;
+                }
+                negative = true;
+            }
+        }
+
+        if (!sawDigit) {
+            return null;
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+    }
+
+    /**
+     * Parse a whole number with an optional sign
+     *
+     * @param value The cell value
+     * @return The number or {@link #INVALID_INT} if the cell is not a valid int
+     */
+    static long parseInt(String value) {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            i++;
+        }
+        if (i == length || length - i > 10) {
+            return INVALID_INT;
+        }
+
+        long result = 0;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID_INT;
+            }
+            result = result * 10 + (c - '0');
+        }
+        result = negative ? -result : result;
+        return result < Integer.MIN_VALUE || result > Integer.MAX_VALUE ? INVALID_INT : result;
+    }
+
+    /**
+     * Parse a decimal number such as a rating
+     * Plain decimals are converted directly; other forms fall back to the JDK parser
+     *
+     * @param value The cell value
+     * @return The number or NaN if the cell is not a valid number
+     */
+    static double parseDouble(String value) {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            i++;
+        }
+
+        long unscaled = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                unscaled = unscaled * 10 + (c - '0');
+                digits++;
+                if (fraction) {
+                    scale++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                return parseOtherDouble(value);
+            }
+        }
+
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        if (digits > 15 || scale >= POWERS_OF_TEN.length) {
+            return parseOtherDouble(value);
+        }
+        // Both operands are exact doubles, so the division is correctly rounded like Double.parseDouble
+        double result = unscaled / POWERS_OF_TEN[scale];
+        return negative ? -result : result;
+    }
+
+    /**
+     * Parse a "yyyy-MM-dd HH:mm:ss" timestamp
+     * A day past the end of the month is clamped to the last day, as the formatter did
+     *
+     * @param value The cell value
+     * @return The timestamp or null if the cell is not a valid timestamp
+     */
+    static LocalDateTime parseTimestamp(String value) {
+        if (value.length() != TIMESTAMP_LENGTH || value.charAt(10) != ' ' ||
+            value.charAt(13) != ':' || value.charAt(16) != ':') {
+            return null;
+        }
+
+        LocalDate date = parseDate(value);
+        int hour = twoDigits(value, 11);
+        int minute = twoDigits(value, 14);
+        int second = twoDigits(value, 17);
+        if (date == null || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+        return date.atTime(hour, minute, second);
+    }
+
+    private static LocalDate parseDate(String value) {
+        CachedDate cached = lastDate;
+        if (cached != null && value.regionMatches(0, cached.prefix, 0, DATE_LENGTH)) {
+            return cached.date;
+        }
+
+        if (value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return null;
+        }
+        int century = twoDigits(value, 0);
+        int yearOfCentury = twoDigits(value, 2);
+        int month = twoDigits(value, 5);
+        int day = twoDigits(value, 8);
+        if (century < 0 || yearOfCentury < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return null;
+        }
+
+        int year = century * 100 + yearOfCentury;
+        int monthLength = Month.of(month).length(Year.isLeap(year));
+        LocalDate date = LocalDate.of(year, month, Math.min(day, monthLength));
+        lastDate = new CachedDate(value.substring(0, DATE_LENGTH), date);
+        return date;
+    }
+
+    private static int twoDigits(String value, int offset) {
+        char tens = value.charAt(offset);
+        char ones = value.charAt(offset + 1);
+        if (tens < '0' || tens > '9' || ones < '0' || ones > '9') {
+            return -1;
+        }
+        return (tens - '0') * 10 + (ones - '0');
+    }
+
+    private static BigDecimal parseLongPrice(String value) {
+        StringBuilder number = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c >= '0' && c <= '9') || c == '.' || c == '-') {
+                number.append(c);
+            }
+        }
+        try {
+            return new BigDecimal(number.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static double parseOtherDouble(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static final class CachedDate {
+        private final String prefix;
+        private final LocalDate date;
+
+        private CachedDate(String prefix, LocalDate date) {
+            this.prefix = prefix;
+            this.date = date;
+        }
+    }
+}
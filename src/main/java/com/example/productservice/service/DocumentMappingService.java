@@ -4,9 +4,13 @@ import com.azure.search.documents.models.SearchResult;
 import com.example.productservice.model.Product;
 import com.example.productservice.model.ApparelProduct;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 @Service
@@ -17,6 +21,8 @@ public class DocumentMappingService {
     public DocumentMappingService() {
         this.objectMapper = new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
+        // Dates are ISO-8601 strings rather than arrays, which Edm.DateTimeOffset fields reject
+        this.objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
     }
     
     /**
@@ -43,9 +49,8 @@ public class DocumentMappingService {
         }
         
         try {
-            // Convert Map to JSON string, then deserialize to Product
-            String json = objectMapper.writeValueAsString(document);
-            return objectMapper.readValue(json, Product.class);
+            // Bind the Map directly to Product through a token buffer, without an intermediate JSON string
+            return objectMapper.convertValue(document, Product.class);
         } catch (Exception e) {
             System.err.println("Error mapping document to Product: " + e.getMessage());
             e.printStackTrace();
@@ -66,9 +71,8 @@ public class DocumentMappingService {
         }
         
         try {
-            // Convert Product to JSON string, then deserialize to Map
-            String json = objectMapper.writeValueAsString(product);
-            return objectMapper.readValue(json, Map.class);
+            // Bind the Product directly to a Map through a token buffer, without an intermediate JSON string
+            return toIndexDocument(product, objectMapper.convertValue(product, Map.class));
         } catch (Exception e) {
             System.err.println("Error mapping Product to document: " + e.getMessage());
             e.printStackTrace();
@@ -76,6 +80,25 @@ public class DocumentMappingService {
         }
     }
     
+    /**
+     * Adapt a bound Product to what the index accepts
+     * The JSON-LD @context and @type properties are not index fields, and Azure AI Search rejects documents
+     * with unknown fields; Edm.DateTimeOffset values need an offset, so local times are sent as UTC
+     */
+    private Map<String, Object> toIndexDocument(Product product, Map<String, Object> document) {
+        document.keySet().removeIf(name -> name.startsWith("@"));
+        putIndexDate(document, "createdAt", product.getCreatedAt());
+        putIndexDate(document, "updatedAt", product.getUpdatedAt());
+        return document;
+    }
+    
+    private static void putIndexDate(Map<String, Object> document, String field, LocalDateTime value) {
+        // Null dates stay out of the document, as with every other null property
+        if (value != null) {
+            document.put(field, value.atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        }
+    }
+    
     /**
      * Maps multiple search results to Product objects
      * 
@@ -121,9 +144,8 @@ public class DocumentMappingService {
         }
         
         try {
-            // Convert Map to JSON string, then deserialize to ApparelProduct
-            String json = objectMapper.writeValueAsString(document);
-            return objectMapper.readValue(json, ApparelProduct.class);
+            // Bind the Map directly to ApparelProduct through a token buffer, without an intermediate JSON string
+            return objectMapper.convertValue(document, ApparelProduct.class);
         } catch (Exception e) {
             System.err.println("Error mapping document to ApparelProduct: " + e.getMessage());
             e.printStackTrace();
@@ -144,9 +166,8 @@ public class DocumentMappingService {
         }
         
         try {
-            // Convert ApparelProduct to JSON string, then deserialize to Map
-            String json = objectMapper.writeValueAsString(apparelProduct);
-            return objectMapper.readValue(json, Map.class);
+            // Bind the ApparelProduct directly to a Map through a token buffer, without an intermediate JSON string
+            return toIndexDocument(apparelProduct, objectMapper.convertValue(apparelProduct, Map.class));
         } catch (Exception e) {
             System.err.println("Error mapping ApparelProduct to document: " + e.getMessage());
             e.printStackTrace();
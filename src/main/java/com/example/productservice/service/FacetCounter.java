@@ -0,0 +1,202 @@
+package com.example.productservice.service;
+
+import com.example.productservice.model.ApparelSemanticSearchResponse.FacetValue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Computes facet counts over a set of matching products of the local catalog.
+ *
+ * Facets use the Azure AI Search expression syntax, e.g. "brand,count:10,sort:count"
+ * or "price,interval:25". Counts for dictionary-encoded attributes come from
+ * the per-value bitmaps when every product matches, and from one pass over
+ * the code column otherwise; interval facets whose interval equals the bucket
+ * width of the measure intersect the bucket bitmaps with the matches, so
+ * their counts cost one bitmap AND per bucket.
+ */
+final class FacetCounter {
+
+    /** Values per facet when the expression does not set a count, as in Azure AI Search */
+    private static final int DEFAULT_COUNT = 10;
+
+    private FacetCounter() {
+    }
+
+    /**
+     * Count facets over the matching products
+     *
+     * @param catalog Columns of the snapshot the matches were selected from
+     * @param matches The matching products
+     * @param expressions Facet expressions; expressions on fields the catalog does not hold are skipped
+     * @return Facet values by field name, in expression order
+     */
+    static Map<String, List<FacetValue>> count(ColumnarCatalog catalog, CompressedBitmap matches, List<String> expressions) {
+        Map<String, List<FacetValue>> facets = new LinkedHashMap<>();
+        for (String expression : expressions) {
+            Spec spec = Spec.parse(expression);
+            ColumnarCatalog.Attribute attribute = ColumnarCatalog.Attribute.forField(spec.field);
+            ColumnarCatalog.Measure measure = ColumnarCatalog.Measure.forField(spec.field);
+            if (attribute != null) {
+                facets.put(spec.field, countValues(catalog, matches, attribute, spec));
+            } else if (measure != null && spec.interval > 0) {
+                facets.put(spec.field, countIntervals(catalog, matches, measure, spec.interval));
+            } else if (measure != null) {
+                facets.put(spec.field, countMeasureValues(catalog, matches, measure, spec));
+            }
+        }
+        return facets;
+    }
+
+    private static List<FacetValue> countValues(ColumnarCatalog catalog, CompressedBitmap matches,
+                                                ColumnarCatalog.Attribute attribute, Spec spec) {
+        List<String> values = catalog.values(attribute);
+        long[] counts = new long[values.size()];
+        if (matches.cardinality() == catalog.size()) {
+            // Every product matches, so the per-value bitmaps already hold the counts
+            for (int code = 0; code < counts.length; code++) {
+                counts[code] = catalog.withCode(attribute, code).cardinality();
+            }
+        } else {
+            int[] codes = catalog.codes(attribute);
+            matches.forEach(doc -> {
+                if (codes[doc] >= 0) {
+                    counts[codes[doc]]++;
+                }
+            });
+        }
+
+        List<FacetValue> facet = new ArrayList<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                facet.add(facetValue(values.get(code), counts[code]));
+            }
+        }
+        return top(facet, spec);
+    }
+
+    private static List<FacetValue> countIntervals(ColumnarCatalog catalog, CompressedBitmap matches,
+                                                   ColumnarCatalog.Measure measure, double interval) {
+        TreeMap<Long, Long> counts = new TreeMap<>();
+        if (interval == measure.getBucketWidth()) {
+            int[] ids = catalog.bucketIds(measure);
+            CompressedBitmap[] buckets = catalog.bucketBitmaps(measure);
+            boolean all = matches.cardinality() == catalog.size();
+            for (int i = 0; i < ids.length; i++) {
+                long count = all ? buckets[i].cardinality() : buckets[i].and(matches).cardinality();
+                if (count > 0) {
+                    counts.put((long) ids[i], count);
+                }
+            }
+        } else {
+            double[] column = catalog.measures(measure);
+            matches.forEach(doc -> {
+                if (!Double.isNaN(column[doc])) {
+                    counts.merge((long) Math.floor(column[doc] / interval), 1L, Long::sum);
+                }
+            });
+        }
+
+        // Interval facets are ordered by value
+        BigDecimal width = BigDecimal.valueOf(interval);
+        List<FacetValue> facet = new ArrayList<>(counts.size());
+        for (Map.Entry<Long, Long> entry : counts.entrySet()) {
+            facet.add(facetValue(format(BigDecimal.valueOf(entry.getKey()).multiply(width)), entry.getValue()));
+        }
+        return facet;
+    }
+
+    private static List<FacetValue> countMeasureValues(ColumnarCatalog catalog, CompressedBitmap matches,
+                                                       ColumnarCatalog.Measure measure, Spec spec) {
+        double[] column = catalog.measures(measure);
+        Map<Double, Long> counts = new HashMap<>();
+        matches.forEach(doc -> {
+            if (!Double.isNaN(column[doc])) {
+                counts.merge(column[doc], 1L, Long::sum);
+            }
+        });
+
+        List<FacetValue> facet = new ArrayList<>(counts.size());
+        for (Map.Entry<Double, Long> entry : counts.entrySet()) {
+            facet.add(facetValue(format(BigDecimal.valueOf(entry.getKey())), entry.getValue()));
+        }
+        return top(facet, spec);
+    }
+
+    /**
+     * Order values as requested by sort (count, -count, value or -value) and keep the requested number
+     * A count of 0 keeps every value
+     */
+    private static List<FacetValue> top(List<FacetValue> facet, Spec spec) {
+        Comparator<FacetValue> byValue = Comparator.comparing(FacetValue::getValue);
+        Comparator<FacetValue> byCount = Comparator.comparing(FacetValue::getCount);
+        switch (spec.sort) {
+            case "value":
+                facet.sort(byValue);
+                break;
+            case "-value":
+                facet.sort(byValue.reversed());
+                break;
+            case "-count":
+                facet.sort(byCount.thenComparing(byValue));
+                break;
+            default:
+                facet.sort(byCount.reversed().thenComparing(byValue));
+                break;
+        }
+        return spec.count > 0 && facet.size() > spec.count ? new ArrayList<>(facet.subList(0, spec.count)) : facet;
+    }
+
+    private static FacetValue facetValue(String value, long count) {
+        FacetValue facetValue = new FacetValue();
+        facetValue.setValue(value);
+        facetValue.setCount(count);
+        return facetValue;
+    }
+
+    private static String format(BigDecimal value) {
+        return value.signum() == 0 ? "0" : value.stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * A parsed facet expression
+     */
+    private static final class Spec {
+        private String field;
+        private int count = DEFAULT_COUNT;
+        private String sort = "count";
+        private double interval;
+
+        private static Spec parse(String expression) {
+            String[] parts = expression.split(",");
+            Spec spec = new Spec();
+            spec.field = parts[0].trim();
+            for (int i = 1; i < parts.length; i++) {
+                String[] option = parts[i].split(":", 2);
+                if (option.length != 2) {
+                    continue;
+                }
+                String name = option[0].trim();
+                String value = option[1].trim();
+                try {
+                    if ("count".equals(name)) {
+                        spec.count = Math.max(0, Integer.parseInt(value));
+                    } else if ("interval".equals(name)) {
+                        spec.interval = Double.parseDouble(value);
+                    } else if ("sort".equals(name)) {
+                        spec.sort = value;
+                    }
+                } catch (NumberFormatException e) {
+                    // Ignore the malformed option and keep its default, rather than failing the search
+                }
+            }
+            return spec;
+        }
+    }
+}
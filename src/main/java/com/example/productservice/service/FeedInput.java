@@ -0,0 +1,213 @@
+package com.example.productservice.service;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A CSV feed stream that is transparently decompressed.
+ *
+ * The format is detected from the magic bytes at the start of the stream:
+ * gzip and zlib (deflate) feeds are inflated incrementally as the parser
+ * reads, without a temporary file or a full in-memory inflate. Bytes are
+ * counted both before and after decompression for throughput reporting.
+ */
+public class FeedInput extends FilterInputStream {
+
+    public static final String NONE = "none";
+    public static final String GZIP = "gzip";
+    public static final String ZLIB = "zlib";
+    public static final String ZSTD = "zstd";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String compression;
+    private final CountingInputStream compressed;
+    private long uncompressedBytes;
+
+    private FeedInput(InputStream decoded, String compression, CountingInputStream compressed) {
+        super(decoded);
+        this.compression = compression;
+        this.compressed = compressed;
+    }
+
+    /**
+     * Open a feed, detecting its compression from the first bytes
+     *
+     * @param raw The feed as received; closed with the returned stream
+     * @return The decoded feed
+     * @throws IllegalArgumentException if the feed uses an unsupported compression format
+     */
+    public static FeedInput open(InputStream raw) throws IOException {
+        return open(raw, bytes -> {});
+    }
+
+    /**
+     * Open a feed, reporting every block of raw bytes read
+     *
+     * @param raw The feed as received; closed with the returned stream
+     * @param rawBytesListener Receives the number of raw (possibly compressed) bytes per read
+     * @return The decoded feed
+     * @throws IllegalArgumentException if the feed uses an unsupported compression format
+     */
+    public static FeedInput open(InputStream raw, LongConsumer rawBytesListener) throws IOException {
+        CountingInputStream counted = new CountingInputStream(raw, rawBytesListener);
+        BufferedInputStream buffered = new BufferedInputStream(counted, BUFFER_SIZE);
+
+        byte[] header = new byte[4];
+        buffered.mark(header.length);
+        int length = buffered.readNBytes(header, 0, header.length);
+        buffered.reset();
+
+        String compression = detect(header, length);
+        switch (compression) {
+            case GZIP:
+                return new FeedInput(new GZIPInputStream(buffered, BUFFER_SIZE), compression, counted);
+            case ZLIB:
+                return new FeedInput(new InflaterInputStream(buffered, new Inflater(), BUFFER_SIZE), compression, counted);
+            case ZSTD:
+                buffered.close();
+                throw new IllegalArgumentException("zstd-compressed feeds are not supported; compress the feed with gzip or zlib");
+            default:
+                return new FeedInput(buffered, compression, counted);
+        }
+    }
+
+    /**
+     * Identify the compression format from the leading bytes of a feed
+     *
+     * @param header The first bytes of the feed
+     * @param length Number of valid bytes in the header
+     * @return One of {@link #GZIP}, {@link #ZLIB}, {@link #ZSTD} or {@link #NONE}
+     */
+    public static String detect(byte[] header, int length) {
+        if (length >= 2 && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b) {
+            return GZIP;
+        }
+        if (length >= 4 && (header[0] & 0xff) == 0x28 && (header[1] & 0xff) == 0xb5 &&
+            (header[2] & 0xff) == 0x2f && (header[3] & 0xff) == 0xfd) {
+            return ZSTD;
+        }
+        // zlib: deflate method with a 32K window, no preset dictionary, and a header checksum that is a multiple of 31;
+        // the dictionary bit also rules out text such as "x " or "x}" that happens to pass the checksum
+        if (length >= 2 && (header[0] & 0xff) == 0x78 && (header[1] & 0x20) == 0 &&
+            (((header[0] & 0xff) << 8) | (header[1] & 0xff)) % 31 == 0) {
+            return ZLIB;
+        }
+        return NONE;
+    }
+
+    /**
+     * Returns true for file names the upload endpoints accept; the content is still checked by magic bytes
+     * Raw deflate streams have no header to detect, so .deflate files are not accepted
+     */
+    public static boolean isSupportedFileName(String fileName) {
+        if (fileName == null) {
+            return false;
+        }
+        String name = fileName.toLowerCase();
+        return name.endsWith(".csv") || name.endsWith(".gz") || name.endsWith(".gzip") ||
+               name.endsWith(".zz") || name.endsWith(".zlib");
+    }
+
+    /**
+     * Detected compression format
+     */
+    public String getCompression() {
+        return compression;
+    }
+
+    public boolean isCompressed() {
+        return !NONE.equals(compression);
+    }
+
+    /**
+     * Bytes read from the underlying stream so far, as received
+     */
+    public long getCompressedBytes() {
+        return compressed.getCount();
+    }
+
+    /**
+     * Bytes handed to the reader so far, after decompression
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            uncompressedBytes++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            uncompressedBytes += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        uncompressedBytes += skipped;
+        return skipped;
+    }
+
+    /**
+     * Counts the bytes read through it
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private final LongConsumer listener;
+        private volatile long count;
+
+        private CountingInputStream(InputStream in, LongConsumer listener) {
+            super(in);
+            this.listener = listener;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+                listener.accept(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+                listener.accept(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            listener.accept(skipped);
+            return skipped;
+        }
+    }
+}
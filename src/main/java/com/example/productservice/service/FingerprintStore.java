@@ -0,0 +1,528 @@
+package com.example.productservice.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Content fingerprints of the documents last acknowledged by the index.
+ *
+ * The store is an append-only log of (key hash, fingerprint, key) records
+ * replayed into a primitive open-addressing table on startup, so each entry
+ * costs two longs of heap rather than a String-keyed map entry. Keys are only
+ * kept on disk; they are read back when a full feed has to delete documents
+ * that disappeared. The log is compacted when superseded records dominate.
+ */
+@Service
+public class FingerprintStore {
+
+    /** Fingerprint recorded for a deleted key */
+    private static final long TOMBSTONE = 0L;
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    /** Compact when the log holds this many times more records than live keys */
+    private static final int COMPACTION_RATIO = 2;
+
+    private static final int MIN_RECORDS_FOR_COMPACTION = 100_000;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** Document fields that change on every ingestion and are not part of the content */
+    private static final List<String> VOLATILE_FIELDS = Arrays.asList("createdAt", "updatedAt");
+
+    @Value("${product.ingest.delta.enabled:true}")
+    private boolean enabled;
+
+    @Value("${product.ingest.delta.store-file:${java.io.tmpdir}/product-ingest/fingerprints.log}")
+    private String storeFile;
+
+    private Path path;
+    private DataOutputStream log;
+    private long logRecords;
+
+    // Open-addressing table: key hash -> fingerprint; a zero key hash marks an empty slot
+    private long[] keyHashes = new long[INITIAL_CAPACITY];
+    private long[] fingerprints = new long[INITIAL_CAPACITY];
+    private int size;
+
+    @PostConstruct
+    synchronized void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        path = Paths.get(storeFile);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        long validLength = replay();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Drop a record cut short by a crash
+            channel.truncate(validLength);
+        }
+        log = openLog();
+        System.out.println("Loaded " + size + " product fingerprints from " + path);
+        compactIfNeeded();
+    }
+
+    @PreDestroy
+    synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    /**
+     * Returns true when delta ingestion is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Number of keys with a live fingerprint
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns true when the key was last acknowledged with the same fingerprint
+     */
+    public synchronized boolean isUnchanged(long keyHash, long fingerprint) {
+        int slot = find(keyHash);
+        return slot >= 0 && fingerprints[slot] == fingerprint;
+    }
+
+    /**
+     * Record fingerprints of acknowledged uploads
+     *
+     * @param keys Document keys
+     * @param documentFingerprints Fingerprint of each key, in the same order
+     */
+    public synchronized void recordAll(List<String> keys, long[] documentFingerprints) {
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            long keyHash = hashKey(key);
+            int slot = find(keyHash);
+            if (slot >= 0 && fingerprints[slot] == documentFingerprints[i]) {
+                continue;
+            }
+            put(keyHash, documentFingerprints[i]);
+            append(keyHash, documentFingerprints[i], key);
+        }
+        flushLog();
+    }
+
+    /**
+     * Forget acknowledged deletes
+     *
+     * @param keys Deleted document keys
+     */
+    public synchronized void removeAll(Collection<String> keys) {
+        for (String key : keys) {
+            long keyHash = hashKey(key);
+            if (remove(keyHash)) {
+                append(keyHash, TOMBSTONE, key);
+            }
+        }
+        flushLog();
+    }
+
+    /**
+     * Stream the keys that have a live fingerprint but were not part of a feed
+     * The log is read from disk without holding the store lock
+     *
+     * @param seen Key hashes present in the feed; receives every reported key
+     * @param consumer Receives each stale key once
+     */
+    public void forEachKeyNotIn(KeyHashSet seen, Consumer<String> consumer) throws IOException {
+        long length;
+        synchronized (this) {
+            if (log == null) {
+                return;
+            }
+            flushLog();
+            length = Files.size(path);
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                limit(Files.newInputStream(path), length), 64 * 1024))) {
+            while (true) {
+                long keyHash;
+                String key;
+                try {
+                    keyHash = in.readLong();
+                    in.readLong();
+                    key = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (!seen.contains(keyHash) && hasKey(keyHash)) {
+                    seen.add(keyHash);
+                    consumer.accept(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stable hash of a document key
+     */
+    public static long hashKey(String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * FNV_PRIME;
+        }
+        long mixed = mix(hash);
+        return mixed != 0 ? mixed : 1;
+    }
+
+    /**
+     * Stable content hash of a search document, ignoring ingestion timestamps
+     * Map keys are visited in sorted order so the hash does not depend on map iteration order
+     */
+    public static long fingerprint(Map<String, Object> document) {
+        long hash = FNV_OFFSET_BASIS;
+        for (Map.Entry<String, Object> entry : new TreeMap<>(document).entrySet()) {
+            if (VOLATILE_FIELDS.contains(entry.getKey())) {
+                continue;
+            }
+            hash = hashString(hash, entry.getKey());
+            hash = hashValue(hash, entry.getValue());
+        }
+        long mixed = mix(hash);
+        return mixed != TOMBSTONE ? mixed : 1;
+    }
+
+    private static long hashValue(long hash, Object value) {
+        if (value instanceof Map) {
+            hash = (hash ^ '{') * FNV_PRIME;
+            for (Map.Entry<?, ?> entry : new TreeMap<>((Map<?, ?>) value).entrySet()) {
+                hash = hashString(hash, String.valueOf(entry.getKey()));
+                hash = hashValue(hash, entry.getValue());
+            }
+            return (hash ^ '}') * FNV_PRIME;
+        }
+        if (value instanceof Collection) {
+            hash = (hash ^ '[') * FNV_PRIME;
+            for (Object element : (Collection<?>) value) {
+                hash = hashValue(hash, element);
+            }
+            return (hash ^ ']') * FNV_PRIME;
+        }
+        return hashString(hash, String.valueOf(value));
+    }
+
+    private static long hashString(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        // Separator so that adjacent strings cannot run together
+        return (hash ^ 0xffff) * FNV_PRIME;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private synchronized boolean hasKey(long keyHash) {
+        return find(keyHash) >= 0;
+    }
+
+    /**
+     * Replay the log into the table
+     *
+     * @return Length of the valid prefix of the log
+     */
+    private long replay() throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024))) {
+            while (true) {
+                long keyHash;
+                long fingerprint;
+                String key;
+                try {
+                    keyHash = in.readLong();
+                    fingerprint = in.readLong();
+                    key = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (fingerprint == TOMBSTONE) {
+                    remove(keyHash);
+                } else {
+                    put(keyHash, fingerprint);
+                }
+                logRecords++;
+                validLength += 16 + 2 + modifiedUtf8Length(key);
+            }
+        }
+        return validLength;
+    }
+
+    /**
+     * Rewrite the log with only the current record of each live key, when superseded records dominate
+     */
+    public synchronized void compactIfNeeded() throws IOException {
+        if (log == null || logRecords < MIN_RECORDS_FOR_COMPACTION || logRecords < (long) size * COMPACTION_RATIO) {
+            return;
+        }
+
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        long written = 0;
+        KeyHashSet copied = new KeyHashSet();
+        log.flush();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(compacted), 64 * 1024))) {
+            // The last record of each live key is the current one, so keep the latest fingerprint from the table
+            while (true) {
+                long keyHash;
+                String key;
+                try {
+                    keyHash = in.readLong();
+                    in.readLong();
+                    key = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                int slot = find(keyHash);
+                if (slot >= 0 && !copied.contains(keyHash)) {
+                    copied.add(keyHash);
+                    out.writeLong(keyHash);
+                    out.writeLong(fingerprints[slot]);
+                    out.writeUTF(key);
+                    written++;
+                }
+            }
+        }
+
+        log.close();
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log = openLog();
+        System.out.println("Compacted fingerprint log from " + logRecords + " to " + written + " records");
+        logRecords = written;
+    }
+
+    private DataOutputStream openLog() throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND), 64 * 1024));
+    }
+
+    private void append(long keyHash, long fingerprint, String key) {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.writeLong(keyHash);
+            log.writeLong(fingerprint);
+            log.writeUTF(key);
+            logRecords++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flushLog() {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Encoded length of a string written with {@link DataOutputStream#writeUTF(String)}
+     */
+    private static int modifiedUtf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c >= 0x0001 && c <= 0x007f ? 1 : c <= 0x07ff ? 2 : 3;
+        }
+        return length;
+    }
+
+    private static InputStream limit(InputStream in, long length) {
+        return new InputStream() {
+            private long remaining = length;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int b = in.read();
+                if (b >= 0) {
+                    remaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int count) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int read = in.read(buffer, offset, (int) Math.min(count, remaining));
+                if (read > 0) {
+                    remaining -= read;
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    private int find(long keyHash) {
+        int mask = keyHashes.length - 1;
+        for (int slot = (int) keyHash & mask; ; slot = (slot + 1) & mask) {
+            if (keyHashes[slot] == keyHash) {
+                return slot;
+            }
+            if (keyHashes[slot] == 0) {
+                return -1;
+            }
+        }
+    }
+
+    private void put(long keyHash, long fingerprint) {
+        int mask = keyHashes.length - 1;
+        int slot = (int) keyHash & mask;
+        while (keyHashes[slot] != 0 && keyHashes[slot] != keyHash) {
+            slot = (slot + 1) & mask;
+        }
+        fingerprints[slot] = fingerprint;
+        if (keyHashes[slot] == 0) {
+            keyHashes[slot] = keyHash;
+            if (++size * 4 > keyHashes.length * 3) {
+                resize();
+            }
+        }
+    }
+
+    private boolean remove(long keyHash) {
+        int slot = find(keyHash);
+        if (slot < 0) {
+            return false;
+        }
+
+        // Backward-shift deletion keeps probe sequences intact without tombstones
+        int mask = keyHashes.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keyHashes[next] != 0; next = (next + 1) & mask) {
+            int home = (int) keyHashes[next] & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keyHashes[hole] = keyHashes[next];
+                fingerprints[hole] = fingerprints[next];
+                hole = next;
+            }
+        }
+        keyHashes[hole] = 0;
+        fingerprints[hole] = 0;
+        size--;
+        return true;
+    }
+
+    private void resize() {
+        long[] oldKeyHashes = keyHashes;
+        long[] oldFingerprints = fingerprints;
+        keyHashes = new long[oldKeyHashes.length * 2];
+        fingerprints = new long[oldFingerprints.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeyHashes.length; i++) {
+            if (oldKeyHashes[i] != 0) {
+                put(oldKeyHashes[i], oldFingerprints[i]);
+            }
+        }
+    }
+
+    /**
+     * Primitive set of key hashes, used to track the keys present in a feed
+     */
+    public static class KeyHashSet {
+        private long[] slots = new long[INITIAL_CAPACITY];
+        private int size;
+
+        public boolean contains(long keyHash) {
+            int mask = slots.length - 1;
+            for (int slot = (int) keyHash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                if (slots[slot] == keyHash) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return false if the hash was already present
+         */
+        public boolean add(long keyHash) {
+            int mask = slots.length - 1;
+            int slot = (int) keyHash & mask;
+            while (slots[slot] != 0) {
+                if (slots[slot] == keyHash) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = keyHash;
+            if (++size * 4 > slots.length * 3) {
+                long[] old = slots;
+                slots = new long[old.length * 2];
+                size = 0;
+                for (long value : old) {
+                    if (value != 0) {
+                        add(value);
+                    }
+                }
+            }
+            return true;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+}
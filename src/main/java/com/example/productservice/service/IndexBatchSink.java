@@ -0,0 +1,111 @@
+package com.example.productservice.service;
+
+import com.azure.search.documents.models.IndexAction;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Destination of index batches sent by {@link SearchIndexWriter}.
+ *
+ * Implementations report per-document outcomes and any retry-after hint, and
+ * throw {@link BatchRejectedException} when the whole batch is rejected, for
+ * example when the service is throttling.
+ */
+public interface IndexBatchSink {
+
+    /**
+     * Send one batch of index actions
+     *
+     * @param actions The uploads and deletes to apply
+     * @return Outcome of every document in the batch
+     * @throws BatchRejectedException if the batch was rejected as a whole
+     */
+    BatchResult send(List<IndexAction<Map<String, Object>>> actions);
+
+    /**
+     * Outcome of one document in a batch
+     */
+    class DocumentResult {
+        private final String key;
+        private final boolean succeeded;
+        private final int statusCode;
+        private final String errorMessage;
+
+        public DocumentResult(String key, boolean succeeded, int statusCode, String errorMessage) {
+            this.key = key;
+            this.succeeded = succeeded;
+            this.statusCode = statusCode;
+            this.errorMessage = errorMessage;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public boolean isSucceeded() {
+            return succeeded;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+    }
+
+    /**
+     * Outcome of an accepted batch
+     */
+    class BatchResult {
+        private final List<DocumentResult> results;
+        private final long retryAfterMillis;
+
+        /**
+         * @param results Outcome of every document
+         * @param retryAfterMillis Delay the service asked for before the next request, or -1 if none
+         */
+        public BatchResult(List<DocumentResult> results, long retryAfterMillis) {
+            this.results = results;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public List<DocumentResult> getResults() {
+            return results;
+        }
+
+        public long getRetryAfterMillis() {
+            return retryAfterMillis;
+        }
+    }
+
+    /**
+     * A batch rejected as a whole with an HTTP status
+     */
+    class BatchRejectedException extends RuntimeException {
+        private final int statusCode;
+        private final long retryAfterMillis;
+
+        /**
+         * @param statusCode HTTP status of the rejection, 0 if unknown
+         * @param retryAfterMillis Delay the service asked for before the next request, or -1 if none
+         * @param message Description of the rejection
+         * @param cause Underlying client exception, may be null
+         */
+        public BatchRejectedException(int statusCode, long retryAfterMillis, String message, Throwable cause) {
+            super(message, cause);
+            this.statusCode = statusCode;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public long getRetryAfterMillis() {
+            return retryAfterMillis;
+        }
+    }
+}
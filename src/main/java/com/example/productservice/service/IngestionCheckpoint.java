@@ -0,0 +1,135 @@
+package com.example.productservice.service;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Properties;
+
+/**
+ * Durable resume point of an ingestion run over one source file.
+ *
+ * Holds the hash of the source file, the byte offset of the first record
+ * that is not yet known to be indexed, and the product ID whose rows straddle
+ * that offset, so the rows of that already indexed product can be skipped on
+ * resume. The file is replaced atomically and synced on every save, so a
+ * crash leaves either the previous or the new checkpoint.
+ */
+public class IngestionCheckpoint {
+
+    private final Path file;
+    private final String sourceHash;
+    private volatile long offset;
+    private volatile String carryProductId;
+
+    private IngestionCheckpoint(Path file, String sourceHash) {
+        this.file = file;
+        this.sourceHash = sourceHash;
+    }
+
+    /**
+     * Load the checkpoint of a source file, or start a new one
+     * A checkpoint written for a different source hash is ignored
+     *
+     * @param file The checkpoint file
+     * @param sourceHash Hash of the source file, as returned by {@link #sha256(Path)}
+     * @return The checkpoint, at offset 0 if none was saved for this source
+     */
+    public static IngestionCheckpoint open(Path file, String sourceHash) throws IOException {
+        IngestionCheckpoint checkpoint = new IngestionCheckpoint(file, sourceHash);
+        if (!Files.exists(file)) {
+            return checkpoint;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        if (!sourceHash.equals(properties.getProperty("source.sha256"))) {
+            System.err.println("Ignoring checkpoint " + file + " written for a different source file");
+            return checkpoint;
+        }
+        try {
+            checkpoint.offset = Long.parseLong(properties.getProperty("offset", "0"));
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring checkpoint " + file + " with invalid offset");
+            return checkpoint;
+        }
+        checkpoint.carryProductId = properties.getProperty("carry.product-id");
+        return checkpoint;
+    }
+
+    /**
+     * Hex SHA-256 of a file
+     */
+    public static String sha256(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[1024 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * A SHA-256 digest, for hashing a file while it is written
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Byte offset of the first record to ingest on resume
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Product whose rows at the offset belong to an already indexed product, or null
+     */
+    public String getCarryProductId() {
+        return carryProductId;
+    }
+
+    /**
+     * Persist a new resume point
+     */
+    void save(long offset, String carryProductId) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("source.sha256", sourceHash);
+        properties.setProperty("offset", Long.toString(offset));
+        if (carryProductId != null) {
+            properties.setProperty("carry.product-id", carryProductId);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+            properties.store(out, "Ingestion checkpoint");
+            out.getFD().sync();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        this.offset = offset;
+        this.carryProductId = carryProductId;
+    }
+
+    /**
+     * Remove the checkpoint once the source is fully ingested
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,415 @@
+package com.example.productservice.service;
+
+import com.example.productservice.model.IngestionJob;
+import com.example.productservice.model.IngestionResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous CSV ingestion jobs.
+ *
+ * Uploads are streamed to the work directory in fixed-size chunks, so feed
+ * size is bounded by disk rather than request buffers, and then ingested on a
+ * small dedicated executor instead of the request thread. Job progress is kept
+ * in memory for the status endpoint.
+ *
+ * Each spooled feed has a manifest next to it and, while it runs, a
+ * checkpoint. When the service is stopped or killed mid-run, for example by
+ * scaling to zero, the files are left in place and the job is queued again on
+ * the next start, resuming from its last checkpoint.
+ */
+@Service
+public class IngestionJobService {
+
+    /** Size of the buffer used when streaming an upload to disk */
+    private static final int SPOOL_BUFFER_BYTES = 1024 * 1024;
+
+    @Autowired
+    private ProductIngestionService productIngestionService;
+
+    @Autowired
+    private CsvParserService csvParserService;
+
+    @Value("${product.ingest.work-dir:${java.io.tmpdir}/product-ingest}")
+    private String workDir;
+
+    @Value("${product.ingest.jobs.concurrency:1}")
+    private int jobConcurrency;
+
+    @Value("${product.ingest.jobs.queue-capacity:8}")
+    private int jobQueueCapacity;
+
+    @Value("${product.ingest.jobs.retained:100}")
+    private int retainedJobs;
+
+    @Value("${product.ingest.checkpoint.enabled:true}")
+    private boolean checkpointsEnabled;
+
+    private ThreadPoolExecutor executor;
+
+    // Set on shutdown so interrupted jobs keep their files for resumption
+    private volatile boolean stopping;
+
+    // Jobs in submission order; finished jobs beyond the retention limit are dropped oldest first
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+
+    @PostConstruct
+    void start() throws IOException {
+        Files.createDirectories(Paths.get(workDir));
+
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, jobConcurrency);
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, jobQueueCapacity)), runnable -> {
+                Thread thread = new Thread(runnable, "ingest-job-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        resumeJobs();
+    }
+
+    @PreDestroy
+    void stop() {
+        stopping = true;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns true when the product index can be written to
+     */
+    public boolean isIndexConfigured() {
+        return productIngestionService.isIndexConfigured();
+    }
+
+    /**
+     * Stream a CSV feed to disk and queue it for ingestion
+     *
+     * @param input The CSV data; read fully before this method returns
+     * @param fileName Name of the feed, used for reporting only
+     * @param fullFeed True when the feed is the complete catalog, so products missing from it are deleted
+     * @return Snapshot of the queued job
+     * @throws RejectedExecutionException if the job queue is full
+     * @throws IllegalArgumentException if the feed uses an unsupported compression format
+     */
+    public IngestionJob submit(InputStream input, String fileName, boolean fullFeed) throws IOException {
+        if (executor.getQueue().remainingCapacity() == 0) {
+            throw new RejectedExecutionException("Ingestion job queue is full");
+        }
+
+        Job job = new Job(UUID.randomUUID().toString(), fileName, fullFeed, LocalDateTime.now());
+        job.path = Paths.get(workDir, job.id + ".csv");
+        try {
+            // Compressed feeds are stored as uploaded and inflated while parsing
+            MessageDigest digest = IngestionCheckpoint.newDigest();
+            job.totalBytes = spool(input, job.path, digest);
+            job.sourceHash = HexFormat.of().formatHex(digest.digest());
+            job.compression = detectCompression(job.path);
+            writeManifest(job);
+            synchronized (jobs) {
+                jobs.put(job.id, job);
+                pruneFinishedJobs();
+            }
+            executor.execute(() -> run(job));
+        } catch (IOException | RuntimeException e) {
+            synchronized (jobs) {
+                jobs.remove(job.id);
+            }
+            deleteFiles(job);
+            throw e;
+        }
+
+        System.out.println("Queued ingestion job " + job.id + " for " + fileName + " (" + job.totalBytes + " bytes, " +
+                         job.compression + ")");
+        return job.snapshot();
+    }
+
+    /**
+     * Current status of a job
+     *
+     * @param jobId The job ID
+     * @return Job snapshot or null if the job is unknown
+     */
+    public IngestionJob getJob(String jobId) {
+        Job job;
+        synchronized (jobs) {
+            job = jobs.get(jobId);
+        }
+        return job != null ? job.snapshot() : null;
+    }
+
+    /**
+     * Status of every retained job, oldest first
+     */
+    public List<IngestionJob> getJobs() {
+        List<IngestionJob> snapshots = new ArrayList<>();
+        synchronized (jobs) {
+            for (Job job : jobs.values()) {
+                snapshots.add(job.snapshot());
+            }
+        }
+        return snapshots;
+    }
+
+    private void run(Job job) {
+        job.startedAt = LocalDateTime.now();
+        job.startNanos = System.nanoTime();
+        job.status = "RUNNING";
+        try {
+            if (job.resumed && !job.sourceHash.equals(IngestionCheckpoint.sha256(job.path))) {
+                throw new IOException("Spooled feed no longer matches the hash recorded when it was queued");
+            }
+            IngestionCheckpoint checkpoint = null;
+            if (checkpointsEnabled) {
+                checkpoint = IngestionCheckpoint.open(checkpointPath(job), job.sourceHash);
+                if (checkpoint.getOffset() > 0) {
+                    job.resumedFromOffset = checkpoint.getOffset();
+                }
+            }
+
+            Map<String, String> fieldMapping = csvParserService.getProductFeedFieldMapping();
+            job.result = productIngestionService.ingestCsvFile(job.path, fieldMapping, job.progress, job.fullFeed,
+                                                               checkpoint);
+            job.status = "COMPLETED";
+        } catch (Exception e) {
+            System.err.println("Ingestion job " + job.id + " failed: " + e.getMessage());
+            job.error = e.getMessage();
+            job.status = "FAILED";
+        } finally {
+            job.completedAt = LocalDateTime.now();
+            job.endNanos = System.nanoTime();
+            if (stopping) {
+                System.out.println("Ingestion job " + job.id + " interrupted by shutdown, it resumes on the next start");
+            } else {
+                deleteFiles(job);
+            }
+        }
+    }
+
+    /**
+     * Queue the jobs left in the work directory by a previous run of the service
+     */
+    private void resumeJobs() throws IOException {
+        List<Job> resumed = new ArrayList<>();
+        try (DirectoryStream<Path> manifests = Files.newDirectoryStream(Paths.get(workDir), "*.job")) {
+            for (Path manifest : manifests) {
+                Job job = readManifest(manifest);
+                if (job == null || !Files.exists(job.path)) {
+                    System.err.println("Discarding incomplete ingestion job " + manifest.getFileName());
+                    Files.deleteIfExists(manifest);
+                    if (job != null) {
+                        deleteFiles(job);
+                    }
+                    continue;
+                }
+                resumed.add(job);
+            }
+        }
+        resumed.sort((a, b) -> a.submittedAt.compareTo(b.submittedAt));
+
+        // Feeds whose spool was cut off before the manifest was written cannot be resumed
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(workDir), "*.{csv,checkpoint}")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!Files.exists(manifestPath(name.substring(0, name.lastIndexOf('.'))))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        for (Job job : resumed) {
+            synchronized (jobs) {
+                jobs.put(job.id, job);
+            }
+            try {
+                executor.execute(() -> run(job));
+                System.out.println("Resuming ingestion job " + job.id + " for " + job.fileName);
+            } catch (RejectedExecutionException e) {
+                // The files stay in place for the next start
+                synchronized (jobs) {
+                    jobs.remove(job.id);
+                }
+                System.err.println("Ingestion job queue is full, job " + job.id + " is left for the next start");
+            }
+        }
+    }
+
+    private void writeManifest(Job job) throws IOException {
+        Properties manifest = new Properties();
+        manifest.setProperty("file-name", job.fileName);
+        manifest.setProperty("full-feed", Boolean.toString(job.fullFeed));
+        manifest.setProperty("submitted-at", job.submittedAt.toString());
+        manifest.setProperty("total-bytes", Long.toString(job.totalBytes));
+        manifest.setProperty("compression", job.compression);
+        manifest.setProperty("source.sha256", job.sourceHash);
+
+        // The manifest is written after the feed is fully spooled, so a torn spool has none
+        try (FileOutputStream out = new FileOutputStream(manifestPath(job.id).toFile())) {
+            manifest.store(out, "Ingestion job " + job.id);
+            out.getFD().sync();
+        }
+    }
+
+    private Job readManifest(Path path) {
+        String fileName = path.getFileName().toString();
+        String id = fileName.substring(0, fileName.length() - ".job".length());
+        Properties manifest = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            manifest.load(in);
+            Job job = new Job(id, manifest.getProperty("file-name"), Boolean.parseBoolean(manifest.getProperty("full-feed")),
+                              LocalDateTime.parse(manifest.getProperty("submitted-at")));
+            job.path = Paths.get(workDir, id + ".csv");
+            job.totalBytes = Long.parseLong(manifest.getProperty("total-bytes"));
+            job.compression = manifest.getProperty("compression");
+            job.sourceHash = manifest.getProperty("source.sha256");
+            job.resumed = true;
+            return job.sourceHash != null ? job : null;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not read ingestion job manifest " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void deleteFiles(Job job) {
+        for (Path path : new Path[] {job.path, manifestPath(job.id), checkpointPath(job)}) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                System.err.println("Could not delete " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private Path manifestPath(String jobId) {
+        return Paths.get(workDir, jobId + ".job");
+    }
+
+    private Path checkpointPath(Job job) {
+        return Paths.get(workDir, job.id + ".checkpoint");
+    }
+
+    private long spool(InputStream input, Path target, MessageDigest digest) throws IOException {
+        long total = 0;
+        byte[] buffer = new byte[SPOOL_BUFFER_BYTES];
+        try (InputStream in = input; OutputStream out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                digest.update(buffer, 0, read);
+                total += read;
+            }
+        }
+        return total;
+    }
+
+    private String detectCompression(Path path) throws IOException {
+        try (FeedInput feed = FeedInput.open(Files.newInputStream(path))) {
+            return feed.getCompression();
+        }
+    }
+
+    private void pruneFinishedJobs() {
+        Iterator<Job> iterator = jobs.values().iterator();
+        while (jobs.size() > retainedJobs && iterator.hasNext()) {
+            Job job = iterator.next();
+            if (job.completedAt != null) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Mutable state of a job, updated by the worker thread
+     */
+    private static class Job {
+        private final String id;
+        private final String fileName;
+        private final boolean fullFeed;
+        private final LocalDateTime submittedAt;
+        private final IngestionProgress progress = new IngestionProgress();
+        private Path path;
+        private long totalBytes;
+        private volatile String compression;
+        private volatile String sourceHash;
+        private boolean resumed;
+        private volatile Long resumedFromOffset;
+
+        private volatile String status = "QUEUED";
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime completedAt;
+        private volatile long startNanos;
+        private volatile long endNanos;
+        private volatile String error;
+        private volatile IngestionResult result;
+
+        private Job(String id, String fileName, boolean fullFeed, LocalDateTime submittedAt) {
+            this.id = id;
+            this.fileName = fileName;
+            this.fullFeed = fullFeed;
+            this.submittedAt = submittedAt;
+        }
+
+        private IngestionJob snapshot() {
+            IngestionJob snapshot = new IngestionJob();
+            snapshot.setJobId(id);
+            snapshot.setStatus(status);
+            snapshot.setFileName(fileName);
+            snapshot.setTotalBytes(totalBytes);
+            snapshot.setCompression(compression);
+            snapshot.setResumedFromOffset(resumedFromOffset);
+            snapshot.setSubmittedAt(submittedAt);
+            snapshot.setStartedAt(startedAt);
+            snapshot.setCompletedAt(completedAt);
+            snapshot.setError(error);
+            snapshot.setResult(result);
+
+            long bytesProcessed = progress.getBytesProcessed();
+            long rowsParsed = progress.getRowsParsed();
+            snapshot.setBytesProcessed(bytesProcessed);
+            snapshot.setRowsParsed(rowsParsed);
+            snapshot.setDocumentsIndexed(progress.getDocumentsIndexed());
+            snapshot.setDocumentsFailed(progress.getDocumentsFailed());
+
+            if (startedAt != null) {
+                long elapsedNanos = (completedAt != null ? endNanos : System.nanoTime()) - startNanos;
+                if (elapsedNanos > 0) {
+                    snapshot.setRowsPerSecond(rowsParsed * 1_000_000_000.0 / elapsedNanos);
+                }
+                if (completedAt == null && bytesProcessed > 0) {
+                    // Remaining bytes at the byte rate observed so far
+                    long remainingBytes = Math.max(0, totalBytes - bytesProcessed);
+                    snapshot.setEtaSeconds(TimeUnit.NANOSECONDS.toSeconds(
+                        (long) (elapsedNanos * ((double) remainingBytes / bytesProcessed))));
+                }
+            }
+            return snapshot;
+        }
+    }
+}
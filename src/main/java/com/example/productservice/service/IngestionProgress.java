@@ -0,0 +1,59 @@
+package com.example.productservice.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live counters of a running ingestion, readable from other threads.
+ */
+public class IngestionProgress {
+
+    private final AtomicLong bytesProcessed = new AtomicLong();
+    private final AtomicLong rowsParsed = new AtomicLong();
+    private volatile SearchIndexWriter.IndexingSession session;
+
+    /**
+     * Bytes of the feed consumed by the parser
+     */
+    public long getBytesProcessed() {
+        return bytesProcessed.get();
+    }
+
+    /**
+     * Rows mapped to products and handed to the index writer
+     */
+    public long getRowsParsed() {
+        return rowsParsed.get();
+    }
+
+    /**
+     * Documents acknowledged by the index
+     */
+    public long getDocumentsIndexed() {
+        SearchIndexWriter.IndexingSession current = session;
+        return current != null ? current.getDocumentsIndexed() : 0;
+    }
+
+    /**
+     * Documents that failed after all retries
+     */
+    public long getDocumentsFailed() {
+        SearchIndexWriter.IndexingSession current = session;
+        return current != null ? current.getDocumentsFailed() : 0;
+    }
+
+    void setBytesProcessed(long bytes) {
+        bytesProcessed.set(bytes);
+    }
+
+    void addBytesProcessed(long bytes) {
+        bytesProcessed.addAndGet(bytes);
+    }
+
+    void incrementRowsParsed() {
+        rowsParsed.incrementAndGet();
+    }
+
+    void setSession(SearchIndexWriter.IndexingSession session) {
+        this.session = session;
+    }
+}
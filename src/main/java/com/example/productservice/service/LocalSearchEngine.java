@@ -0,0 +1,574 @@
+package com.example.productservice.service;
+
+import com.azure.search.documents.SearchClient;
+import com.example.productservice.cache.BoundedCache;
+import com.example.productservice.cache.SearchCacheManager;
+import com.example.productservice.model.ApparelSemanticSearchResponse.FacetValue;
+import com.example.productservice.model.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-process full-text search over the product catalog.
+ *
+ * Products are indexed by the tokens of their name, description, brand and
+ * category into an inverted index and ranked with BM25, keeping only the top
+ * hits in a bounded heap. The index is an immutable snapshot that is rebuilt
+ * from the catalog after every update and swapped in atomically, so searches
+ * never block and always see a consistent catalog.
+ *
+ * Each snapshot keeps the products in a {@link ColumnarCatalog}: the
+ * filterable attributes as columns, which answer equality and range filters,
+ * and every product as compact stored fields, which are only decoded for the
+ * hits a search returns. No Product objects are retained between searches.
+ *
+ * The engine is for deployments without a remote index, such as edge nodes
+ * and offline test environments: it is only active when no Azure Search
+ * client is configured, is seeded from a CSV feed at startup and refreshed by
+ * every ingestion run. It is not a fallback for an unavailable index, since
+ * the catalog is held in heap and is not persisted, so after a restart it
+ * would only hold the seed feed until the next full ingestion.
+ */
+@Service
+public class LocalSearchEngine {
+
+    /** BM25 term frequency saturation */
+    private static final double K1 = 1.2;
+
+    /** BM25 document length normalization */
+    private static final double B = 0.75;
+
+    @Autowired(required = false)
+    private SearchClient searchClient;
+
+    @Autowired
+    private CsvParserService csvParserService;
+
+    @Autowired
+    private VariantGroupingService variantGroupingService;
+
+    @Value("${product.search.local.enabled:true}")
+    private boolean enabled;
+
+    @Value("${product.search.local.max-products:1000000}")
+    private int maxProducts;
+
+    @Value("${product.search.local.seed-feed:classpath:product_feed.csv}")
+    private String seedFeed;
+
+    @Autowired
+    private SearchCacheManager searchCacheManager;
+
+    @Value("${product.cache.local-facets.max-entries:1000}")
+    private long facetCacheMaxEntries;
+
+    @Value("${product.cache.local-facets.ttl-seconds:600}")
+    private long facetCacheTtlSeconds;
+
+    private volatile Snapshot snapshot = new Snapshot(new LinkedHashMap<>(), 0);
+
+    // Serializes commits; guards generation
+    private final Object commitLock = new Object();
+
+    // Number of snapshots published
+    private long generation;
+
+    private BoundedCache<String, Map<String, List<FacetValue>>> facetCache;
+
+    @PostConstruct
+    void init() {
+        // Facet counts per filter combination; keys carry the snapshot generation so stale counts are never served
+        facetCache = searchCacheManager.register(
+            new BoundedCache<>("local-facets", facetCacheMaxEntries, facetCacheTtlSeconds, TimeUnit.SECONDS));
+        if (enabled && !isActive()) {
+            System.out.println("Local search engine disabled: an Azure Search client is configured");
+        }
+        seed();
+    }
+
+    /**
+     * Returns true when the engine keeps a catalog, which it only does without a remote index
+     */
+    private boolean isActive() {
+        return enabled && searchClient == null;
+    }
+
+    /**
+     * Load the seed feed when there is no remote index to search
+     */
+    void seed() {
+        if (!isActive() || seedFeed == null || seedFeed.isBlank()) {
+            return;
+        }
+
+        Update update = beginUpdate();
+        try (InputStream in = openSeedFeed()) {
+            if (in == null) {
+                System.err.println("Local search seed feed not found: " + seedFeed);
+                return;
+            }
+            VariantGroupingService.GroupingSession grouping = variantGroupingService.open(update::add);
+            csvParserService.parseCsvStream(FeedInput.open(in), csvParserService.getProductFeedFieldMapping(), grouping);
+            grouping.finish();
+            update.commit(true);
+            System.out.println("Seeded local search engine with " + size() + " products from " + seedFeed);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error seeding local search engine from " + seedFeed + ": " + e.getMessage());
+        }
+    }
+
+    private InputStream openSeedFeed() throws IOException {
+        if (seedFeed.startsWith("classpath:")) {
+            return getClass().getClassLoader().getResourceAsStream(seedFeed.substring("classpath:".length()));
+        }
+        return Files.newInputStream(Paths.get(seedFeed.startsWith("file:") ? seedFeed.substring("file:".length()) : seedFeed));
+    }
+
+    /**
+     * Returns true when the engine is enabled and holds at least one product
+     */
+    public boolean isAvailable() {
+        return isActive() && snapshot.size() > 0;
+    }
+
+    /**
+     * Number of products in the current snapshot
+     */
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * Look up a product by ID
+     *
+     * @param productId The product ID
+     * @return The product, or null if it is not in the catalog
+     */
+    public Product getProduct(String productId) {
+        Snapshot current = snapshot;
+        Integer ordinal = current.ordinals.get(productId);
+        return ordinal != null ? current.columns.product(ordinal) : null;
+    }
+
+    /**
+     * Search the catalog
+     * Terms are matched in any field and combined with OR, like the simple query syntax with searchMode any;
+     * a blank or "*" query matches every product in catalog order with a score of 1
+     *
+     * @param searchText The search text
+     * @param top Maximum number of hits
+     * @return Hits ordered by descending score
+     */
+    public List<Hit> search(String searchText, int top) {
+        return search(searchText, null, top).getHits();
+    }
+
+    /**
+     * Search the products selected by a bitmap filter
+     *
+     * @param searchText The search text
+     * @param filter Evaluated against the bitmap indexes of the catalog; may be null
+     * @param top Maximum number of hits
+     * @return The best hits ordered by descending score, and every matching product
+     */
+    Results search(String searchText, CatalogFilter filter, int top) {
+        Snapshot current = snapshot;
+        CompressedBitmap filtered = filter != null ? filter.evaluate(current.columns) : current.columns.all();
+
+        Set<String> terms = new LinkedHashSet<>();
+        if (searchText != null) {
+            tokenize(searchText, terms::add);
+        }
+
+        if (terms.isEmpty()) {
+            List<Hit> hits = new ArrayList<>();
+            for (int doc : filtered.toArray(Math.max(0, top))) {
+                hits.add(new Hit(current.columns.product(doc), 1.0, doc));
+            }
+            return new Results(current, hits, filtered, null, 0);
+        }
+
+        // Term-at-a-time accumulation, then a min-heap keeps the best hits
+        double[] scores = new double[current.size()];
+        int[] matched = new int[current.size()];
+        int matchedCount = 0;
+        for (String term : terms) {
+            Postings postings = current.postings.get(term);
+            if (postings == null) {
+                continue;
+            }
+            double idf = Math.log(1 + (current.size() - postings.size + 0.5) / (postings.size + 0.5));
+            for (int i = 0; i < postings.size; i++) {
+                int doc = postings.docs[i];
+                int frequency = postings.frequencies[i];
+                double norm = K1 * (1 - B + B * current.lengths[doc] / current.averageLength);
+                if (scores[doc] == 0) {
+                    matched[matchedCount++] = doc;
+                }
+                scores[doc] += idf * frequency * (K1 + 1) / (frequency + norm);
+            }
+        }
+
+        PriorityQueue<Hit> best = new PriorityQueue<>(Math.max(1, Math.min(top, matchedCount)), LocalSearchEngine::compareHits);
+        boolean filterAll = filter == null;
+        int accepted = 0;
+        for (int i = 0; i < matchedCount; i++) {
+            int doc = matched[i];
+            if (!filterAll && !filtered.contains(doc)) {
+                continue;
+            }
+            // Keep accepted ordinals at the front for the match set
+            matched[accepted++] = doc;
+            if (top <= 0 || (best.size() == top && (scores[doc] < best.peek().score ||
+                                                    (scores[doc] == best.peek().score && doc > best.peek().ordinal)))) {
+                continue;
+            }
+            best.add(new Hit(null, scores[doc], doc));
+            if (best.size() > top) {
+                best.poll();
+            }
+        }
+
+        // Only the products that made it into the top hits are decoded
+        List<Hit> hits = new ArrayList<>(best.size());
+        for (Hit hit : best) {
+            hits.add(new Hit(current.columns.product(hit.ordinal), hit.score, hit.ordinal));
+        }
+        hits.sort(Collections.reverseOrder(LocalSearchEngine::compareHits));
+        return new Results(current, hits, null, matched, accepted);
+    }
+
+    /**
+     * Facet counts over every product matching a search
+     * The matches of a search without text depend only on its filter, so their counts are cached per filter
+     * combination until the catalog changes
+     *
+     * @param results Results of {@link #search(String, CatalogFilter, int)}
+     * @param expressions Facet expressions in the Azure AI Search syntax
+     * @param filterKey Canonical form of the filter the results were selected with, such as its OData string
+     * @return Facet values by field name
+     */
+    Map<String, List<FacetValue>> facets(Results results, List<String> expressions, String filterKey) {
+        if (expressions == null || expressions.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        if (results.matchedDocs != null) {
+            return FacetCounter.count(results.snapshot.columns, results.getMatches(), expressions);
+        }
+
+        String key = results.snapshot.generation + "\0" + (filterKey != null ? filterKey : "") + "\0" +
+            String.join(";", expressions);
+        Map<String, List<FacetValue>> facets = facetCache.get(key);
+        if (facets == null) {
+            facets = Collections.unmodifiableMap(FacetCounter.count(results.snapshot.columns, results.getMatches(), expressions));
+            facetCache.put(key, facets);
+        }
+        return facets;
+    }
+
+    /**
+     * Products whose attribute equals a value, in catalog order
+     *
+     * @param top Maximum number of products
+     */
+    List<Product> findEqual(ColumnarCatalog.Attribute attribute, String value, int top) {
+        Snapshot current = snapshot;
+        return current.products(current.columns.selectEquals(attribute, value, top));
+    }
+
+    /**
+     * Products whose measure lies within an inclusive range, in catalog order
+     *
+     * @param top Maximum number of products
+     */
+    List<Product> findInRange(ColumnarCatalog.Measure measure, double min, double max, int top) {
+        Snapshot current = snapshot;
+        return current.products(current.columns.selectRange(measure, min, max, top));
+    }
+
+    private static int compareHits(Hit a, Hit b) {
+        int order = Double.compare(a.score, b.score);
+        // On equal scores the product seen first ranks higher
+        return order != 0 ? order : Integer.compare(b.ordinal, a.ordinal);
+    }
+
+    /**
+     * Start collecting products for the catalog
+     *
+     * @return An update that is applied by {@link Update#commit(boolean)}; nothing changes if it is never committed
+     */
+    public Update beginUpdate() {
+        return new Update();
+    }
+
+    /**
+     * Add or replace products in the catalog
+     */
+    public void upsertAll(Collection<Product> products) {
+        if (!isActive()) {
+            return;
+        }
+        Update update = beginUpdate();
+        for (Product product : products) {
+            update.add(product);
+        }
+        update.commit(false);
+    }
+
+    /**
+     * Products collected for one catalog update
+     * Products are encoded into stored fields as they are added, so the update holds no Product objects;
+     * must be fed from a single thread
+     */
+    public class Update {
+
+        // Stored fields by product ID in first-seen order; null once the update is dropped,
+        // or from the start when the engine keeps no catalog
+        private Map<String, byte[]> documents = isActive() ? new LinkedHashMap<>() : null;
+
+        private Update() {
+        }
+
+        /**
+         * Add a product to the update; a later product with the same ID replaces it
+         */
+        public void add(Product product) {
+            if (documents == null || product == null || product.getId() == null) {
+                return;
+            }
+            if (documents.size() >= maxProducts && !documents.containsKey(product.getId())) {
+                System.err.println("Local search catalog update dropped: more than " + maxProducts + " products");
+                documents = null;
+                return;
+            }
+            documents.put(product.getId(), StoredFields.encode(product));
+        }
+
+        /**
+         * Apply the update and publish a new index snapshot
+         *
+         * @param replace True when the products are the complete catalog, so products missing from them are dropped
+         */
+        public void commit(boolean replace) {
+            if (documents == null) {
+                return;
+            }
+            synchronized (commitLock) {
+                Map<String, byte[]> catalog = documents;
+                if (!replace) {
+                    // Products already in the catalog keep their position and take the new stored fields
+                    Snapshot current = snapshot;
+                    catalog = new LinkedHashMap<>(Math.max(16, (current.size() + documents.size()) * 2));
+                    for (int doc = 0; doc < current.size(); doc++) {
+                        catalog.put(current.ids[doc], current.columns.storedFields(doc));
+                    }
+                    catalog.putAll(documents);
+                    if (catalog.size() > maxProducts) {
+                        System.err.println("Local search catalog not refreshed: more than " + maxProducts + " products");
+                        documents = null;
+                        return;
+                    }
+                }
+                long start = System.currentTimeMillis();
+                snapshot = new Snapshot(catalog, ++generation);
+                facetCache.invalidateAll();
+                System.out.println("Rebuilt local search index over " + snapshot.size() + " products (" +
+                                 snapshot.postings.size() + " terms, " + snapshot.columns.storedBytes() +
+                                 " bytes of stored fields, " + snapshot.columns.estimatedBytes() +
+                                 " bytes of filter columns) in " + (System.currentTimeMillis() - start) + "ms");
+            }
+            documents = null;
+        }
+    }
+
+    /**
+     * Split text into lowercase letter and digit runs
+     */
+    static void tokenize(String text, Consumer<String> tokens) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean tokenChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                tokens.accept(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * The best hits of a search together with every matching product
+     */
+    static class Results {
+        private final Snapshot snapshot;
+        private final List<Hit> hits;
+        private CompressedBitmap matches;
+        // Unsorted ordinals of a ranked search, until the match set is first requested
+        private final int[] matchedDocs;
+        private final int matchedCount;
+
+        private Results(Snapshot snapshot, List<Hit> hits, CompressedBitmap matches, int[] matchedDocs, int matchedCount) {
+            this.snapshot = snapshot;
+            this.hits = hits;
+            this.matches = matches;
+            this.matchedDocs = matchedDocs;
+            this.matchedCount = matchedCount;
+        }
+
+        List<Hit> getHits() {
+            return hits;
+        }
+
+        /**
+         * Number of products matching the search, not just the returned hits
+         */
+        long getTotalCount() {
+            return matches != null ? matches.cardinality() : matchedCount;
+        }
+
+        /**
+         * Every product matching the search
+         */
+        CompressedBitmap getMatches() {
+            if (matches == null) {
+                int[] sorted = Arrays.copyOf(matchedDocs, matchedCount);
+                Arrays.sort(sorted);
+                CompressedBitmap.Builder builder = new CompressedBitmap.Builder();
+                for (int doc : sorted) {
+                    builder.add(doc);
+                }
+                matches = builder.build();
+            }
+            return matches;
+        }
+    }
+
+    /**
+     * A product matching a search
+     */
+    public static class Hit {
+        private final Product product;
+        private final double score;
+        private final int ordinal;
+
+        private Hit(Product product, double score, int ordinal) {
+            this.product = product;
+            this.score = score;
+            this.ordinal = ordinal;
+        }
+
+        public Product getProduct() {
+            return product;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Documents containing one term, with the term frequency in each
+     */
+    private static class Postings {
+        private int[] docs = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        private void add(int doc, int frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+        }
+    }
+
+    /**
+     * Immutable inverted index over one version of the catalog
+     * Products are only decoded while the snapshot is built and for the results of a search
+     */
+    private static class Snapshot {
+        private final long generation;
+        private final String[] ids;
+        private final Map<String, Integer> ordinals;
+        private final Map<String, Postings> postings = new HashMap<>();
+        private final int[] lengths;
+        private final double averageLength;
+        private final ColumnarCatalog columns;
+
+        private Snapshot(Map<String, byte[]> catalog, long generation) {
+            this.generation = generation;
+            this.ids = new String[catalog.size()];
+            this.ordinals = new HashMap<>(catalog.size() * 2);
+            this.lengths = new int[catalog.size()];
+
+            long totalLength = 0;
+            Map<String, int[]> frequencies = new HashMap<>();
+            ColumnarCatalog.Builder columns = new ColumnarCatalog.Builder();
+            int doc = 0;
+            for (Map.Entry<String, byte[]> entry : catalog.entrySet()) {
+                Product product = StoredFields.decode(entry.getValue());
+                ids[doc] = entry.getKey();
+                ordinals.put(entry.getKey(), doc);
+
+                frequencies.clear();
+                int[] length = new int[1];
+                Consumer<String> counter = token -> {
+                    frequencies.computeIfAbsent(token, t -> new int[1])[0]++;
+                    length[0]++;
+                };
+                for (String field : new String[] {product.getName(), product.getDescription(),
+                                                  product.getBrand(), product.getCategory()}) {
+                    if (field != null) {
+                        tokenize(field, counter);
+                    }
+                }
+                for (Map.Entry<String, int[]> frequency : frequencies.entrySet()) {
+                    postings.computeIfAbsent(frequency.getKey(), t -> new Postings()).add(doc, frequency.getValue()[0]);
+                }
+                lengths[doc] = length[0];
+                totalLength += length[0];
+                columns.add(product, entry.getValue());
+                doc++;
+            }
+            this.averageLength = ids.length > 0 ? Math.max(1.0, (double) totalLength / ids.length) : 1.0;
+            this.columns = columns.build();
+        }
+
+        private int size() {
+            return ids.length;
+        }
+
+        private List<Product> products(int[] ordinals) {
+            List<Product> selected = new ArrayList<>(ordinals.length);
+            for (int ordinal : ordinals) {
+                selected.add(columns.product(ordinal));
+            }
+            return selected;
+        }
+    }
+}
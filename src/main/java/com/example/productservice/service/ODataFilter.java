@@ -0,0 +1,615 @@
+package com.example.productservice.service;
+
+import com.example.productservice.model.ApparelProduct;
+import com.example.productservice.model.Product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Compiled OData filter over the product model.
+ *
+ * A filter is a tree of AND, OR and NOT nodes over comparisons that can both
+ * test a single product and select the matching products of the local
+ * catalog. Comparisons on dictionary-encoded attributes and measures are
+ * specialized to the bitmap and primitive columns of the {@link ColumnarCatalog};
+ * other fields are read from the products, which are decoded from their
+ * stored fields. Within an AND, operands that read the products only test
+ * the products the column operands left.
+ *
+ * Missing values follow OData: a comparison with a missing value is false,
+ * except for ne, which is true.
+ */
+abstract class ODataFilter implements CatalogFilter, Predicate<Product> {
+
+    /**
+     * Index fields that Product binds to a property of the same name, so a Product mapped from a search
+     * document still holds their values; custom attributes and other index fields may be dropped by the mapping
+     */
+    private static final Set<String> PRODUCT_PROPERTIES = Set.of(
+        "product_id", "product_name", "sku_description", "brand", "category_name", "price", "currency",
+        "sku_id", "inStock", "stockQuantity", "manufacturer", "model");
+
+    /**
+     * Comparison operators
+     */
+    enum Operator {
+        EQ, NE, GT, GE, LT, LE;
+
+        private boolean accepts(int comparison) {
+            switch (this) {
+                case EQ:
+                    return comparison == 0;
+                case NE:
+                    return comparison != 0;
+                case GT:
+                    return comparison > 0;
+                case GE:
+                    return comparison >= 0;
+                case LT:
+                    return comparison < 0;
+                default:
+                    return comparison <= 0;
+            }
+        }
+
+        /**
+         * Result of comparing a missing value, or of comparing against null
+         */
+        private boolean acceptsMissing(boolean valueMissing, boolean literalMissing) {
+            if (valueMissing && literalMissing) {
+                return this == EQ;
+            }
+            return this == NE;
+        }
+    }
+
+    /**
+     * Whether the product passes the filter
+     */
+    @Override
+    public abstract boolean test(Product product);
+
+    /**
+     * Products among the candidates that pass the filter
+     */
+    CompressedBitmap evaluate(ColumnarCatalog catalog, CompressedBitmap candidates) {
+        return candidates.and(evaluate(catalog));
+    }
+
+    /**
+     * Add the fields the filter reads, by the names used in the filter
+     */
+    abstract void addFields(Set<String> fields);
+
+    /**
+     * True if every field the filter reads is a Product property, so testing products mapped from search
+     * documents gives the same answer as the index
+     */
+    boolean readsOnlyProductProperties() {
+        Set<String> fields = new HashSet<>();
+        addFields(fields);
+        return PRODUCT_PROPERTIES.containsAll(fields);
+    }
+
+    /**
+     * True if the filter reads every product instead of the columns
+     */
+    boolean scansProducts() {
+        return false;
+    }
+
+    /**
+     * A filter that every product passes, or none does
+     */
+    static ODataFilter constant(boolean value) {
+        return new Constant(value);
+    }
+
+    /**
+     * Products passing every filter
+     */
+    static ODataFilter and(List<ODataFilter> filters) {
+        return new And(filters);
+    }
+
+    /**
+     * Products passing any of the filters
+     */
+    static ODataFilter or(List<ODataFilter> filters) {
+        return new Or(filters);
+    }
+
+    /**
+     * Products failing the filter
+     */
+    static ODataFilter not(ODataFilter filter) {
+        return new Not(filter);
+    }
+
+    /**
+     * Compare a field with a literal
+     *
+     * @param literal A String, Double, Boolean or null
+     * @throws IllegalArgumentException if the literal cannot be compared with the field
+     */
+    static ODataFilter compare(String field, Operator operator, Object literal) {
+        ColumnarCatalog.Attribute attribute = attributeForField(field);
+        if (attribute != null) {
+            if (literal != null && !(literal instanceof String)) {
+                throw new IllegalArgumentException("Field " + field + " can only be compared with a string");
+            }
+            return new AttributeComparison(field, attribute, operator, (String) literal);
+        }
+        ColumnarCatalog.Measure measure = ColumnarCatalog.Measure.forField(field);
+        if (measure != null) {
+            if (literal != null && !(literal instanceof Double)) {
+                throw new IllegalArgumentException("Field " + field + " can only be compared with a number");
+            }
+            return new MeasureComparison(field, measure, operator, (Double) literal);
+        }
+        return new FieldComparison(field, accessor(field), operator, literal);
+    }
+
+    /**
+     * Products whose field equals any of the values, as in search.in
+     */
+    static ODataFilter in(String field, Collection<String> values) {
+        ColumnarCatalog.Attribute attribute = attributeForField(field);
+        if (attribute != null) {
+            return new AttributeIn(field, attribute, values);
+        }
+        return new FieldIn(field, accessor(field), values);
+    }
+
+    private static ColumnarCatalog.Attribute attributeForField(String field) {
+        // category is indexed as category_name; accept both
+        return "category_name".equals(field) ? ColumnarCatalog.Attribute.CATEGORY : ColumnarCatalog.Attribute.forField(field);
+    }
+
+    /**
+     * Reads a field without a column, by its index name, property name or custom attribute name
+     */
+    private static Function<Product, Object> accessor(String field) {
+        switch (field) {
+            case "product_id":
+            case "id":
+                return Product::getId;
+            case "product_name":
+            case "name":
+                return Product::getName;
+            case "title":
+                return product -> product instanceof ApparelProduct ? ((ApparelProduct) product).getTitle() : product.getName();
+            case "sku_description":
+            case "description":
+                return Product::getDescription;
+            case "sku_id":
+            case "sku":
+                return Product::getSku;
+            case "currency":
+                return Product::getCurrency;
+            case "manufacturer":
+                return Product::getManufacturer;
+            case "model":
+                return Product::getModel;
+            case "inStock":
+                return Product::isInStock;
+            case "stockQuantity":
+                return Product::getStockQuantity;
+            case "review_text":
+                return product -> product instanceof ApparelProduct && ((ApparelProduct) product).getReviewText() != null
+                    ? ((ApparelProduct) product).getReviewText() : product.getCustomAttribute(field);
+            default:
+                return product -> product.getCustomAttribute(field);
+        }
+    }
+
+    private static final class Constant extends ODataFilter {
+        private final boolean value;
+
+        private Constant(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(Product product) {
+            return value;
+        }
+
+        @Override
+        public CompressedBitmap evaluate(ColumnarCatalog catalog) {
+            return value ? catalog.all() : CompressedBitmap.empty();
+        }
+
+        @Override
+        void addFields(Set<String> fields) {
+        }
+    }
+
+    private static final class And extends ODataFilter {
+        private final List<ODataFilter> filters;
+
+        private And(List<ODataFilter> filters) {
+            // Column operands first, so the operands that read products only see what is left
+            List<ODataFilter> ordered = new ArrayList<>(filters);
+            ordered.sort(Comparator.comparing(ODataFilter::scansProducts));
+            this.filters = ordered;
+        }
+
+        @Override
+        public boolean test(Product product) {
+            for (ODataFilter filter : filters) {
+                if (!filter.test(product)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public CompressedBitmap evaluate(ColumnarCatalog catalog) {
+            CompressedBitmap result = null;
+            for (ODataFilter filter : filters) {
+                result = result == null ? filter.evaluate(catalog) : filter.evaluate(catalog, result);
+                if (result.isEmpty()) {
+                    return result;
+                }
+            }
+            return result != null ? result : catalog.all();
+        }
+
+        @Override
+        CompressedBitmap evaluate(ColumnarCatalog catalog, CompressedBitmap candidates) {
+            CompressedBitmap result = candidates;
+            for (ODataFilter filter : filters) {
+                result = filter.evaluate(catalog, result);
+                if (result.isEmpty()) {
+                    return result;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        boolean scansProducts() {
+            return filters.stream().allMatch(ODataFilter::scansProducts);
+        }
+
+        @Override
+        void addFields(Set<String> fields) {
+            for (ODataFilter filter : filters) {
+                filter.addFields(fields);
+            }
+        }
+    }
+
+    private static final class Or extends ODataFilter {
+        private final List<ODataFilter> filters;
+
+        private Or(List<ODataFilter> filters) {
+            this.filters = new ArrayList<>(filters);
+        }
+
+        @Override
+        public boolean test(Product product) {
+            for (ODataFilter filter : filters) {
+                if (filter.test(product)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public CompressedBitmap evaluate(ColumnarCatalog catalog) {
+            List<CompressedBitmap> bitmaps = new ArrayList<>(filters.size());
+            for (ODataFilter filter : filters) {
+                bitmaps.add(filter.evaluate(catalog));
+            }
+            return CompressedBitmap.orAll(bitmaps);
+        }
+
+        @Override
+        CompressedBitmap evaluate(ColumnarCatalog catalog, CompressedBitmap candidates) {
+            List<CompressedBitmap> bitmaps = new ArrayList<>(filters.size());
+            for (ODataFilter filter : filters) {
+                bitmaps.add(filter.evaluate(catalog, candidates));
+            }
+            return CompressedBitmap.orAll(bitmaps);
+        }
+
+        @Override
+        boolean scansProducts() {
+            return filters.stream().anyMatch(ODataFilter::scansProducts);
+        }
+
+        @Override
+        void addFields(Set<String> fields) {
+            for (ODataFilter filter : filters) {
+                filter.addFields(fields);
+            }
+        }
+    }
+
+    private static final class Not extends ODataFilter {
+        private final ODataFilter filter;
+
+        private Not(ODataFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean test(Product product) {
+            return !filter.test(product);
+        }
+
+        @Override
+        public CompressedBitmap evaluate(ColumnarCatalog catalog) {
+            return catalog.all().andNot(filter.evaluate(catalog));
+        }
+
+        @Override
+        CompressedBitmap evaluate(ColumnarCatalog catalog, CompressedBitmap candidates) {
+            return candidates.andNot(filter.evaluate(catalog, candidates));
+        }
+
+        @Override
+        boolean scansProducts() {
+            return filter.scansProducts();
+        }
+
+        @Override
+        void addFields(Set<String> fields) {
+            filter.addFields(fields);
+        }
+    }
+
+    /**
+     * Comparison on a dictionary-encoded attribute, answered from the value bitmaps
+     */
+    private static final class AttributeComparison extends ODataFilter {
+        private final String field;
+        private final ColumnarCatalog.Attribute attribute;
+        private final Operator operator;
+        private final String literal;
+
+        private AttributeComparison(String field, ColumnarCatalog.Attribute attribute, Operator operator, String literal) {
+            this.field = field;
+            this.attribute = attribute;
+            this.operator = operator;
+            this.literal = literal;
+        }
+
+        @Override
+        void addFields(Set<String> fields) {
+            fields.add(field);
+        }
+
+        private boolean accepts(String value) {
+            if (value == null || literal == null) {
+                return operator.acceptsMissing(value == null, literal == null);
+            }
+            return operator.accepts(value.compareTo(literal));
+        }
+
+        @Override
+        public boolean test(Product product) {
+            return accepts(ColumnarCatalog.stringValue(product, attribute));
+        }
+
+        @Override
+        public CompressedBitmap evaluate(ColumnarCatalog catalog) {
+            if (operator == Operator.EQ && literal != null) {
+                return catalog.equalTo(attribute, literal);
+            }
+            if (operator == Operator.NE && literal != null) {
+                return catalog.all().andNot(catalog.equalTo(attribute, literal));
+            }
+
+            // Decide once per distinct value, then combine the bitmaps of the accepted values
+            List<String> values = catalog.values(attribute);
+            boolean missingAccepted = accepts(null);
+            List<CompressedBitmap> bitmaps = new ArrayList<>();
+            for (int code = 0; code < values.size(); code++) {
+                if (accepts(values.get(code)) != missingAccepted) {
+                    bitmaps.add(catalog.withCode(attribute, code));
+                }
+            }
+            CompressedBitmap selected = CompressedBitmap.orAll(bitmaps);
+            return missingAccepted ? catalog.all().andNot(selected) : selected;
+        }
+    }
+
+    /**
+     * Membership of a dictionary-encoded attribute in a set of values
+     */
+    private static final class AttributeIn extends ODataFilter {
+        private final String field;
+        private final ColumnarCatalog.Attribute attribute;
+        private final Set<String> values;
+
+        private AttributeIn(String field, ColumnarCatalog.Attribute attribute, Collection<String> values) {
+            this.field = field;
+            this.attribute = attribute;
+            this.values = new HashSet<>(values);
+        }
+
+        @Override
+        void addFields(Set<String> fields) {
+            fields.add(field);
+        }
+
+        @Override
+        public boolean test(Product product) {
+            String value = ColumnarCatalog.stringValue(product, attribute);
+            return value != null && values.contains(value);
+        }
+
+        @Override
+        public CompressedBitmap evaluate(ColumnarCatalog catalog) {
+            List<CompressedBitmap> bitmaps = new ArrayList<>(values.size());
+            for (String value : values) {
+                bitmaps.add(catalog.equalTo(attribute, value));
+            }
+            return CompressedBitmap.orAll(bitmaps);
+        }
+    }
+
+    /**
+     * Comparison on a measure, answered from the bucket bitmaps and the double column
+     */
+    private static final class MeasureComparison extends ODataFilter {
+        private final String field;
+        private final ColumnarCatalog.Measure measure;
+        private final Operator operator;
+        private final Double literal;
+
+        private MeasureComparison(String field, ColumnarCatalog.Measure measure, Operator operator, Double literal) {
+            this.field = field;
+            this.measure = measure;
+            this.operator = operator;
+            this.literal = literal;
+        }
+
+        @Override
+        void addFields(Set<String> fields) {
+            fields.add(field);
+        }
+
+        private boolean accepts(double value) {
+            if (Double.isNaN(value) || literal == null) {
+                return operator.acceptsMissing(Double.isNaN(value), literal == null);
+            }
+            return operator.accepts(value < literal ? -1 : (value > literal ? 1 : 0));
+        }
+
+        @Override
+        public boolean test(Product product) {
+            return accepts(ColumnarCatalog.numericValue(product, measure));
+        }
+
+        @Override
+        public CompressedBitmap evaluate(ColumnarCatalog catalog) {
+            if (literal == null) {
+                double[] column = catalog.measures(measure);
+                return catalog.select(doc -> accepts(column[doc]));
+            }
+            double value = literal;
+            switch (operator) {
+                case EQ:
+                    return catalog.inRange(measure, value, true, value, true);
+                case NE:
+                    return catalog.all().andNot(catalog.inRange(measure, value, true, value, true));
+                case GT:
+                    return catalog.inRange(measure, value, false, Double.POSITIVE_INFINITY, true);
+                case GE:
+                    return catalog.inRange(measure, value, true, Double.POSITIVE_INFINITY, true);
+                case LT:
+                    return catalog.inRange(measure, Double.NEGATIVE_INFINITY, true, value, false);
+                default:
+                    return catalog.inRange(measure, Double.NEGATIVE_INFINITY, true, value, true);
+            }
+        }
+    }
+
+    /**
+     * Base of the leaves on fields without a column, which test each product
+     */
+    private abstract static class ProductScan extends ODataFilter {
+
+        @Override
+        public CompressedBitmap evaluate(ColumnarCatalog catalog) {
+            return catalog.select(doc -> test(catalog.product(doc)));
+        }
+
+        @Override
+        CompressedBitmap evaluate(ColumnarCatalog catalog, CompressedBitmap candidates) {
+            CompressedBitmap.Builder builder = new CompressedBitmap.Builder();
+            candidates.forEach(doc -> {
+                if (test(catalog.product(doc))) {
+                    builder.add(doc);
+                }
+            });
+            return builder.build();
+        }
+
+        @Override
+        boolean scansProducts() {
+            return true;
+        }
+    }
+
+    /**
+     * Comparison on a field without a column
+     * Numbers compare numerically, booleans only for equality and anything else as strings
+     */
+    private static final class FieldComparison extends ProductScan {
+        private final String field;
+        private final Function<Product, Object> accessor;
+        private final Operator operator;
+        private final Object literal;
+
+        private FieldComparison(String field, Function<Product, Object> accessor, Operator operator, Object literal) {
+            this.field = field;
+            this.accessor = accessor;
+            this.operator = operator;
+            this.literal = literal;
+        }
+
+        @Override
+        void addFields(Set<String> fields) {
+            fields.add(field);
+        }
+
+        @Override
+        public boolean test(Product product) {
+            Object value = accessor.apply(product);
+            if (value == null || literal == null) {
+                return operator.acceptsMissing(value == null, literal == null);
+            }
+            if (literal instanceof Double) {
+                if (!(value instanceof Number)) {
+                    return operator == Operator.NE;
+                }
+                return operator.accepts(Double.compare(((Number) value).doubleValue(), (Double) literal));
+            }
+            if (literal instanceof Boolean) {
+                boolean equal = literal.equals(value);
+                return operator == Operator.EQ ? equal : operator == Operator.NE && !equal;
+            }
+            return operator.accepts(value.toString().compareTo((String) literal));
+        }
+    }
+
+    /**
+     * Membership of a field without a column in a set of values
+     */
+    private static final class FieldIn extends ProductScan {
+        private final String field;
+        private final Function<Product, Object> accessor;
+        private final Set<String> values;
+
+        private FieldIn(String field, Function<Product, Object> accessor, Collection<String> values) {
+            this.field = field;
+            this.accessor = accessor;
+            this.values = new HashSet<>(values);
+        }
+
+        @Override
+        void addFields(Set<String> fields) {
+            fields.add(field);
+        }
+
+        @Override
+        public boolean test(Product product) {
+            Object value = accessor.apply(product);
+            return value != null && values.contains(value.toString());
+        }
+    }
+}
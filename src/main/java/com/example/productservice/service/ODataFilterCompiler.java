@@ -0,0 +1,334 @@
+package com.example.productservice.service;
+
+import com.example.productservice.cache.BoundedCache;
+import com.example.productservice.cache.SearchCacheManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiles OData filter strings into {@link ODataFilter} trees that are evaluated locally.
+ *
+ * Supports the subset of the Azure AI Search filter syntax this service
+ * produces and accepts: eq, ne, gt, ge, lt and le against string, number,
+ * boolean and null literals, and, or, not, parentheses and
+ * search.in(field, 'values', 'delimiters'). A bare field is read as a
+ * boolean comparison with true. Compiled filters are cached by filter string,
+ * so the filters of repeated searches are parsed once.
+ */
+@Service
+public class ODataFilterCompiler {
+
+    @Autowired
+    private SearchCacheManager searchCacheManager;
+
+    @Value("${product.cache.odata-filter.max-entries:1000}")
+    private long cacheMaxEntries;
+
+    @Value("${product.cache.odata-filter.ttl-seconds:3600}")
+    private long cacheTtlSeconds;
+
+    private BoundedCache<String, ODataFilter> compiledFilters;
+
+    @PostConstruct
+    void initCache() {
+        // Compiled trees do not depend on the catalog, so they stay valid across catalog updates
+        compiledFilters = searchCacheManager.register(
+            new BoundedCache<>("odata-filters", cacheMaxEntries, cacheTtlSeconds, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Compile a filter, reusing the tree compiled for an identical filter string
+     *
+     * @param filter The OData filter
+     * @return The compiled filter, or null if the filter is blank
+     * @throws IllegalArgumentException if the filter is malformed or uses an unsupported construct
+     */
+    ODataFilter compile(String filter) {
+        if (filter == null || filter.trim().isEmpty()) {
+            return null;
+        }
+        String key = filter.trim();
+        ODataFilter compiled = compiledFilters.get(key);
+        if (compiled == null) {
+            compiled = parse(key);
+            compiledFilters.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Parse a filter without the cache
+     *
+     * @throws IllegalArgumentException if the filter is malformed or uses an unsupported construct
+     */
+    static ODataFilter parse(String filter) {
+        Parser parser = new Parser(filter);
+        ODataFilter compiled = parser.parseOr();
+        if (parser.peek() != null) {
+            throw parser.error("Unexpected '" + parser.peek().text + "'");
+        }
+        return compiled;
+    }
+
+    private enum TokenType {
+        IDENTIFIER, STRING, NUMBER, OPEN, CLOSE, COMMA
+    }
+
+    private static final class Token {
+        private final TokenType type;
+        private final String text;
+        private final int position;
+
+        private Token(TokenType type, String text, int position) {
+            this.type = type;
+            this.text = text;
+            this.position = position;
+        }
+
+        private boolean isKeyword(String keyword) {
+            return type == TokenType.IDENTIFIER && text.equals(keyword);
+        }
+    }
+
+    /**
+     * Recursive descent parser; not binds tighter than and, which binds tighter than or
+     */
+    private static final class Parser {
+        private final String filter;
+        private final List<Token> tokens;
+        private int next;
+
+        private Parser(String filter) {
+            this.filter = filter;
+            this.tokens = tokenize(filter);
+        }
+
+        private ODataFilter parseOr() {
+            List<ODataFilter> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (peek() != null && peek().isKeyword("or")) {
+                next++;
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : ODataFilter.or(operands);
+        }
+
+        private ODataFilter parseAnd() {
+            List<ODataFilter> operands = new ArrayList<>();
+            operands.add(parseUnary());
+            while (peek() != null && peek().isKeyword("and")) {
+                next++;
+                operands.add(parseUnary());
+            }
+            return operands.size() == 1 ? operands.get(0) : ODataFilter.and(operands);
+        }
+
+        private ODataFilter parseUnary() {
+            if (peek() != null && peek().isKeyword("not")) {
+                next++;
+                return ODataFilter.not(parseUnary());
+            }
+            return parsePrimary();
+        }
+
+        private ODataFilter parsePrimary() {
+            Token token = take();
+            if (token.type == TokenType.OPEN) {
+                ODataFilter inner = parseOr();
+                expect(TokenType.CLOSE);
+                return inner;
+            }
+            if (token.type != TokenType.IDENTIFIER) {
+                throw error(token, "Expected a field, found '" + token.text + "'");
+            }
+            if (token.text.equals("true") || token.text.equals("false")) {
+                return ODataFilter.constant(Boolean.parseBoolean(token.text));
+            }
+            if (token.text.equals("search.in")) {
+                return parseSearchIn();
+            }
+            if (token.text.indexOf('.') >= 0 || token.text.indexOf('/') >= 0) {
+                throw error(token, "Unsupported function or path '" + token.text + "'");
+            }
+
+            ODataFilter.Operator operator = operator(peek());
+            if (operator == null) {
+                // A bare boolean field
+                return ODataFilter.compare(token.text, ODataFilter.Operator.EQ, Boolean.TRUE);
+            }
+            next++;
+            Object literal = parseLiteral();
+            try {
+                return ODataFilter.compare(token.text, operator, literal);
+            } catch (IllegalArgumentException e) {
+                throw error(token, e.getMessage());
+            }
+        }
+
+        private ODataFilter parseSearchIn() {
+            expect(TokenType.OPEN);
+            Token field = expect(TokenType.IDENTIFIER);
+            expect(TokenType.COMMA);
+            String values = expect(TokenType.STRING).text;
+            // Azure AI Search splits on spaces and commas unless delimiters are given
+            String delimiters = " ,";
+            if (peek() != null && peek().type == TokenType.COMMA) {
+                next++;
+                delimiters = expect(TokenType.STRING).text;
+            }
+            expect(TokenType.CLOSE);
+
+            List<String> split = new ArrayList<>();
+            int start = 0;
+            for (int i = 0; i <= values.length(); i++) {
+                if (i == values.length() || delimiters.indexOf(values.charAt(i)) >= 0) {
+                    if (i > start) {
+                        split.add(values.substring(start, i));
+                    }
+                    start = i + 1;
+                }
+            }
+            return ODataFilter.in(field.text, split);
+        }
+
+        private Object parseLiteral() {
+            Token token = take();
+            switch (token.type) {
+                case STRING:
+                    return token.text;
+                case NUMBER:
+                    return Double.parseDouble(token.text);
+                case IDENTIFIER:
+                    if (token.text.equals("true") || token.text.equals("false")) {
+                        return Boolean.parseBoolean(token.text);
+                    }
+                    if (token.text.equals("null")) {
+                        return null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            throw error(token, "Expected a literal, found '" + token.text + "'");
+        }
+
+        private static ODataFilter.Operator operator(Token token) {
+            if (token == null || token.type != TokenType.IDENTIFIER) {
+                return null;
+            }
+            switch (token.text) {
+                case "eq":
+                    return ODataFilter.Operator.EQ;
+                case "ne":
+                    return ODataFilter.Operator.NE;
+                case "gt":
+                    return ODataFilter.Operator.GT;
+                case "ge":
+                    return ODataFilter.Operator.GE;
+                case "lt":
+                    return ODataFilter.Operator.LT;
+                case "le":
+                    return ODataFilter.Operator.LE;
+                default:
+                    return null;
+            }
+        }
+
+        private Token peek() {
+            return next < tokens.size() ? tokens.get(next) : null;
+        }
+
+        private Token take() {
+            Token token = peek();
+            if (token == null) {
+                throw error("Unexpected end of filter");
+            }
+            next++;
+            return token;
+        }
+
+        private Token expect(TokenType type) {
+            Token token = take();
+            if (token.type != type) {
+                throw error(token, "Unexpected '" + token.text + "'");
+            }
+            return token;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid OData filter '" + filter + "': " + message);
+        }
+
+        private IllegalArgumentException error(Token token, String message) {
+            return error(message + " at position " + token.position);
+        }
+
+        private static List<Token> tokenize(String filter) {
+            List<Token> tokens = new ArrayList<>();
+            int i = 0;
+            while (i < filter.length()) {
+                char c = filter.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '(') {
+                    tokens.add(new Token(TokenType.OPEN, "(", i++));
+                } else if (c == ')') {
+                    tokens.add(new Token(TokenType.CLOSE, ")", i++));
+                } else if (c == ',') {
+                    tokens.add(new Token(TokenType.COMMA, ",", i++));
+                } else if (c == '\'') {
+                    // Quotes inside a string are doubled
+                    int start = i++;
+                    StringBuilder value = new StringBuilder();
+                    while (true) {
+                        if (i >= filter.length()) {
+                            throw new IllegalArgumentException("Invalid OData filter '" + filter + "': Unterminated string at position " + start);
+                        }
+                        char ch = filter.charAt(i++);
+                        if (ch == '\'') {
+                            if (i < filter.length() && filter.charAt(i) == '\'') {
+                                value.append('\'');
+                                i++;
+                            } else {
+                                break;
+                            }
+                        } else {
+                            value.append(ch);
+                        }
+                    }
+                    tokens.add(new Token(TokenType.STRING, value.toString(), start));
+                } else if (Character.isDigit(c) || ((c == '-' || c == '+' || c == '.') && i + 1 < filter.length()
+                                                    && (Character.isDigit(filter.charAt(i + 1)) || filter.charAt(i + 1) == '.'))) {
+                    int start = i++;
+                    while (i < filter.length() && (Character.isDigit(filter.charAt(i)) || ".eE".indexOf(filter.charAt(i)) >= 0
+                                                   || ((filter.charAt(i) == '-' || filter.charAt(i) == '+')
+                                                       && (filter.charAt(i - 1) == 'e' || filter.charAt(i - 1) == 'E')))) {
+                        i++;
+                    }
+                    String number = filter.substring(start, i);
+                    try {
+                        Double.parseDouble(number);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid OData filter '" + filter + "': Malformed number '" + number + "' at position " + start);
+                    }
+                    tokens.add(new Token(TokenType.NUMBER, number, start));
+                } else if (Character.isLetter(c) || c == '_') {
+                    int start = i;
+                    while (i < filter.length() && (Character.isLetterOrDigit(filter.charAt(i)) || "_./".indexOf(filter.charAt(i)) >= 0)) {
+                        i++;
+                    }
+                    tokens.add(new Token(TokenType.IDENTIFIER, filter.substring(start, i), start));
+                } else {
+                    throw new IllegalArgumentException("Invalid OData filter '" + filter + "': Unexpected '" + c + "' at position " + i);
+                }
+            }
+            return tokens;
+        }
+    }
+}
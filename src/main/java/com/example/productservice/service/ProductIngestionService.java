@@ -0,0 +1,359 @@
+package com.example.productservice.service;
+
+import com.example.productservice.model.IndexingReport;
+import com.example.productservice.model.IngestionResult;
+import com.example.productservice.model.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Streaming ingestion pipeline: parse -> map -> batch -> index.
+ *
+ * Rows flow from the CSV parser through variant grouping straight into an
+ * indexing session, whose in-flight window bounds how many batches are held
+ * in memory. Heap use is therefore independent of the feed size.
+ *
+ * With delta ingestion enabled, each mapped document is fingerprinted and
+ * only new or changed documents are sent; a full feed also deletes documents
+ * that are no longer in it. Fingerprints are committed when the index
+ * acknowledges the document, so failed documents are re-sent next time.
+ *
+ * Files parsed in parallel chunks can be checkpointed: the offset up to which
+ * every product is indexed is saved periodically, and a later run with the
+ * same checkpoint resumes from there instead of from the first row.
+ *
+ * Every parsed product, changed or not, also refreshes the catalog of the
+ * local search engine once the run completes.
+ */
+@Service
+public class ProductIngestionService {
+
+    @Autowired
+    private CsvParserService csvParserService;
+
+    @Autowired
+    private DocumentMappingService documentMappingService;
+
+    @Autowired
+    private SearchIndexWriter searchIndexWriter;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private FingerprintStore fingerprintStore;
+
+    @Autowired
+    private VariantGroupingService variantGroupingService;
+
+    @Autowired
+    private LocalSearchEngine localSearchEngine;
+
+    @Value("${azure.search.key-field:product_id}")
+    private String keyField;
+
+    @Value("${product.ingest.parallel-threshold-bytes:33554432}")
+    private long parallelThresholdBytes;
+
+    @Value("${product.ingest.checkpoint.interval-ms:5000}")
+    private long checkpointIntervalMillis;
+
+    /**
+     * Returns true when the product index can be written to
+     */
+    public boolean isIndexConfigured() {
+        return searchIndexWriter.isConfigured();
+    }
+
+    /**
+     * Stream an uploaded CSV feed into the search index
+     * Large uploads are spooled to a temporary file and parsed in parallel chunks;
+     * gzip and zlib compressed uploads are inflated as they stream into the parser
+     *
+     * @param file The uploaded CSV file
+     * @param fieldMapping Configuration for mapping CSV columns to Product fields
+     * @param fullFeed True when the file is the complete catalog, so products missing from it are deleted
+     * @return Parse and indexing statistics
+     * @throws IllegalArgumentException if the file uses an unsupported compression format
+     */
+    public IngestionResult ingestCsvUpload(MultipartFile file, Map<String, String> fieldMapping,
+                                           boolean fullFeed) throws IOException {
+        FeedInput feed = FeedInput.open(file.getInputStream());
+        if (feed.isCompressed() || file.getSize() < parallelThresholdBytes) {
+            // A compressed stream cannot be split into chunks, so it is parsed sequentially without spooling
+            return ingestFeed(feed, fieldMapping, new IngestionProgress(), fullFeed);
+        }
+        feed.close();
+
+        Path spooled = Files.createTempFile("product-feed-", ".csv");
+        try {
+            file.transferTo(spooled);
+            return ingestCsvFile(spooled, fieldMapping, new IngestionProgress(), fullFeed);
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
+    /**
+     * Ingest a CSV file from local disk, tracking progress for status reporting
+     * Uncompressed files at or above the parallel threshold are parsed in parallel chunks;
+     * compressed files are inflated as they are parsed and report progress in compressed bytes
+     *
+     * @param path The CSV file, plain or gzip/zlib compressed
+     * @param fieldMapping Configuration for mapping CSV columns to Product fields
+     * @param progress Receives live byte, row and document counters
+     * @param fullFeed True when the file is the complete catalog, so products missing from it are deleted
+     * @return Parse and indexing statistics
+     */
+    public IngestionResult ingestCsvFile(Path path, Map<String, String> fieldMapping,
+                                         IngestionProgress progress, boolean fullFeed) throws IOException {
+        return ingestCsvFile(path, fieldMapping, progress, fullFeed, null);
+    }
+
+    /**
+     * Ingest a CSV file from local disk, saving and resuming from a checkpoint
+     * Only files parsed in parallel chunks are checkpointed; smaller and compressed
+     * files are always ingested from the start
+     *
+     * @param path The CSV file, plain or gzip/zlib compressed
+     * @param fieldMapping Configuration for mapping CSV columns to Product fields
+     * @param progress Receives live byte, row and document counters
+     * @param fullFeed True when the file is the complete catalog, so products missing from it are deleted
+     * @param checkpoint Resume point of an earlier run over the same file; may be null
+     * @return Parse and indexing statistics for the part of the file ingested by this run
+     */
+    public IngestionResult ingestCsvFile(Path path, Map<String, String> fieldMapping, IngestionProgress progress,
+                                         boolean fullFeed, IngestionCheckpoint checkpoint) throws IOException {
+        FeedInput feed = FeedInput.open(Files.newInputStream(path), progress::addBytesProcessed);
+        long size = Files.size(path);
+        if (feed.isCompressed() || size < parallelThresholdBytes) {
+            return ingestFeed(feed, fieldMapping, progress, fullFeed);
+        }
+        feed.close();
+
+        CheckpointTracker tracker = null;
+        if (checkpoint != null) {
+            if (variantGroupingService.emitsInFeedOrder()) {
+                tracker = new CheckpointTracker(checkpoint, checkpointIntervalMillis);
+            } else {
+                System.err.println("Checkpoints are not saved when variant rows are spilled to partitions");
+            }
+        }
+        CheckpointTracker checkpoints = tracker;
+        long startOffset = checkpoints != null ? checkpoints.getStartOffset() : 0;
+        if (startOffset > 0) {
+            System.out.println("Resuming ingestion of " + path + " at byte " + startOffset + " of " + size);
+        }
+        progress.setBytesProcessed(startOffset);
+
+        IngestionResult result = ingest(consumer -> csvParserService.parseCsvFileParallel(path, fieldMapping, consumer, offset -> {
+            progress.setBytesProcessed(offset);
+            if (checkpoints != null) {
+                try {
+                    checkpoints.chunkConsumed(offset);
+                } catch (IOException e) {
+                    System.err.println("Error saving ingestion checkpoint: " + e.getMessage());
+                }
+            }
+        }, startOffset), progress, fullFeed, checkpoints);
+        result.setResumedFromOffset(startOffset);
+        recordThroughput(result, FeedInput.NONE, size - startOffset, size - startOffset);
+        return result;
+    }
+
+    private IngestionResult ingestFeed(FeedInput feed, Map<String, String> fieldMapping,
+                                       IngestionProgress progress, boolean fullFeed) throws IOException {
+        IngestionResult result = ingest(consumer -> csvParserService.parseCsvStream(feed, fieldMapping, consumer),
+                                        progress, fullFeed, null);
+        recordThroughput(result, feed.getCompression(), feed.getCompressedBytes(), feed.getUncompressedBytes());
+        return result;
+    }
+
+    private void recordThroughput(IngestionResult result, String compression, long inputBytes, long uncompressedBytes) {
+        result.setCompression(compression);
+        result.setInputBytes(inputBytes);
+        result.setUncompressedBytes(uncompressedBytes);
+
+        long elapsedMillis = result.getIndexing().getElapsedMillis();
+        if (elapsedMillis > 0) {
+            result.setInputMegabytesPerSecond(inputBytes / 1048576.0 / (elapsedMillis / 1000.0));
+            result.setUncompressedMegabytesPerSecond(uncompressedBytes / 1048576.0 / (elapsedMillis / 1000.0));
+        }
+
+        if (!FeedInput.NONE.equals(compression)) {
+            System.out.println("Read " + compression + " feed: " + inputBytes + " bytes inflated to " + uncompressedBytes +
+                             " bytes (" + String.format("%.1f", result.getInputMegabytesPerSecond()) + " MB/s in, " +
+                             String.format("%.1f", result.getUncompressedMegabytesPerSecond()) + " MB/s out)");
+        }
+    }
+
+    private IngestionResult ingest(ParseStep parseStep, IngestionProgress progress, boolean fullFeed,
+                                   CheckpointTracker checkpoints) throws IOException {
+        boolean delta = fingerprintStore.isEnabled();
+
+        // Fingerprints of uploads awaiting acknowledgement, committed to the store by the writer threads
+        Map<String, Long> pendingFingerprints = new ConcurrentHashMap<>();
+        FingerprintStore.KeyHashSet seenKeys = new FingerprintStore.KeyHashSet();
+        long[] unchanged = new long[1];
+        long[] unmapped = new long[1];
+
+        SearchIndexWriter.IndexingListener listener = null;
+        if (delta || checkpoints != null) {
+            listener = new SearchIndexWriter.IndexingListener() {
+                @Override
+                public void onAcknowledged(List<String> uploadedKeys, List<String> deletedKeys) {
+                    if (delta) {
+                        commitFingerprints(pendingFingerprints, uploadedKeys, deletedKeys);
+                    }
+                    if (checkpoints != null) {
+                        checkpoints.documentsCompleted(uploadedKeys);
+                    }
+                }
+
+                @Override
+                public void onFailed(String key) {
+                    if (checkpoints != null) {
+                        checkpoints.documentCompleted(key);
+                    }
+                }
+            };
+        }
+        SearchIndexWriter.IndexingSession session = searchIndexWriter.openSession(listener);
+        progress.setSession(session);
+
+        boolean resumed = checkpoints != null && checkpoints.getStartOffset() > 0;
+        LocalSearchEngine.Update catalogUpdate = localSearchEngine.beginUpdate();
+
+        Consumer<Product> indexer = product -> {
+            catalogUpdate.add(product);
+            Map<String, Object> document = documentMappingService.mapProductToDocument(product);
+            if (document == null) {
+                unmapped[0]++;
+                return;
+            }
+
+            String key = String.valueOf(document.get(keyField));
+            if (delta) {
+                long keyHash = FingerprintStore.hashKey(key);
+                long fingerprint = FingerprintStore.fingerprint(document);
+                // A key repeated within the feed is always sent so the last row still wins
+                if (seenKeys.add(keyHash) && fingerprintStore.isUnchanged(keyHash, fingerprint)) {
+                    unchanged[0]++;
+                    return;
+                }
+                pendingFingerprints.put(key, fingerprint);
+            }
+            if (checkpoints != null) {
+                checkpoints.documentQueued(key);
+            }
+            session.upload(document);
+        };
+
+        // SKU rows are grouped into one parent document per product before indexing
+        VariantGroupingService.GroupingSession grouping = variantGroupingService.open(indexer);
+        if (checkpoints != null) {
+            grouping.setGroupListener(checkpoints::groupEmitted);
+        }
+        CsvParserService.ParseStats parseStats;
+        try {
+            parseStats = parseStep.parse(product -> {
+                if (checkpoints != null && !checkpoints.rowParsed(product.getId())) {
+                    return;
+                }
+                progress.incrementRowsParsed();
+                grouping.accept(product);
+            });
+            grouping.finish();
+        } catch (IOException | RuntimeException e) {
+            grouping.abort();
+            throw e;
+        }
+
+        long deletesQueued = 0;
+        if (delta && fullFeed) {
+            if (resumed) {
+                // Keys before the resume point were not seen by this run
+                System.err.println("Skipping deletes for full feed: ingestion was resumed from a checkpoint");
+            } else if (parseStats.getRowsSkipped() > 0 || unmapped[0] > 0) {
+                // Keys of rejected rows are unknown, so deleting unseen keys could remove live products
+                System.err.println("Skipping deletes for full feed: " + (parseStats.getRowsSkipped() + unmapped[0]) +
+                                 " rows could not be mapped");
+            } else {
+                long[] deletes = new long[1];
+                fingerprintStore.forEachKeyNotIn(seenKeys, key -> {
+                    session.delete(key);
+                    deletes[0]++;
+                });
+                deletesQueued = deletes[0];
+            }
+        }
+
+        IndexingReport report = session.finish();
+        // Like deletes, the local catalog is only replaced when this run saw every product of a full feed
+        catalogUpdate.commit(fullFeed && !resumed && parseStats.getRowsSkipped() == 0 && unmapped[0] == 0);
+        productService.invalidateCaches();
+        if (delta) {
+            try {
+                fingerprintStore.compactIfNeeded();
+            } catch (IOException e) {
+                System.err.println("Error compacting fingerprint store: " + e.getMessage());
+            }
+        }
+
+        System.out.println("Ingested " + parseStats.getRowsParsed() + " rows (" + parseStats.getRowsSkipped() +
+                         " skipped, " + parseStats.getCellErrors() + " bad cells) into " + grouping.getGroups() +
+                         " products (" + unchanged[0] + " unchanged), indexed " +
+                         report.getDocumentsIndexed() + " documents and deleted " + report.getDocumentsDeleted() + " of " +
+                         deletesQueued + " in " + report.getElapsedMillis() + "ms (" +
+                         String.format("%.1f", report.getDocumentsPerSecond()) + " docs/sec, " +
+                         report.getDocumentsFailed() + " failed)");
+
+        IngestionResult result = new IngestionResult();
+        result.setRowsParsed(parseStats.getRowsParsed());
+        result.setRowsSkipped(parseStats.getRowsSkipped());
+        result.setCellErrors(parseStats.getCellErrors());
+        result.setRowsWithCellErrors(parseStats.getRowsWithCellErrors());
+        result.setProducts(grouping.getGroups());
+        result.setDocumentsUnchanged(unchanged[0]);
+        result.setIndexing(report);
+        return result;
+    }
+
+    private void commitFingerprints(Map<String, Long> pendingFingerprints, List<String> uploadedKeys,
+                                    List<String> deletedKeys) {
+        if (!uploadedKeys.isEmpty()) {
+            List<String> keys = new ArrayList<>(uploadedKeys.size());
+            long[] fingerprints = new long[uploadedKeys.size()];
+            for (String key : uploadedKeys) {
+                Long fingerprint = pendingFingerprints.remove(key);
+                if (fingerprint != null) {
+                    fingerprints[keys.size()] = fingerprint;
+                    keys.add(key);
+                }
+            }
+            fingerprintStore.recordAll(keys, fingerprints);
+        }
+        if (!deletedKeys.isEmpty()) {
+            fingerprintStore.removeAll(deletedKeys);
+        }
+    }
+
+    /**
+     * A parser that feeds mapped products to the pipeline
+     */
+    @FunctionalInterface
+    private interface ParseStep {
+        CsvParserService.ParseStats parse(Consumer<Product> consumer) throws IOException;
+    }
+}
@@ -1,23 +1,35 @@
 package com.example.productservice.service;
 
+import com.azure.core.exception.HttpResponseException;
 import com.azure.search.documents.SearchClient;
+import com.azure.search.documents.models.FacetResult;
 import com.azure.search.documents.models.SearchOptions;
 import com.azure.search.documents.models.SearchResult;
 import com.azure.search.documents.models.SemanticSearchOptions;
+import com.azure.search.documents.util.SearchPagedIterable;
+import com.azure.search.documents.util.SearchPagedResponse;
+import com.example.productservice.cache.BoundedCache;
+import com.example.productservice.cache.SearchCacheManager;
+import com.example.productservice.cache.SingleFlight;
 import com.example.productservice.model.Product;
 import com.example.productservice.model.ApparelProduct;
 import com.example.productservice.model.ApparelSemanticSearchRequest;
 import com.example.productservice.model.ApparelSemanticSearchResponse;
+import com.example.productservice.model.IndexingReport;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.time.LocalDateTime;
+import jakarta.annotation.PostConstruct;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class ProductService {
@@ -32,6 +44,15 @@ public class ProductService {
     @Autowired
     private DocumentMappingService documentMappingService;
     
+    @Autowired
+    private SearchIndexWriter searchIndexWriter;
+    
+    @Autowired
+    private LocalSearchEngine localSearchEngine;
+    
+    @Autowired
+    private ODataFilterCompiler odataFilterCompiler;
+    
     @Value("${azure.search.endpoint:}")
     private String searchEndpoint;
     
@@ -41,106 +62,287 @@ public class ProductService {
     @Value("${azure.search.index-name:products}")
     private String indexName;
     
+    @Value("${azure.search.key-field:product_id}")
+    private String keyField;
+    
+    @Autowired
+    private SearchCacheManager searchCacheManager;
+    
+    @Value("${product.cache.search.max-entries:1000}")
+    private long searchCacheMaxEntries;
+    
+    @Value("${product.cache.search.ttl-seconds:60}")
+    private long searchCacheTtlSeconds;
+    
+    @Value("${product.cache.semantic.max-weight:5000}")
+    private long semanticCacheMaxWeight;
+    
+    @Value("${product.cache.semantic.ttl-seconds:120}")
+    private long semanticCacheTtlSeconds;
+    
+    @Value("${product.search.coalesce-timeout-ms:10000}")
+    private long coalesceTimeoutMillis;
+    
+    @Value("${product.cache.product.max-entries:10000}")
+    private long productCacheMaxEntries;
+    
+    @Value("${product.cache.product.ttl-seconds:300}")
+    private long productCacheTtlSeconds;
+    
+    @Value("${product.cache.product-miss.max-entries:10000}")
+    private long missingProductCacheMaxEntries;
+    
+    @Value("${product.cache.product-miss.ttl-seconds:60}")
+    private long missingProductCacheTtlSeconds;
+    
+    @Value("${product.lookup.batch-chunk-size:50}")
+    private int batchLookupChunkSize;
+    
+    /** Largest page Azure AI Search returns for a single query */
+    private static final int MAX_SEARCH_TOP = 1000;
+    
+    /** Number of semantic search results written to the log per request */
+    private static final int LOGGED_RESULT_SAMPLE = 5;
+    
+    private BoundedCache<String, List<Product>> searchResultCache;
+    
+    private BoundedCache<String, ApparelSemanticSearchResponse> semanticResponseCache;
+    
+    private BoundedCache<String, Product> productCache;
+    
+    private BoundedCache<String, Boolean> missingProductCache;
+    
+    private SingleFlight<String, Product> productLookupFlights;
+    
+    private SingleFlight<String, List<Product>> productSearchFlights;
+    
+    private SingleFlight<String, List<ApparelProduct>> apparelSearchFlights;
+    
+    private SingleFlight<String, ApparelSemanticSearchResponse> semanticSearchFlights;
+    
+    @PostConstruct
+    void initCaches() {
+        searchResultCache = searchCacheManager.register(
+            new BoundedCache<>("search-results", searchCacheMaxEntries, searchCacheTtlSeconds, TimeUnit.SECONDS));
+        // Semantic responses are weighted by their result count so large pages use more of the budget
+        semanticResponseCache = searchCacheManager.register(
+            new BoundedCache<>("semantic-responses", semanticCacheMaxWeight, semanticCacheTtlSeconds, TimeUnit.SECONDS,
+                response -> response.getResults() != null ? response.getResults().size() : 1));
+        // Near-cache of point lookups, plus a shorter-lived negative cache for unknown IDs
+        productCache = searchCacheManager.register(
+            new BoundedCache<>("products", productCacheMaxEntries, productCacheTtlSeconds, TimeUnit.SECONDS));
+        missingProductCache = searchCacheManager.register(
+            new BoundedCache<>("missing-products", missingProductCacheMaxEntries, missingProductCacheTtlSeconds, TimeUnit.SECONDS));
+        
+        // Identical concurrent remote searches share a single call to the index
+        productSearchFlights = searchCacheManager.register(
+            new SingleFlight<>("product-search", coalesceTimeoutMillis));
+        apparelSearchFlights = searchCacheManager.register(
+            new SingleFlight<>("apparel-search", coalesceTimeoutMillis));
+        semanticSearchFlights = searchCacheManager.register(
+            new SingleFlight<>("semantic-search", coalesceTimeoutMillis));
+        productLookupFlights = searchCacheManager.register(
+            new SingleFlight<>("product-lookup", coalesceTimeoutMillis));
+    }
+    
     /**
      * Retrieves a product by its ID
-     * In a real implementation, this would query a database or search index
+     * Looks the product up in Azure AI Search, or in the local search engine when no search client is configured
      * 
      * @param productId The unique identifier of the product
      * @return Product object or null if not found
      */
     public Product getProductById(String productId) {
-        // For demonstration purposes, return mock data
-        // In a real implementation, you would:
-        // 1. Query Azure AI Search using the searchClient
-        // 2. Or query a database
-        // 3. Or call another microservice
-        
         if (searchClient != null) {
             return searchProductById(productId);
         } else {
-            return getMockProduct(productId);
+            return localSearchEngine.getProduct(productId);
         }
     }
     
     /**
-     * Search for product using Azure AI Search
+     * Look up a product in Azure AI Search, serving repeated reads from the near-cache
      * 
      * @param productId The product ID to search for
      * @return Product object or null if not found
      */
     private Product searchProductById(String productId) {
+        Product cached = productCache.get(productId);
+        if (cached != null) {
+            return cached;
+        }
+        
+        if (missingProductCache.get(productId) != null) {
+            return null;
+        }
+        
+        try {
+            return productLookupFlights.execute(productId, () -> {
+                Product product = fetchProductById(productId);
+                if (product != null) {
+                    productCache.put(productId, product);
+                } else {
+                    missingProductCache.put(productId, Boolean.TRUE);
+                }
+                return product;
+            });
+        } catch (Exception e) {
+            // Log the exception; failures are not recorded in the negative cache
+            System.err.println("Error searching for product: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Fetch a single product from the index
+     * Uses a direct key lookup when product_id is the index key, otherwise a filter-only query
+     * 
+     * @param productId The product ID to fetch
+     * @return Product object or null if the index has no such product
+     */
+    @SuppressWarnings("unchecked")
+    private Product fetchProductById(String productId) {
+        if ("product_id".equals(keyField)) {
+            try {
+                Map<String, Object> document = searchClient.getDocument(productId, Map.class);
+                return documentMappingService.mapDocumentToProduct(document);
+            } catch (HttpResponseException e) {
+                if (e.getResponse() != null && e.getResponse().getStatusCode() == 404) {
+                    return null;
+                }
+                throw e;
+            }
+        }
+        
+        SearchOptions searchOptions = new SearchOptions()
+            .setFilter("product_id eq '" + escapeODataString(productId) + "'")
+            .setTop(1);
+        
+        Iterable<SearchResult> searchResults = 
+            searchClient.search("*", searchOptions, null);
+        
+        for (SearchResult result : searchResults) {
+            return documentMappingService.mapSearchResultToProduct(result);
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Drop every cached product and keyword search result, e.g. after a bulk ingestion
+     */
+    public void invalidateCaches() {
+        productCache.invalidateAll();
+        missingProductCache.invalidateAll();
+        searchResultCache.invalidateAll();
+    }
+    
+    /**
+     * Retrieves many products at once
+     * Cache hits are served locally and the misses are fetched with chunked search.in queries
+     * 
+     * @param productIds The product IDs to resolve
+     * @return Products in input order, with null for IDs that were not found
+     */
+    public List<Product> getProductsByIds(List<String> productIds) {
+        List<Product> products = new ArrayList<>(productIds.size());
+        
+        if (searchClient == null) {
+            for (String productId : productIds) {
+                products.add(productId != null ? localSearchEngine.getProduct(productId) : null);
+            }
+            return products;
+        }
+        
+        Map<String, Product> resolved = new HashMap<>();
+        Set<String> pending = new LinkedHashSet<>();
+        for (String productId : productIds) {
+            if (productId == null || resolved.containsKey(productId) || pending.contains(productId)) {
+                continue;
+            }
+            
+            Product cached = productCache.get(productId);
+            if (cached != null) {
+                resolved.put(productId, cached);
+            } else if (missingProductCache.get(productId) != null) {
+                resolved.put(productId, null);
+            } else if (productId.indexOf('|') >= 0) {
+                // Cannot be expressed with the search.in delimiter, fall back to a single lookup
+                resolved.put(productId, searchProductById(productId));
+            } else {
+                pending.add(productId);
+            }
+        }
+        
+        List<String> chunk = new ArrayList<>(batchLookupChunkSize);
+        for (String productId : pending) {
+            chunk.add(productId);
+            if (chunk.size() >= batchLookupChunkSize) {
+                fetchProductChunk(chunk, resolved);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            fetchProductChunk(chunk, resolved);
+        }
+        
+        for (String productId : productIds) {
+            products.add(productId != null ? resolved.get(productId) : null);
+        }
+        return products;
+    }
+    
+    /**
+     * Fetch one chunk of product IDs with a single set-membership query
+     */
+    private void fetchProductChunk(List<String> productIds, Map<String, Product> resolved) {
         try {
             SearchOptions searchOptions = new SearchOptions()
-                .setFilter("product_id eq '" + productId + "'")
-                .setTop(1);
+                .setFilter("search.in(product_id, '" + escapeODataString(String.join("|", productIds)) + "', '|')")
+                .setTop(MAX_SEARCH_TOP);
             
             Iterable<SearchResult> searchResults = 
-                searchClient.search(productId, searchOptions, null);
+                searchClient.search("*", searchOptions, null);
             
+            int hits = 0;
             for (SearchResult result : searchResults) {
-                return documentMappingService.mapSearchResultToProduct(result);
+                hits++;
+                Product product = documentMappingService.mapSearchResultToProduct(result);
+                if (product != null && product.getId() != null && !resolved.containsKey(product.getId())) {
+                    resolved.put(product.getId(), product);
+                    productCache.put(product.getId(), product);
+                }
+            }
+            
+            // Misses are only authoritative when the page was not truncated
+            boolean complete = hits < MAX_SEARCH_TOP;
+            for (String productId : productIds) {
+                if (!resolved.containsKey(productId)) {
+                    resolved.put(productId, null);
+                    if (complete) {
+                        missingProductCache.put(productId, Boolean.TRUE);
+                    }
+                }
             }
         } catch (Exception e) {
-            // Log the exception
-            System.err.println("Error searching for product: " + e.getMessage());
+            System.err.println("Error fetching products by ID: " + e.getMessage());
+            for (String productId : productIds) {
+                resolved.putIfAbsent(productId, null);
+            }
         }
-        
-        return null;
     }
     
-    
     /**
-     * Returns mock product data for demonstration
+     * Remove a product from the near-cache and the negative cache
      * 
-     * @param productId The product ID
-     * @return Mock Product object
-     */
-    private Product getMockProduct(String productId) {
-        // Mock data for demonstration
-        Product product = new Product();
-        product.setId(productId);
-        product.setName("Sample Product " + productId);
-        product.setDescription("This is a sample product description for product " + productId);
-        product.setBrand("Sample Brand");
-        product.setCategory("Electronics");
-        product.setPrice(new BigDecimal("99.99"));
-        product.setCurrency("USD");
-        product.setSku("SKU-" + productId);
-        product.setImage("https://example.com/images/product-" + productId + ".jpg");
-        
-        List<String> tags = new ArrayList<>();
-        tags.add("electronics");
-        tags.add("sample");
-        tags.add("demo");
-        product.setTags(tags);
-        
-        product.setInStock(true);
-        product.setStockQuantity(100);
-        product.setManufacturer("Sample Manufacturer");
-        product.setModel("Model-" + productId);
-        
-        List<String> specifications = new ArrayList<>();
-        specifications.add("Color: Black");
-        specifications.add("Weight: 1.5 lbs");
-        specifications.add("Dimensions: 10x8x2 inches");
-        product.setSpecifications(specifications);
-        
-        product.setCreatedAt(LocalDateTime.now().minusDays(30));
-        product.setUpdatedAt(LocalDateTime.now());
-        
-        // Add some custom attributes as examples
-        product.addCustomAttribute("warranty", "2 years");
-        product.addCustomAttribute("color", "Black");
-        product.addCustomAttribute("weight", "1.5 lbs");
-        product.addCustomAttribute("dimensions", "10x8x2 inches");
-        product.addCustomAttribute("batteryLife", "24 hours");
-        product.addCustomAttribute("isWaterproof", true);
-        product.addCustomAttribute("rating", 4.5);
-        product.addCustomAttribute("reviewCount", 150);
-        
-        return product;
+     * @param productId The product ID to invalidate
+     */
+    public void invalidateProduct(String productId) {
+        productCache.invalidate(productId);
+        missingProductCache.invalidate(productId);
     }
     
+    
     /**
      * Search for products using Azure AI Search
      * 
@@ -151,22 +353,43 @@ public class ProductService {
      */
     public List<Product> searchProducts(String searchText, String filters, int top) {
         if (searchClient == null) {
-            System.err.println("Azure Search client is not configured");
-            return new ArrayList<>();
+            if (!localSearchEngine.isAvailable()) {
+                System.err.println("Azure Search client is not configured");
+                return new ArrayList<>();
+            }
+            return searchLocally(searchText, filters, top);
         }
         
-        try {
-            SearchOptions searchOptions = new SearchOptions()
-                .setTop(top);
-            
-            if (filters != null && !filters.trim().isEmpty()) {
-                searchOptions.setFilter(filters);
+        String cacheKey = searchCacheKey(searchText, filters, top);
+        List<Product> cached = searchResultCache.get(cacheKey);
+        if (cached != null) {
+            return new ArrayList<>(cached);
+        }
+        if (filters != null && !filters.trim().isEmpty()) {
+            List<Product> refiltered = refilterCachedResults(searchText, filters, top);
+            if (refiltered != null) {
+                searchResultCache.put(cacheKey, refiltered);
+                return new ArrayList<>(refiltered);
             }
-            
-            Iterable<SearchResult> searchResults = 
-                searchClient.search(searchText, searchOptions, null);
-            
-            return documentMappingService.mapSearchResultsToProducts(searchResults);
+        }
+        
+        try {
+            List<Product> products = productSearchFlights.execute(cacheKey, () -> {
+                SearchOptions searchOptions = new SearchOptions()
+                    .setTop(top);
+                
+                if (filters != null && !filters.trim().isEmpty()) {
+                    searchOptions.setFilter(filters);
+                }
+                
+                Iterable<SearchResult> searchResults = 
+                    searchClient.search(searchText, searchOptions, null);
+                
+                List<Product> results = documentMappingService.mapSearchResultsToProducts(searchResults);
+                searchResultCache.put(cacheKey, results);
+                return results;
+            });
+            return new ArrayList<>(products);
             
         } catch (Exception e) {
             System.err.println("Error searching for products: " + e.getMessage());
@@ -175,6 +398,59 @@ public class ProductService {
         }
     }
     
+    /**
+     * Serve a keyword search from the local search engine
+     * The OData filter is compiled and evaluated against the local catalog; malformed filters return no results
+     */
+    private List<Product> searchLocally(String searchText, String filters, int top) {
+        List<Product> products = new ArrayList<>();
+        ODataFilter filter;
+        try {
+            filter = odataFilterCompiler.compile(filters);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return products;
+        }
+        
+        for (LocalSearchEngine.Hit hit : localSearchEngine.search(searchText, filter, top).getHits()) {
+            products.add(hit.getProduct());
+        }
+        return products;
+    }
+    
+    /**
+     * Answer a filtered search from the cached results of the same search without the filter
+     * Only a cached page holding fewer than top results is known to contain every match, so other pages are not used,
+     * and only filters on Product properties are evaluated, since other index fields are lost when results are mapped
+     *
+     * @return The filtered results, or null if they have to come from the index
+     */
+    private List<Product> refilterCachedResults(String searchText, String filters, int top) {
+        List<Product> unfiltered = searchResultCache.getIfPresentQuietly(searchCacheKey(searchText, null, top));
+        if (unfiltered == null || unfiltered.size() >= top) {
+            return null;
+        }
+        
+        ODataFilter filter;
+        try {
+            filter = odataFilterCompiler.compile(filters);
+        } catch (IllegalArgumentException e) {
+            // Let the index report the error for filters the local compiler does not support
+            return null;
+        }
+        if (!filter.readsOnlyProductProperties()) {
+            return null;
+        }
+        
+        List<Product> products = new ArrayList<>();
+        for (Product product : unfiltered) {
+            if (filter.test(product)) {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+    
     /**
      * Search for products by category
      * 
@@ -183,6 +459,9 @@ public class ProductService {
      * @return List of Product objects
      */
     public List<Product> searchProductsByCategory(String category, int top) {
+        if (filtersServedLocally(searchClient)) {
+            return localSearchEngine.findEqual(ColumnarCatalog.Attribute.CATEGORY, category, top);
+        }
         String filter = "category eq '" + category + "'";
         return searchProducts("*", filter, top);
     }
@@ -195,6 +474,9 @@ public class ProductService {
      * @return List of Product objects
      */
     public List<Product> searchProductsByBrand(String brand, int top) {
+        if (filtersServedLocally(searchClient)) {
+            return localSearchEngine.findEqual(ColumnarCatalog.Attribute.BRAND, brand, top);
+        }
         String filter = "brand eq '" + brand + "'";
         return searchProducts("*", filter, top);
     }
@@ -208,58 +490,118 @@ public class ProductService {
      * @return List of Product objects
      */
     public List<Product> searchProductsByPriceRange(double minPrice, double maxPrice, int top) {
+        if (filtersServedLocally(searchClient)) {
+            return localSearchEngine.findInRange(ColumnarCatalog.Measure.PRICE, minPrice, maxPrice, top);
+        }
         String filter = "price ge " + minPrice + " and price le " + maxPrice;
         return searchProducts("*", filter, top);
     }
     
+    /**
+     * Returns true when single-attribute filters on an index are answered from the local catalog,
+     * which is the case when the index has no client
+     */
+    private boolean filtersServedLocally(SearchClient client) {
+        return client == null && localSearchEngine.isAvailable();
+    }
+    
     /**
      * Upload products to Azure AI Search
-     * Note: This is a placeholder implementation
      * 
      * @param products List of products to upload
      * @return true if successful, false otherwise
      */
     public boolean uploadProductsToSearch(List<Product> products) {
-        if (searchClient == null) {
+        IndexingReport report = indexProducts(products);
+        return report != null && report.getDocumentsFailed() == 0;
+    }
+    
+    /**
+     * Index products in Azure AI Search using batched, concurrent uploads
+     * 
+     * @param products List of products to upload
+     * @return Report of the indexing run, or null if indexing could not start
+     */
+    public IndexingReport indexProducts(List<Product> products) {
+        if (!searchIndexWriter.isConfigured()) {
             System.err.println("Azure Search client is not configured");
-            return false;
+            return null;
         }
         
         try {
-            // TODO: Implement Azure Search upload functionality
-            // For now, just log the products that would be uploaded
-            System.out.println("Would upload " + products.size() + " products to Azure AI Search");
+            SearchIndexWriter.IndexingSession session = searchIndexWriter.openSession();
+            for (Product product : products) {
+                Map<String, Object> document = documentMappingService.mapProductToDocument(product);
+                if (document != null) {
+                    session.upload(document);
+                }
+            }
+            
+            IndexingReport report = session.finish();
+            System.out.println("Indexed " + report.getDocumentsIndexed() + " of " + report.getDocumentsSubmitted() +
+                             " products in " + report.getElapsedMillis() + "ms (" +
+                             String.format("%.1f", report.getDocumentsPerSecond()) + " docs/sec, " +
+                             report.getBatches() + " batches, avg batch latency " +
+                             String.format("%.1f", report.getAverageBatchLatencyMillis()) + "ms, " +
+                             report.getDocumentsFailed() + " failed)");
+            
+            localSearchEngine.upsertAll(products);
+            
+            // Cached reads may now be stale
             for (Product product : products) {
-                System.out.println("Product: " + product.getName() + " (ID: " + product.getId() + ")");
+                if (product.getId() != null) {
+                    invalidateProduct(product.getId());
+                }
             }
+            searchResultCache.invalidateAll();
             
-            return true;
+            return report;
             
         } catch (Exception e) {
             System.err.println("Error uploading products to Azure AI Search: " + e.getMessage());
             e.printStackTrace();
-            return false;
+            return null;
         }
     }
     
     // ==================== HELPER METHODS ====================
     
     /**
-     * Helper method to get string value from search result
+     * Escapes a value for use inside a quoted OData string literal
+     */
+    private String escapeODataString(String value) {
+        return value.replace("'", "''");
+    }
+    
+    /**
+     * Builds the result cache key for a keyword search
      */
-    private String getStringValue(SearchResult searchResult, String fieldName) {
-        @SuppressWarnings("unchecked")
+    private String searchCacheKey(String searchText, String filters, int top) {
+        String normalizedFilter = (filters != null) ? filters.trim() : "";
+        return searchText + '\0' + normalizedFilter + '\0' + top;
+    }
+    
+    /**
+     * Helper method to decode a search result document once so its fields can be read repeatedly
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> decodeDocument(SearchResult searchResult) {
         Map<String, Object> document = (Map<String, Object>) searchResult.getDocument(Map.class);
+        return document != null ? document : new HashMap<>();
+    }
+    
+    /**
+     * Helper method to get string value from a decoded search document
+     */
+    private String getStringValue(Map<String, Object> document, String fieldName) {
         Object value = document.get(fieldName);
         return value != null ? value.toString() : null;
     }
     
     /**
-     * Helper method to get double value from search result
+     * Helper method to get double value from a decoded search document
      */
-    private Double getDoubleValue(SearchResult searchResult, String fieldName) {
-        @SuppressWarnings("unchecked")
-        Map<String, Object> document = (Map<String, Object>) searchResult.getDocument(Map.class);
+    private Double getDoubleValue(Map<String, Object> document, String fieldName) {
         Object value = document.get(fieldName);
         if (value instanceof Number) {
             return ((Number) value).doubleValue();
@@ -268,11 +610,10 @@ public class ProductService {
     }
     
     /**
-     * Helper method to get string list value from search result
+     * Helper method to get string list value from a decoded search document
      */
     @SuppressWarnings("unchecked")
-    private List<String> getStringListValue(SearchResult searchResult, String fieldName) {
-        Map<String, Object> document = (Map<String, Object>) searchResult.getDocument(Map.class);
+    private List<String> getStringListValue(Map<String, Object> document, String fieldName) {
         Object value = document.get(fieldName);
         if (value instanceof List) {
             return (List<String>) value;
@@ -290,106 +631,25 @@ public class ProductService {
      */
     public ApparelSemanticSearchResponse performApparelSemanticSearch(ApparelSemanticSearchRequest request) {
         if (apparelSearchClient == null) {
+            if (localSearchEngine.isAvailable()) {
+                return performLocalApparelSearch(request);
+            }
             System.err.println("Apparel Azure Search client is not configured");
             return createApparelErrorResponse(request.getSearch(), "Apparel Azure Search client is not configured");
         }
         
         long startTime = System.currentTimeMillis();
         
+        String cacheKey = request.toCacheKey();
+        ApparelSemanticSearchResponse cached = semanticResponseCache.get(cacheKey);
+        if (cached != null) {
+            return copyApparelResponse(cached, System.currentTimeMillis() - startTime);
+        }
+        
         try {
-            // Log the incoming request
-            System.out.println("=== AZURE SEARCH REQUEST ===");
-            System.out.println("Query: " + request.getSearch());
-            System.out.println("Top: " + request.getTop());
-            System.out.println("Skip: " + request.getSkip());
-            System.out.println("Count: " + request.getCount());
-            System.out.println("Select: " + request.getSelect());
-            System.out.println("Facets: " + request.getFacets());
-            System.out.println("Semantic Configuration: " + request.getSemanticConfiguration());
-            
-            // Create search options with semantic configuration
-            SearchOptions searchOptions = new SearchOptions()
-                .setTop(request.getTop())
-                .setSkip(request.getSkip())
-                .setIncludeTotalCount(request.getCount());
-            
-            // Set select fields if specified
-            if (request.getSelect() != null && !request.getSelect().trim().isEmpty()) {
-                searchOptions.setSelect(request.getSelect().split(","));
-            }
-            
-            // Set facets if specified - Fix the rating facet issue
-            if (request.getFacets() != null && !request.getFacets().isEmpty()) {
-                // Filter out invalid facets (like rating with decimal values)
-                List<String> validFacets = new ArrayList<>();
-                for (String facet : request.getFacets()) {
-                    if (facet.contains("rating")) {
-                        // For rating field, use count instead of value for facets
-                        validFacets.add("rating,count:10");
-                    } else {
-                        validFacets.add(facet);
-                    }
-                }
-                searchOptions.setFacets(validFacets.toArray(new String[0]));
-                System.out.println("Valid Facets: " + validFacets);
-            }
-            
-            // Apply apparel-specific filters
-            String filterString = request.buildFilterString();
-            if (filterString != null && !filterString.trim().isEmpty()) {
-                searchOptions.setFilter(filterString);
-                System.out.println("Filter: " + filterString);
-            }
-            
-            // Configure semantic search options
-            SemanticSearchOptions semanticOptions = new SemanticSearchOptions()
-                .setSemanticConfigurationName(request.getSemanticConfiguration());
-            
-            searchOptions.setSemanticSearchOptions(semanticOptions);
-            
-            // Log the complete search options
-            System.out.println("Search Options - Top: " + searchOptions.getTop());
-            System.out.println("Search Options - Skip: " + searchOptions.getSkip());
-            System.out.println("Search Options - IncludeTotalCount: " + request.getCount());
-            System.out.println("Search Options - Select: " + (searchOptions.getSelect() != null ? searchOptions.getSelect().toString() : "null"));
-            System.out.println("Search Options - Facets: " + (searchOptions.getFacets() != null ? searchOptions.getFacets().toString() : "null"));
-            System.out.println("Search Options - Filter: " + searchOptions.getFilter());
-            System.out.println("Search Options - Semantic Config: " + searchOptions.getSemanticSearchOptions().getSemanticConfigurationName());
-            
-            // Perform the search
-            System.out.println("Executing Azure Search request...");
-            Iterable<SearchResult> searchResults = 
-                apparelSearchClient.search(request.getSearch(), searchOptions, null);
-            
-            // Log search results
-            System.out.println("=== AZURE SEARCH RESPONSE ===");
-            int resultCount = 0;
-            for (SearchResult result : searchResults) {
-                resultCount++;
-                System.out.println("Result " + resultCount + ":");
-                System.out.println("  Score: " + result.getScore());
-                System.out.println("  Document: " + result.getDocument(Map.class));
-                if (resultCount >= 5) { // Limit to first 5 results for logging
-                    System.out.println("  ... (showing first 5 results)");
-                    break;
-                }
-            }
-            System.out.println("Total results processed: " + resultCount);
-            
-            // Process results
-            ApparelSemanticSearchResponse response = processApparelSemanticSearchResults(
-                request.getSearch(), 
-                searchResults, 
-                System.currentTimeMillis() - startTime
-            );
-            
-            System.out.println("=== FINAL RESPONSE ===");
-            System.out.println("Query: " + response.getQuery());
-            System.out.println("Total Results: " + response.getTotalResults());
-            System.out.println("Search Time: " + response.getSearchTime() + "ms");
-            System.out.println("Results Count: " + (response.getResults() != null ? response.getResults().size() : 0));
-            
-            return response;
+            ApparelSemanticSearchResponse response = semanticSearchFlights.execute(cacheKey,
+                () -> executeApparelSemanticSearch(request, cacheKey, startTime));
+            return copyApparelResponse(response, response.getSearchTime());
             
         } catch (Exception e) {
             System.err.println("Apparel semantic search error: " + e.getMessage());
@@ -398,60 +658,251 @@ public class ProductService {
         }
     }
     
+    /**
+     * Serve an apparel semantic search from the local search engine
+     * The request filter is compiled and evaluated on the bitmap indexes of the local catalog and the matches are ranked with BM25
+     */
+    private ApparelSemanticSearchResponse performLocalApparelSearch(ApparelSemanticSearchRequest request) {
+        long startTime = System.currentTimeMillis();
+        int skip = request.getSkip() != null ? Math.max(0, request.getSkip()) : 0;
+        int top = request.getTop() != null ? Math.max(0, request.getTop()) : 10;
+        
+        ODataFilter filter;
+        try {
+            filter = odataFilterCompiler.compile(request.buildFilterString());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return createApparelErrorResponse(request.getSearch(), e.getMessage());
+        }
+        
+        LocalSearchEngine.Results found = localSearchEngine.search(request.getSearch(), filter, skip + top);
+        List<LocalSearchEngine.Hit> hits = found.getHits();
+        List<ApparelSemanticSearchResponse.ApparelSearchResult> results = new ArrayList<>();
+        for (int i = skip; i < hits.size(); i++) {
+            results.add(toApparelSearchResult(hits.get(i)));
+        }
+        
+        ApparelSemanticSearchResponse response = new ApparelSemanticSearchResponse(request.getSearch(), found.getTotalCount(), results);
+        if (request.getFacets() != null && !request.getFacets().isEmpty()) {
+            response.setFacets(localSearchEngine.facets(found, request.getFacets(), request.buildFilterString()));
+        }
+        response.setSearchTime(System.currentTimeMillis() - startTime);
+        return response;
+    }
+    
+    /**
+     * Convert a local search hit to an apparel search result
+     */
+    private ApparelSemanticSearchResponse.ApparelSearchResult toApparelSearchResult(LocalSearchEngine.Hit hit) {
+        Product product = hit.getProduct();
+        ApparelSemanticSearchResponse.ApparelSearchResult result = new ApparelSemanticSearchResponse.ApparelSearchResult();
+        result.setProductId(product.getId());
+        result.setTitle(product.getName());
+        result.setBrand(product.getBrand());
+        result.setColor(ColumnarCatalog.stringValue(product, ColumnarCatalog.Attribute.COLOR));
+        result.setSize(ColumnarCatalog.stringValue(product, ColumnarCatalog.Attribute.SIZE));
+        result.setMaterial(ColumnarCatalog.stringValue(product, ColumnarCatalog.Attribute.MATERIAL));
+        result.setPrice(product.getPrice() != null ? product.getPrice().doubleValue() : null);
+        double rating = ColumnarCatalog.numericValue(product, ColumnarCatalog.Measure.RATING);
+        result.setRating(Double.isNaN(rating) ? null : rating);
+        result.setDescription(product.getDescription());
+        Object reviewText = product.getCustomAttribute("review_text");
+        result.setReviewText(reviewText != null ? reviewText.toString() : null);
+        result.setReviewSentimentLabel(ColumnarCatalog.stringValue(product, ColumnarCatalog.Attribute.REVIEW_SENTIMENT));
+        result.setScore(hit.getScore());
+        return result;
+    }
+    
+    /**
+     * Execute an apparel semantic search against the index and cache the response
+     * Facets, including the default count:N facets, are computed by the index; on an index with several
+     * partitions Azure AI Search counts the top values per partition, so those counts may be approximate.
+     * Exact counts are only computed by the local engine, which serves searches when no index is configured
+     */
+    private ApparelSemanticSearchResponse executeApparelSemanticSearch(ApparelSemanticSearchRequest request,
+                                                                       String cacheKey, long startTime) {
+        // Log the incoming request
+        System.out.println("=== AZURE SEARCH REQUEST ===");
+        System.out.println("Query: " + request.getSearch());
+        System.out.println("Top: " + request.getTop());
+        System.out.println("Skip: " + request.getSkip());
+        System.out.println("Count: " + request.getCount());
+        System.out.println("Select: " + request.getSelect());
+        System.out.println("Facets: " + request.getFacets());
+        System.out.println("Semantic Configuration: " + request.getSemanticConfiguration());
+        
+        // Create search options with semantic configuration
+        SearchOptions searchOptions = new SearchOptions()
+            .setTop(request.getTop())
+            .setSkip(request.getSkip())
+            .setIncludeTotalCount(request.getCount());
+        
+        // Set select fields if specified
+        if (request.getSelect() != null && !request.getSelect().trim().isEmpty()) {
+            searchOptions.setSelect(request.getSelect().split(","));
+        }
+        
+        // Set facets if specified - Fix the rating facet issue
+        if (request.getFacets() != null && !request.getFacets().isEmpty()) {
+            // Filter out invalid facets (like rating with decimal values)
+            List<String> validFacets = new ArrayList<>();
+            for (String facet : request.getFacets()) {
+                if (facet.contains("rating")) {
+                    // For rating field, use count instead of value for facets
+                    validFacets.add("rating,count:10");
+                } else {
+                    validFacets.add(facet);
+                }
+            }
+            searchOptions.setFacets(validFacets.toArray(new String[0]));
+            System.out.println("Valid Facets: " + validFacets);
+        }
+        
+        // Apply apparel-specific filters
+        String filterString = request.buildFilterString();
+        if (filterString != null && !filterString.trim().isEmpty()) {
+            searchOptions.setFilter(filterString);
+            System.out.println("Filter: " + filterString);
+        }
+        
+        // Configure semantic search options
+        SemanticSearchOptions semanticOptions = new SemanticSearchOptions()
+            .setSemanticConfigurationName(request.getSemanticConfiguration());
+        
+        searchOptions.setSemanticSearchOptions(semanticOptions);
+        
+        // Log the complete search options
+        System.out.println("Search Options - Top: " + searchOptions.getTop());
+        System.out.println("Search Options - Skip: " + searchOptions.getSkip());
+        System.out.println("Search Options - IncludeTotalCount: " + request.getCount());
+        System.out.println("Search Options - Select: " + (searchOptions.getSelect() != null ? searchOptions.getSelect().toString() : "null"));
+        System.out.println("Search Options - Facets: " + (searchOptions.getFacets() != null ? searchOptions.getFacets().toString() : "null"));
+        System.out.println("Search Options - Filter: " + searchOptions.getFilter());
+        System.out.println("Search Options - Semantic Config: " + searchOptions.getSemanticSearchOptions().getSemanticConfigurationName());
+        
+        // Perform the search
+        System.out.println("Executing Azure Search request...");
+        SearchPagedIterable searchResults = 
+            apparelSearchClient.search(request.getSearch(), searchOptions, null);
+        
+        // Process results in a single pass, logging a bounded sample as they arrive
+        System.out.println("=== AZURE SEARCH RESPONSE ===");
+        ApparelSemanticSearchResponse response = processApparelSemanticSearchResults(
+            request.getSearch(), 
+            searchResults, 
+            startTime
+        );
+        
+        System.out.println("=== FINAL RESPONSE ===");
+        System.out.println("Query: " + response.getQuery());
+        System.out.println("Total Results: " + response.getTotalResults());
+        System.out.println("Search Time: " + response.getSearchTime() + "ms");
+        System.out.println("Results Count: " + (response.getResults() != null ? response.getResults().size() : 0));
+        
+        semanticResponseCache.put(cacheKey, response);
+        return response;
+    }
+    
+    /**
+     * Convert the facets reported by the index to facet values, or null if none were requested
+     */
+    private Map<String, List<ApparelSemanticSearchResponse.FacetValue>> convertFacets(Map<String, List<FacetResult>> facetResults) {
+        if (facetResults == null || facetResults.isEmpty()) {
+            return null;
+        }
+        Map<String, List<ApparelSemanticSearchResponse.FacetValue>> facets = new LinkedHashMap<>();
+        for (Map.Entry<String, List<FacetResult>> entry : facetResults.entrySet()) {
+            List<ApparelSemanticSearchResponse.FacetValue> values = new ArrayList<>();
+            for (FacetResult facetResult : entry.getValue()) {
+                Object value = facetResult.getAdditionalProperties() != null ? facetResult.getAdditionalProperties().get("value") : null;
+                if (value == null) {
+                    // Facets on explicit value ranges report from/to instead of a value
+                    value = facetResult.getAdditionalProperties() != null ? facetResult.getAdditionalProperties().get("from") : null;
+                }
+                ApparelSemanticSearchResponse.FacetValue facetValue = new ApparelSemanticSearchResponse.FacetValue();
+                facetValue.setValue(value != null ? value.toString() : null);
+                facetValue.setCount(facetResult.getCount());
+                values.add(facetValue);
+            }
+            facets.put(entry.getKey(), values);
+        }
+        return facets;
+    }
+    
     /**
      * Process apparel semantic search results and create response
+     * The results are walked exactly once, page by page, so every page is fetched and decoded a single time;
+     * the total and the facets are read from the first page rather than asked of the paged results,
+     * which may fetch the first page again
      */
-    private ApparelSemanticSearchResponse processApparelSemanticSearchResults(String query, Iterable<SearchResult> searchResults, long searchTime) {
+    private ApparelSemanticSearchResponse processApparelSemanticSearchResults(String query, SearchPagedIterable searchResults, long startTime) {
         ApparelSemanticSearchResponse response = new ApparelSemanticSearchResponse();
         response.setQuery(query);
-        response.setSearchTime(searchTime);
         
         List<ApparelSemanticSearchResponse.ApparelSearchResult> results = new ArrayList<>();
-        Long totalCount = 0L;
-        
-        for (SearchResult searchResult : searchResults) {
-            // Get total count from the first result
-            if (totalCount == 0L) {
-                // For now, we'll count the results as we process them
-                // In a real implementation, you might get this from the search response
-                totalCount = 1L; // This will be updated to actual count
+        int resultCount = 0;
+        SearchPagedResponse firstPage = null;
+        
+        for (SearchPagedResponse page : searchResults.iterableByPage()) {
+            if (firstPage == null) {
+                firstPage = page;
+            }
+            for (SearchResult searchResult : page.getValue()) {
+                resultCount++;
+                
+                // Convert search result to apparel search result
+                ApparelSemanticSearchResponse.ApparelSearchResult result = convertToApparelSearchResult(searchResult);
+                results.add(result);
+                
+                if (resultCount <= LOGGED_RESULT_SAMPLE) {
+                    System.out.println("Result " + resultCount + ":");
+                    System.out.println("  Score: " + result.getScore());
+                    System.out.println("  Product: " + result.getProductId() + " - " + result.getTitle());
+                }
             }
-            
-            // Convert search result to apparel search result
-            ApparelSemanticSearchResponse.ApparelSearchResult result = convertToApparelSearchResult(searchResult);
-            results.add(result);
         }
         
+        if (resultCount > LOGGED_RESULT_SAMPLE) {
+            System.out.println("  ... (showing first " + LOGGED_RESULT_SAMPLE + " results)");
+        }
+        System.out.println("Total results processed: " + resultCount);
+        
+        // The index reports the total and the facets with the first page; the total is only there when count was requested
+        Long totalCount = firstPage != null ? firstPage.getCount() : null;
         response.setResults(results);
-        response.setTotalResults(totalCount);
+        response.setTotalResults(totalCount != null ? totalCount : (long) resultCount);
+        response.setFacets(convertFacets(firstPage != null ? firstPage.getFacets() : null));
+        response.setSearchTime(System.currentTimeMillis() - startTime);
         
         return response;
     }
     
     /**
      * Convert Azure Search result to apparel search result
+     * The document is decoded once and every field is read from that single view
      */
     private ApparelSemanticSearchResponse.ApparelSearchResult convertToApparelSearchResult(SearchResult searchResult) {
         ApparelSemanticSearchResponse.ApparelSearchResult result = new ApparelSemanticSearchResponse.ApparelSearchResult();
+        Map<String, Object> document = decodeDocument(searchResult);
         
         // Map apparel-specific fields
-        result.setProductId(getStringValue(searchResult, "product_id"));
-        result.setTitle(getStringValue(searchResult, "title"));
-        result.setBrand(getStringValue(searchResult, "brand"));
-        result.setColor(getStringValue(searchResult, "color"));
-        result.setSize(getStringValue(searchResult, "size"));
-        result.setMaterial(getStringValue(searchResult, "material"));
-        result.setPrice(getDoubleValue(searchResult, "price"));
-        result.setRating(getDoubleValue(searchResult, "rating"));
-        result.setDescription(getStringValue(searchResult, "description"));
-        result.setReviewText(getStringValue(searchResult, "review_text"));
-        result.setReviewSentimentLabel(getStringValue(searchResult, "reviewSentimentLabel"));
-        result.setReviewPositiveScore(getDoubleValue(searchResult, "reviewPositiveScore"));
+        result.setProductId(getStringValue(document, "product_id"));
+        result.setTitle(getStringValue(document, "title"));
+        result.setBrand(getStringValue(document, "brand"));
+        result.setColor(getStringValue(document, "color"));
+        result.setSize(getStringValue(document, "size"));
+        result.setMaterial(getStringValue(document, "material"));
+        result.setPrice(getDoubleValue(document, "price"));
+        result.setRating(getDoubleValue(document, "rating"));
+        result.setDescription(getStringValue(document, "description"));
+        result.setReviewText(getStringValue(document, "review_text"));
+        result.setReviewSentimentLabel(getStringValue(document, "reviewSentimentLabel"));
+        result.setReviewPositiveScore(getDoubleValue(document, "reviewPositiveScore"));
         result.setScore(searchResult.getScore());
         
         // Map list fields
-        result.setKeyPhrases(getStringListValue(searchResult, "keyPhrases"));
-        result.setEntities(getStringListValue(searchResult, "entities"));
+        result.setKeyPhrases(getStringListValue(document, "keyPhrases"));
+        result.setEntities(getStringListValue(document, "entities"));
         
         // Map highlights
         result.setHighlights(searchResult.getHighlights());
@@ -459,6 +910,20 @@ public class ProductService {
         return result;
     }
     
+    /**
+     * Create a shallow copy of a cached response so callers cannot alter the cached instance
+     */
+    private ApparelSemanticSearchResponse copyApparelResponse(ApparelSemanticSearchResponse source, long searchTime) {
+        ApparelSemanticSearchResponse copy = new ApparelSemanticSearchResponse(
+            source.getQuery(),
+            source.getTotalResults(),
+            source.getResults() != null ? new ArrayList<>(source.getResults()) : new ArrayList<>()
+        );
+        copy.setFacets(source.getFacets());
+        copy.setSearchTime(searchTime);
+        return copy;
+    }
+    
     /**
      * Create error response for apparel semantic search
      */
@@ -483,6 +948,9 @@ public class ProductService {
      * @return List of ApparelProduct objects
      */
     public List<ApparelProduct> searchApparelByBrand(String brand, int top) {
+        if (filtersServedLocally(apparelSearchClient)) {
+            return toApparelProducts(localSearchEngine.findEqual(ColumnarCatalog.Attribute.BRAND, brand, top));
+        }
         String filter = "brand eq '" + brand + "'";
         return searchApparelProducts("*", filter, top);
     }
@@ -495,6 +963,9 @@ public class ProductService {
      * @return List of ApparelProduct objects
      */
     public List<ApparelProduct> searchApparelByColor(String color, int top) {
+        if (filtersServedLocally(apparelSearchClient)) {
+            return toApparelProducts(localSearchEngine.findEqual(ColumnarCatalog.Attribute.COLOR, color, top));
+        }
         String filter = "color eq '" + color + "'";
         return searchApparelProducts("*", filter, top);
     }
@@ -507,6 +978,9 @@ public class ProductService {
      * @return List of ApparelProduct objects
      */
     public List<ApparelProduct> searchApparelByMaterial(String material, int top) {
+        if (filtersServedLocally(apparelSearchClient)) {
+            return toApparelProducts(localSearchEngine.findEqual(ColumnarCatalog.Attribute.MATERIAL, material, top));
+        }
         String filter = "material eq '" + material + "'";
         return searchApparelProducts("*", filter, top);
     }
@@ -521,22 +995,28 @@ public class ProductService {
      */
     public List<ApparelProduct> searchApparelProducts(String searchText, String filters, int top) {
         if (apparelSearchClient == null) {
-            System.err.println("Apparel Azure Search client is not configured");
-            return new ArrayList<>();
+            if (!localSearchEngine.isAvailable()) {
+                System.err.println("Apparel Azure Search client is not configured");
+                return new ArrayList<>();
+            }
+            return searchApparelLocally(searchText, filters, top);
         }
         
         try {
-            SearchOptions searchOptions = new SearchOptions()
-                .setTop(top);
-            
-            if (filters != null && !filters.trim().isEmpty()) {
-                searchOptions.setFilter(filters);
-            }
-            
-            Iterable<SearchResult> searchResults = 
-                apparelSearchClient.search(searchText, searchOptions, null);
-            
-            return documentMappingService.mapSearchResultsToApparelProducts(searchResults);
+            List<ApparelProduct> products = apparelSearchFlights.execute(searchCacheKey(searchText, filters, top), () -> {
+                SearchOptions searchOptions = new SearchOptions()
+                    .setTop(top);
+                
+                if (filters != null && !filters.trim().isEmpty()) {
+                    searchOptions.setFilter(filters);
+                }
+                
+                Iterable<SearchResult> searchResults = 
+                    apparelSearchClient.search(searchText, searchOptions, null);
+                
+                return documentMappingService.mapSearchResultsToApparelProducts(searchResults);
+            });
+            return new ArrayList<>(products);
             
         } catch (Exception e) {
             System.err.println("Error searching for apparel products: " + e.getMessage());
@@ -545,4 +1025,27 @@ public class ProductService {
         }
     }
     
+    /**
+     * Serve an apparel search from the local search engine, mapping catalog products to apparel products
+     */
+    private List<ApparelProduct> searchApparelLocally(String searchText, String filters, int top) {
+        return toApparelProducts(searchLocally(searchText, filters, top));
+    }
+    
+    /**
+     * Map local catalog products to apparel products
+     */
+    private List<ApparelProduct> toApparelProducts(List<Product> products) {
+        List<ApparelProduct> apparelProducts = new ArrayList<>(products.size());
+        for (Product product : products) {
+            ApparelProduct apparelProduct = product instanceof ApparelProduct
+                ? (ApparelProduct) product
+                : documentMappingService.mapProductToApparelProduct(product);
+            if (apparelProduct != null) {
+                apparelProducts.add(apparelProduct);
+            }
+        }
+        return apparelProducts;
+    }
+    
 }
@@ -0,0 +1,540 @@
+package com.example.productservice.service;
+
+import com.azure.search.documents.SearchClient;
+import com.azure.search.documents.models.IndexAction;
+import com.azure.search.documents.models.IndexActionType;
+import com.example.productservice.model.IndexingReport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk index writer for the product index.
+ *
+ * Uploads and deletes are grouped into batches bounded by document count and
+ * estimated payload size, and the batches are sent concurrently. Batch size
+ * and concurrency adapt to throttling, per-document failures and latency
+ * through an AIMD controller shared by all sessions, bounded by the
+ * configured batch size and parallelism. Partial failures are retried for the
+ * failed keys only, after the service's retry-after hint or with exponential
+ * backoff. With the simulator enabled, batches go to an in-process stand-in
+ * that throttles like the service, instead of Azure AI Search.
+ */
+@Service
+public class SearchIndexWriter {
+
+    /** Number of failed keys kept in a report */
+    private static final int MAX_REPORTED_FAILED_KEYS = 100;
+
+    /** Upper bound for a single retry delay */
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 30_000;
+
+    @Autowired(required = false)
+    private SearchClient searchClient;
+
+    @Value("${azure.search.key-field:product_id}")
+    private String keyField;
+
+    @Value("${product.indexing.batch-size:500}")
+    private int maxBatchDocuments;
+
+    @Value("${product.indexing.max-batch-bytes:8388608}")
+    private long maxBatchBytes;
+
+    @Value("${product.indexing.parallelism:4}")
+    private int parallelism;
+
+    @Value("${product.indexing.max-retries:5}")
+    private int maxRetries;
+
+    @Value("${product.indexing.retry-backoff-ms:500}")
+    private long retryBackoffMillis;
+
+    @Value("${product.indexing.adaptive.enabled:true}")
+    private boolean adaptiveEnabled;
+
+    @Value("${product.indexing.adaptive.initial-batch-size:100}")
+    private int initialBatchDocuments;
+
+    @Value("${product.indexing.adaptive.min-batch-size:10}")
+    private int minBatchDocuments;
+
+    @Value("${product.indexing.adaptive.batch-size-step:50}")
+    private int batchDocumentsStep;
+
+    @Value("${product.indexing.adaptive.initial-concurrency:2}")
+    private int initialConcurrency;
+
+    @Value("${product.indexing.adaptive.decrease-factor:0.7}")
+    private double decreaseFactor;
+
+    @Value("${product.indexing.adaptive.target-latency-ms:5000}")
+    private long targetLatencyMillis;
+
+    @Value("${product.indexing.adaptive.failure-rate-threshold:0.05}")
+    private double failureRateThreshold;
+
+    @Value("${product.indexing.simulator.enabled:false}")
+    private boolean simulatorEnabled;
+
+    @Value("${product.indexing.simulator.capacity-docs-per-second:5000}")
+    private double simulatorCapacity;
+
+    @Value("${product.indexing.simulator.max-concurrent-batches:3}")
+    private int simulatorMaxConcurrentBatches;
+
+    @Value("${product.indexing.simulator.base-latency-ms:50}")
+    private double simulatorBaseLatencyMillis;
+
+    @Value("${product.indexing.simulator.latency-ms-per-document:0.5}")
+    private double simulatorLatencyMillisPerDocument;
+
+    @Value("${product.indexing.simulator.document-failure-rate:0.01}")
+    private double simulatorDocumentFailureRate;
+
+    private ExecutorService executor;
+
+    private IndexBatchSink sink;
+
+    private AdaptiveBatchController controller;
+
+    @PostConstruct
+    void start() {
+        if (simulatorEnabled) {
+            System.out.println("Index writes go to the throttling simulator (" + simulatorCapacity + " docs/sec, " +
+                             simulatorMaxConcurrentBatches + " concurrent batches)");
+            sink = new SimulatedIndexBatchSink(keyField, simulatorCapacity, simulatorMaxConcurrentBatches,
+                                               simulatorBaseLatencyMillis, simulatorLatencyMillisPerDocument,
+                                               simulatorDocumentFailureRate);
+        } else if (searchClient != null) {
+            sink = new AzureIndexBatchSink(searchClient);
+        }
+        controller = new AdaptiveBatchController(adaptiveEnabled, minBatchDocuments, maxBatchDocuments,
+                                                 initialBatchDocuments, batchDocumentsStep, parallelism,
+                                                 initialConcurrency, decreaseFactor, targetLatencyMillis,
+                                                 failureRateThreshold);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "index-writer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdown();
+    }
+
+    /**
+     * Returns true when an index client or the simulator is available
+     */
+    public boolean isConfigured() {
+        return sink != null;
+    }
+
+    /**
+     * Index a collection of documents and wait for completion
+     *
+     * @param documents The search documents to upload
+     * @return Report of the run
+     */
+    public IndexingReport indexDocuments(Iterable<Map<String, Object>> documents) {
+        IndexingSession session = openSession();
+        for (Map<String, Object> document : documents) {
+            session.upload(document);
+        }
+        return session.finish();
+    }
+
+    /**
+     * Open a session that accepts documents one at a time
+     * A session must be fed from a single thread
+     *
+     * @return A new indexing session
+     */
+    public IndexingSession openSession() {
+        return openSession(null);
+    }
+
+    /**
+     * Open a session that reports acknowledged documents to a listener
+     *
+     * @param listener Notified from writer threads as batches are acknowledged; may be null
+     * @return A new indexing session
+     */
+    public IndexingSession openSession(IndexingListener listener) {
+        if (sink == null) {
+            throw new IllegalStateException("Azure Search client is not configured");
+        }
+        return new IndexingSession(listener);
+    }
+
+    /**
+     * Receives the keys the index acknowledged, once per sent batch
+     */
+    public interface IndexingListener {
+        void onAcknowledged(List<String> uploadedKeys, List<String> deletedKeys);
+
+        /**
+         * Called for a document that failed after all retries
+         */
+        default void onFailed(String key) {
+        }
+    }
+
+    /**
+     * A single bulk indexing run
+     */
+    public class IndexingSession {
+
+        private final long startNanos = System.nanoTime();
+
+        // Bounds the number of batches in flight for this session
+        private final Semaphore window = new Semaphore(Math.max(1, parallelism));
+
+        private final IndexingListener listener;
+
+        private List<IndexAction<Map<String, Object>>> batch = new ArrayList<>();
+        private long batchBytes;
+
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong indexed = new AtomicLong();
+        private final AtomicLong deleted = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong throttled = new AtomicLong();
+        private final AtomicLong totalLatencyNanos = new AtomicLong();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+        private final List<String> failedKeys = Collections.synchronizedList(new ArrayList<>());
+
+        private IndexingSession(IndexingListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Add a document to the current batch
+         * Blocks when the in-flight window is full
+         *
+         * @param document The search document to upload
+         */
+        public void upload(Map<String, Object> document) {
+            add(new IndexAction<Map<String, Object>>().setActionType(IndexActionType.UPLOAD).setDocument(document));
+        }
+
+        /**
+         * Add a delete of a document key to the current batch
+         * Blocks when the in-flight window is full
+         *
+         * @param key The document key to remove from the index
+         */
+        public void delete(String key) {
+            Map<String, Object> document = new HashMap<>();
+            document.put(keyField, key);
+            add(new IndexAction<Map<String, Object>>().setActionType(IndexActionType.DELETE).setDocument(document));
+        }
+
+        private void add(IndexAction<Map<String, Object>> action) {
+            long size = estimateSize(action.getDocument());
+            if (!batch.isEmpty() && (batch.size() >= controller.getBatchSize() || batchBytes + size > maxBatchBytes)) {
+                flush();
+            }
+
+            batch.add(action);
+            batchBytes += size;
+            submitted.incrementAndGet();
+        }
+
+        /**
+         * Send the remaining documents and wait for every batch to complete
+         *
+         * @return Report of the run
+         */
+        public IndexingReport finish() {
+            flush();
+            int permits = Math.max(1, parallelism);
+            try {
+                window.acquire(permits);
+                window.release(permits);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for indexing to finish", e);
+            }
+            return buildReport();
+        }
+
+        /**
+         * Documents acknowledged by the index so far
+         */
+        public long getDocumentsIndexed() {
+            return indexed.get();
+        }
+
+        /**
+         * Deletes acknowledged by the index so far
+         */
+        public long getDocumentsDeleted() {
+            return deleted.get();
+        }
+
+        /**
+         * Documents that failed after all retries so far
+         */
+        public long getDocumentsFailed() {
+            return failed.get();
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            List<IndexAction<Map<String, Object>>> toSend = batch;
+            batch = new ArrayList<>();
+            batchBytes = 0;
+
+            try {
+                window.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for an indexing slot", e);
+            }
+            try {
+                // Blocks the producer while the controller holds back concurrency or a retry-after pause is in effect
+                controller.acquire();
+            } catch (InterruptedException e) {
+                window.release();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for an indexing slot", e);
+            }
+
+            try {
+                executor.execute(() -> {
+                    try {
+                        sendWithRetry(toSend);
+                    } finally {
+                        controller.release();
+                        window.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                controller.release();
+                window.release();
+                recordFailures(toSend);
+            }
+        }
+
+        private void sendWithRetry(List<IndexAction<Map<String, Object>>> actions) {
+            List<IndexAction<Map<String, Object>>> pending = actions;
+
+            for (int attempt = 0; ; attempt++) {
+                List<IndexAction<Map<String, Object>>> retriable = new ArrayList<>();
+                long retryAfterMillis = -1;
+                long start = System.nanoTime();
+                batches.incrementAndGet();
+
+                try {
+                    IndexBatchSink.BatchResult response = sink.send(pending);
+                    long latency = recordLatency(start);
+                    retryAfterMillis = response.getRetryAfterMillis();
+
+                    Map<String, IndexAction<Map<String, Object>>> actionsByKey = indexByKey(pending);
+                    List<String> uploadedKeys = new ArrayList<>();
+                    List<String> deletedKeys = new ArrayList<>();
+                    for (IndexBatchSink.DocumentResult result : response.getResults()) {
+                        IndexAction<Map<String, Object>> action = actionsByKey.get(result.getKey());
+                        if (result.isSucceeded()) {
+                            if (action != null && action.getActionType() == IndexActionType.DELETE) {
+                                deleted.incrementAndGet();
+                                deletedKeys.add(result.getKey());
+                            } else {
+                                indexed.incrementAndGet();
+                                uploadedKeys.add(result.getKey());
+                            }
+                        } else if (isRetriable(result.getStatusCode()) && action != null) {
+                            retriable.add(action);
+                        } else {
+                            System.err.println("Document " + result.getKey() + " was rejected (" +
+                                             result.getStatusCode() + "): " + result.getErrorMessage());
+                            recordFailure(result.getKey());
+                        }
+                    }
+                    controller.onAccepted(start, latency, pending.size(), retriable.size(), retryAfterMillis);
+                    if (listener != null && (!uploadedKeys.isEmpty() || !deletedKeys.isEmpty())) {
+                        listener.onAcknowledged(uploadedKeys, deletedKeys);
+                    }
+                } catch (IndexBatchSink.BatchRejectedException e) {
+                    recordLatency(start);
+                    int status = e.getStatusCode();
+                    retryAfterMillis = e.getRetryAfterMillis();
+
+                    if (status == 413 && pending.size() > 1) {
+                        // Payload too large, split the batch and send each half
+                        int middle = pending.size() / 2;
+                        sendWithRetry(new ArrayList<>(pending.subList(0, middle)));
+                        sendWithRetry(new ArrayList<>(pending.subList(middle, pending.size())));
+                        return;
+                    }
+
+                    if (!isRetriable(status)) {
+                        System.err.println("Indexing batch failed (" + status + "): " + e.getMessage());
+                        recordFailures(pending);
+                        return;
+                    }
+                    if (status == 429 || status == 503) {
+                        throttled.incrementAndGet();
+                        controller.onThrottled(start, status, retryAfterMillis);
+                    }
+                    retriable = pending;
+                } catch (RuntimeException e) {
+                    // Transport errors are retried as a whole batch
+                    recordLatency(start);
+                    System.err.println("Indexing batch error: " + e.getMessage());
+                    retriable = pending;
+                }
+
+                if (retriable.isEmpty()) {
+                    return;
+                }
+
+                if (attempt >= maxRetries) {
+                    recordFailures(retriable);
+                    return;
+                }
+
+                retries.incrementAndGet();
+                try {
+                    if (retryAfterMillis > 0) {
+                        // The controller holds every sender until the service's retry-after time
+                        controller.awaitResume();
+                    } else {
+                        Thread.sleep(backoffMillis(attempt));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    recordFailures(retriable);
+                    return;
+                }
+                pending = retriable;
+            }
+        }
+
+        private long recordLatency(long startNanos) {
+            long latency = System.nanoTime() - startNanos;
+            totalLatencyNanos.addAndGet(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+            return latency;
+        }
+
+        private void recordFailures(Collection<IndexAction<Map<String, Object>>> actions) {
+            for (IndexAction<Map<String, Object>> action : actions) {
+                recordFailure(keyOf(action));
+            }
+        }
+
+        private void recordFailure(String key) {
+            failed.incrementAndGet();
+            if (failedKeys.size() < MAX_REPORTED_FAILED_KEYS) {
+                failedKeys.add(key);
+            }
+            if (listener != null) {
+                listener.onFailed(key);
+            }
+        }
+
+        private IndexingReport buildReport() {
+            long elapsedNanos = System.nanoTime() - startNanos;
+            long batchCount = batches.get();
+
+            IndexingReport report = new IndexingReport();
+            report.setDocumentsSubmitted(submitted.get());
+            report.setDocumentsIndexed(indexed.get());
+            report.setDocumentsDeleted(deleted.get());
+            report.setDocumentsFailed(failed.get());
+            report.setBatches(batchCount);
+            report.setRetries(retries.get());
+            report.setThrottledBatches(throttled.get());
+            report.setBatchSize(controller.getBatchSize());
+            report.setConcurrency(controller.getConcurrency());
+            report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+            report.setDocumentsPerSecond(elapsedNanos > 0 ? indexed.get() * 1_000_000_000.0 / elapsedNanos : 0.0);
+            report.setAverageBatchLatencyMillis(batchCount > 0 ? totalLatencyNanos.get() / 1_000_000.0 / batchCount : 0.0);
+            report.setMaxBatchLatencyMillis(TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get()));
+            synchronized (failedKeys) {
+                report.setFailedKeys(new ArrayList<>(failedKeys));
+            }
+            return report;
+        }
+    }
+
+    private Map<String, IndexAction<Map<String, Object>>> indexByKey(List<IndexAction<Map<String, Object>>> actions) {
+        Map<String, IndexAction<Map<String, Object>>> actionsByKey = new HashMap<>();
+        for (IndexAction<Map<String, Object>> action : actions) {
+            actionsByKey.put(keyOf(action), action);
+        }
+        return actionsByKey;
+    }
+
+    private String keyOf(IndexAction<Map<String, Object>> action) {
+        return String.valueOf(action.getDocument().get(keyField));
+    }
+
+    private long backoffMillis(int attempt) {
+        long backoff = Math.min(MAX_RETRY_BACKOFF_MILLIS, retryBackoffMillis << Math.min(attempt, 16));
+        // Jitter spreads retries from concurrent batches
+        return backoff + ThreadLocalRandom.current().nextLong(Math.max(1, backoff / 2));
+    }
+
+    /**
+     * Status codes that Azure AI Search documents as transient for indexing
+     */
+    private static boolean isRetriable(int statusCode) {
+        return statusCode == 409 || statusCode == 422 || statusCode == 429 || statusCode == 503 || statusCode == 0;
+    }
+
+    /**
+     * Rough estimate of the serialized JSON size of a document, used for batch sizing
+     */
+    static long estimateSize(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length() + 2;
+        }
+        if (value instanceof Map) {
+            long size = 2;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += String.valueOf(entry.getKey()).length() + 4 + estimateSize(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection) {
+            long size = 2;
+            for (Object element : (Collection<?>) value) {
+                size += estimateSize(element) + 1;
+            }
+            return size;
+        }
+        return 24;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.productservice.service;
+
+import com.azure.search.documents.models.IndexAction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Offline stand-in for the search service that throttles like it does.
+ *
+ * Capacity is a token bucket of documents per second: a batch that exceeds
+ * the remaining tokens is rejected with 503 and a Retry-After of the time
+ * needed to refill, and requests beyond the concurrent batch limit are
+ * rejected with 429. Accepted batches take a latency that grows with batch
+ * size and concurrency, and a fraction of their documents fail with 503.
+ * Used to exercise the adaptive index writer without an Azure service.
+ */
+class SimulatedIndexBatchSink implements IndexBatchSink {
+
+    /** Retry-After sent with a concurrency rejection */
+    private static final long CONCURRENCY_RETRY_AFTER_MILLIS = 1000;
+
+    private final String keyField;
+    private final double capacityDocumentsPerSecond;
+    private final int maxConcurrentBatches;
+    private final double baseLatencyMillis;
+    private final double latencyMillisPerDocument;
+    private final double documentFailureRate;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // Token bucket, holding at most one second of capacity
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    SimulatedIndexBatchSink(String keyField, double capacityDocumentsPerSecond, int maxConcurrentBatches,
+                            double baseLatencyMillis, double latencyMillisPerDocument, double documentFailureRate) {
+        this.keyField = keyField;
+        this.capacityDocumentsPerSecond = Math.max(1, capacityDocumentsPerSecond);
+        this.maxConcurrentBatches = Math.max(1, maxConcurrentBatches);
+        this.baseLatencyMillis = baseLatencyMillis;
+        this.latencyMillisPerDocument = latencyMillisPerDocument;
+        this.documentFailureRate = documentFailureRate;
+        this.tokens = this.capacityDocumentsPerSecond;
+    }
+
+    @Override
+    public BatchResult send(List<IndexAction<Map<String, Object>>> actions) {
+        int concurrent = inFlight.incrementAndGet();
+        try {
+            if (concurrent > maxConcurrentBatches) {
+                throw new BatchRejectedException(429, CONCURRENCY_RETRY_AFTER_MILLIS,
+                                                 "Simulated: too many concurrent indexing requests", null);
+            }
+
+            long refillMillis = reserve(actions.size());
+            if (refillMillis > 0) {
+                throw new BatchRejectedException(503, refillMillis, "Simulated: indexing capacity exceeded", null);
+            }
+
+            // Overlapping requests slow each other down
+            double latency = (baseLatencyMillis + latencyMillisPerDocument * actions.size()) * (1 + 0.25 * (concurrent - 1));
+            try {
+                Thread.sleep((long) latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BatchRejectedException(0, -1, "Simulated: interrupted", e);
+            }
+
+            List<DocumentResult> results = new ArrayList<>(actions.size());
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (IndexAction<Map<String, Object>> action : actions) {
+                String key = String.valueOf(action.getDocument().get(keyField));
+                if (random.nextDouble() < documentFailureRate) {
+                    results.add(new DocumentResult(key, false, 503, "Simulated: document throttled"));
+                } else {
+                    results.add(new DocumentResult(key, true, 200, null));
+                }
+            }
+            return new BatchResult(results, -1);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Take tokens for a batch
+     *
+     * @return 0 if the batch may proceed, otherwise the milliseconds until enough tokens are available
+     */
+    private synchronized long reserve(int documents) {
+        long now = System.nanoTime();
+        tokens = Math.min(capacityDocumentsPerSecond,
+                          tokens + (now - lastRefillNanos) / 1_000_000_000.0 * capacityDocumentsPerSecond);
+        lastRefillNanos = now;
+
+        // A batch larger than the bucket is admitted once the bucket is full
+        double needed = Math.min(documents, capacityDocumentsPerSecond);
+        if (tokens >= needed) {
+            tokens -= documents;
+            return 0;
+        }
+        return (long) Math.ceil((needed - tokens) / capacityDocumentsPerSecond * 1000);
+    }
+}
@@ -0,0 +1,362 @@
+package com.example.productservice.service;
+
+import com.example.productservice.model.ApparelProduct;
+import com.example.productservice.model.Product;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of a product, which the local catalog keeps instead of the Product object.
+ *
+ * A product is written as one byte array: strings as length-prefixed UTF-8,
+ * integers as varints, dates as epoch seconds, and custom attributes as
+ * tagged values. That is a fraction of the heap of a Product with its
+ * strings, lists and custom attribute map, and products are only decoded for
+ * the hits a search returns. Custom attribute values that are not strings,
+ * numbers, booleans, lists or maps are stored as their string form.
+ */
+final class StoredFields {
+
+    private static final String DEFAULT_CONTEXT = new Product().getContext();
+
+    private static final int APPAREL = 1;
+    private static final int IN_STOCK = 1 << 1;
+    private static final int CUSTOM_CONTEXT = 1 << 2;
+    private static final int CUSTOM_TYPE = 1 << 3;
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int DOUBLE = 2;
+    private static final int INTEGER = 3;
+    private static final int LONG = 4;
+    private static final int BOOLEAN = 5;
+    private static final int DECIMAL = 6;
+    private static final int LIST = 7;
+    private static final int MAP = 8;
+
+    private StoredFields() {
+    }
+
+    /**
+     * Encode a product
+     */
+    static byte[] encode(Product product) {
+        Writer out = new Writer();
+        boolean apparel = product instanceof ApparelProduct;
+        String defaultType = apparel ? "ApparelProduct" : "Product";
+        boolean customContext = !DEFAULT_CONTEXT.equals(product.getContext());
+        boolean customType = !defaultType.equals(product.getType());
+        out.writeByte((apparel ? APPAREL : 0) | (product.isInStock() ? IN_STOCK : 0) |
+                      (customContext ? CUSTOM_CONTEXT : 0) | (customType ? CUSTOM_TYPE : 0));
+        if (customContext) {
+            out.writeString(product.getContext());
+        }
+        if (customType) {
+            out.writeString(product.getType());
+        }
+
+        out.writeString(product.getId());
+        out.writeString(product.getName());
+        out.writeString(product.getDescription());
+        out.writeString(product.getBrand());
+        out.writeString(product.getCategory());
+        out.writeString(product.getPrice() != null ? product.getPrice().toString() : null);
+        out.writeString(product.getCurrency());
+        out.writeString(product.getSku());
+        out.writeString(product.getImage());
+        out.writeStrings(product.getTags());
+        out.writeDate(product.getCreatedAt());
+        out.writeDate(product.getUpdatedAt());
+        out.writeVarLong(product.getStockQuantity());
+        out.writeString(product.getManufacturer());
+        out.writeString(product.getModel());
+        out.writeStrings(product.getSpecifications());
+        out.writeValue(product.getCustomAttributes());
+
+        if (apparel) {
+            ApparelProduct apparelProduct = (ApparelProduct) product;
+            out.writeString(apparelProduct.getTitle());
+            out.writeString(apparelProduct.getColor());
+            out.writeString(apparelProduct.getSize());
+            out.writeString(apparelProduct.getMaterial());
+            out.writeValue(apparelProduct.getRating());
+            out.writeString(apparelProduct.getReviewText());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a product; every call returns a new instance
+     */
+    @SuppressWarnings("unchecked")
+    static Product decode(byte[] stored) {
+        Reader in = new Reader(stored);
+        int flags = in.readByte();
+        boolean apparel = (flags & APPAREL) != 0;
+        Product product = apparel ? new ApparelProduct() : new Product();
+        if ((flags & CUSTOM_CONTEXT) != 0) {
+            product.setContext(in.readString());
+        }
+        if ((flags & CUSTOM_TYPE) != 0) {
+            product.setType(in.readString());
+        }
+
+        product.setId(in.readString());
+        String name = in.readString();
+        product.setDescription(in.readString());
+        product.setBrand(in.readString());
+        product.setCategory(in.readString());
+        String price = in.readString();
+        product.setPrice(price != null ? new BigDecimal(price) : null);
+        product.setCurrency(in.readString());
+        product.setSku(in.readString());
+        product.setImage(in.readString());
+        product.setTags(in.readStrings());
+        product.setCreatedAt(in.readDate());
+        product.setUpdatedAt(in.readDate());
+        product.setInStock((flags & IN_STOCK) != 0);
+        product.setStockQuantity((int) in.readVarLong());
+        product.setManufacturer(in.readString());
+        product.setModel(in.readString());
+        product.setSpecifications(in.readStrings());
+        product.setCustomAttributes((Map<String, Object>) in.readValue());
+
+        if (apparel) {
+            ApparelProduct apparelProduct = (ApparelProduct) product;
+            // The title also sets the name, so the name is restored afterwards
+            apparelProduct.setTitle(in.readString());
+            apparelProduct.setColor(in.readString());
+            apparelProduct.setSize(in.readString());
+            apparelProduct.setMaterial(in.readString());
+            apparelProduct.setRating((Double) in.readValue());
+            apparelProduct.setReviewText(in.readString());
+        }
+        product.setName(name);
+        return product;
+    }
+
+    private static final class Writer {
+        private byte[] buffer = new byte[256];
+        private int size;
+
+        private void writeByte(int b) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = (byte) b;
+        }
+
+        private void writeBytes(byte[] bytes) {
+            if (size + bytes.length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes.length));
+            }
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        /**
+         * Zigzag varint, so small negative numbers stay short
+         */
+        private void writeVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7fL) != 0) {
+                writeByte((int) ((zigzag & 0x7f) | 0x80));
+                zigzag >>>= 7;
+            }
+            writeByte((int) zigzag);
+        }
+
+        private void writeFixedLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (value >>> shift));
+            }
+        }
+
+        /**
+         * Length plus one, so 0 stands for null
+         */
+        private void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            writeBytes(bytes);
+        }
+
+        private void writeStrings(List<String> values) {
+            if (values == null) {
+                writeVarLong(-1);
+                return;
+            }
+            writeVarLong(values.size());
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        private void writeDate(LocalDateTime value) {
+            if (value == null) {
+                writeByte(0);
+                return;
+            }
+            writeByte(1);
+            writeVarLong(value.toEpochSecond(ZoneOffset.UTC));
+            writeVarLong(value.getNano());
+        }
+
+        private void writeValue(Object value) {
+            if (value == null) {
+                writeByte(NULL);
+            } else if (value instanceof String) {
+                writeByte(STRING);
+                writeString((String) value);
+            } else if (value instanceof Double || value instanceof Float) {
+                writeByte(DOUBLE);
+                writeFixedLong(Double.doubleToRawLongBits(((Number) value).doubleValue()));
+            } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                writeByte(INTEGER);
+                writeVarLong(((Number) value).intValue());
+            } else if (value instanceof Long) {
+                writeByte(LONG);
+                writeVarLong((Long) value);
+            } else if (value instanceof Boolean) {
+                writeByte(BOOLEAN);
+                writeByte((Boolean) value ? 1 : 0);
+            } else if (value instanceof BigDecimal) {
+                writeByte(DECIMAL);
+                writeString(value.toString());
+            } else if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                writeByte(LIST);
+                writeVarLong(list.size());
+                for (Object element : list) {
+                    writeValue(element);
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                writeByte(MAP);
+                writeVarLong(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeString(String.valueOf(entry.getKey()));
+                    writeValue(entry.getValue());
+                }
+            } else {
+                writeByte(STRING);
+                writeString(value.toString());
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        private Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private int readByte() {
+            return bytes[position++] & 0xff;
+        }
+
+        private long readVarLong() {
+            long zigzag = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = readByte();
+                zigzag |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        private long readFixedLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        private String readString() {
+            int length = (int) readVarLong() - 1;
+            if (length < 0) {
+                return null;
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private List<String> readStrings() {
+            int count = (int) readVarLong();
+            if (count < 0) {
+                return null;
+            }
+            List<String> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                values.add(readString());
+            }
+            return values;
+        }
+
+        private LocalDateTime readDate() {
+            if (readByte() == 0) {
+                return null;
+            }
+            long seconds = readVarLong();
+            return LocalDateTime.ofEpochSecond(seconds, (int) readVarLong(), ZoneOffset.UTC);
+        }
+
+        private Object readValue() {
+            switch (readByte()) {
+                case STRING:
+                    return readString();
+                case DOUBLE:
+                    return Double.longBitsToDouble(readFixedLong());
+                case INTEGER:
+                    return (int) readVarLong();
+                case LONG:
+                    return readVarLong();
+                case BOOLEAN:
+                    return readByte() != 0;
+                case DECIMAL:
+                    return new BigDecimal(readString());
+                case LIST: {
+                    int count = (int) readVarLong();
+                    List<Object> list = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                }
+                case MAP: {
+                    int count = (int) readVarLong();
+                    Map<String, Object> map = new LinkedHashMap<>(count * 2);
+                    for (int i = 0; i < count; i++) {
+                        String key = readString();
+                        map.put(key, readValue());
+                    }
+                    return map;
+                }
+                default:
+                    return null;
+            }
+        }
+    }
+}
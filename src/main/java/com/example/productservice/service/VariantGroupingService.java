@@ -0,0 +1,330 @@
+package com.example.productservice.service;
+
+import com.example.productservice.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Groups SKU rows into one parent document per product.
+ *
+ * The parent keeps the fields of the first row of its product and carries the
+ * SKUs in a compact "variants" custom attribute. In sorted mode rows are
+ * grouped as they stream past, which requires the rows of a product to be
+ * contiguous. In spill mode rows are hash-partitioned by product ID into
+ * files in the work directory and each partition is grouped separately, so
+ * heap use is bounded by the size of one partition rather than the feed.
+ */
+@Service
+public class VariantGroupingService {
+
+    /** Custom attribute holding the variant list of a parent document */
+    public static final String VARIANTS_ATTRIBUTE = "variants";
+
+    @Value("${product.ingest.variants.mode:sorted}")
+    private String mode;
+
+    @Value("${product.ingest.variants.spill-partitions:64}")
+    private int spillPartitions;
+
+    @Value("${product.ingest.work-dir:${java.io.tmpdir}/product-ingest}")
+    private String workDir;
+
+    private final ObjectMapper objectMapper;
+
+    public VariantGroupingService() {
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+    }
+
+    /**
+     * Start grouping rows for one feed
+     *
+     * @param downstream Receives one parent product per group
+     * @return A session that must be fed from a single thread and finished once parsing completes
+     */
+    public GroupingSession open(Consumer<Product> downstream) throws IOException {
+        switch (mode.toLowerCase()) {
+            case "off":
+                return new PassThroughSession(downstream);
+            case "spill":
+                return new SpillSession(downstream);
+            default:
+                return new SortedSession(downstream);
+        }
+    }
+
+    /**
+     * Returns true when sessions emit products in the order their first row appeared in the feed,
+     * which is not the case when rows are spilled to partitions
+     */
+    public boolean emitsInFeedOrder() {
+        return !"spill".equalsIgnoreCase(mode);
+    }
+
+    /**
+     * Merge the rows of one product into a parent product with a variants list
+     */
+    static Product mergeVariants(List<Product> rows) {
+        Product parent = rows.get(0);
+        List<Map<String, Object>> variants = new ArrayList<>(rows.size());
+        double ratingSum = 0;
+        int ratingCount = 0;
+
+        for (Product row : rows) {
+            Map<String, Object> variant = new LinkedHashMap<>();
+            putIfPresent(variant, "sku_id", row.getSku());
+            putIfPresent(variant, "image", row.getImage());
+            putIfPresent(variant, "color", row.getCustomAttribute("color"));
+            Object rating = row.getCustomAttribute("rating");
+            putIfPresent(variant, "rating", rating);
+            if (rating instanceof Number) {
+                ratingSum += ((Number) rating).doubleValue();
+                ratingCount++;
+            }
+            variants.add(variant);
+        }
+
+        parent.addCustomAttribute(VARIANTS_ATTRIBUTE, variants);
+        if (ratingCount > 1) {
+            // The parent rating aggregates its SKUs
+            parent.addCustomAttribute("rating", Math.round(ratingSum / ratingCount * 10) / 10.0);
+        }
+        return parent;
+    }
+
+    private static void putIfPresent(Map<String, Object> variant, String key, Object value) {
+        if (value != null) {
+            variant.put(key, value);
+        }
+    }
+
+    /**
+     * Grouping state for one feed
+     */
+    public abstract static class GroupingSession implements Consumer<Product> {
+
+        protected final Consumer<Product> downstream;
+        protected long groups;
+        protected long outOfOrderGroups;
+        private IntConsumer groupListener = rows -> {};
+
+        protected GroupingSession(Consumer<Product> downstream) {
+            this.downstream = downstream;
+        }
+
+        /**
+         * Receive the number of rows merged into each product, just before the product is passed downstream
+         */
+        public void setGroupListener(IntConsumer groupListener) {
+            this.groupListener = groupListener;
+        }
+
+        /**
+         * Emit the remaining groups
+         */
+        public abstract void finish() throws IOException;
+
+        /**
+         * Discard any buffered rows after a failed parse
+         */
+        public void abort() throws IOException {
+        }
+
+        /**
+         * Number of parent documents emitted
+         */
+        public long getGroups() {
+            return groups;
+        }
+
+        /**
+         * Groups whose product was already emitted earlier in the feed (sorted mode only)
+         */
+        public long getOutOfOrderGroups() {
+            return outOfOrderGroups;
+        }
+
+        protected void emit(List<Product> rows) {
+            groups++;
+            groupListener.accept(rows.size());
+            downstream.accept(mergeVariants(rows));
+        }
+
+        protected void emitSingle(Product product) {
+            groups++;
+            groupListener.accept(1);
+            downstream.accept(product);
+        }
+    }
+
+    /**
+     * Leaves rows as separate products
+     */
+    private static class PassThroughSession extends GroupingSession {
+
+        private PassThroughSession(Consumer<Product> downstream) {
+            super(downstream);
+        }
+
+        @Override
+        public void accept(Product product) {
+            emitSingle(product);
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    /**
+     * Groups contiguous rows of the same product as they stream past
+     */
+    private static class SortedSession extends GroupingSession {
+
+        private final List<Product> current = new ArrayList<>();
+        private String currentId;
+
+        /** Products tracked for reporting non-contiguous groups; caps the set at about 16 MB however long the feed */
+        private static final int MAX_TRACKED_PRODUCTS = 1 << 20;
+
+        // Products already emitted, to report feeds that are not grouped by product; past the cap only
+        // repeats of the tracked products are reported
+        private final FingerprintStore.KeyHashSet emitted = new FingerprintStore.KeyHashSet();
+
+        private SortedSession(Consumer<Product> downstream) {
+            super(downstream);
+        }
+
+        @Override
+        public void accept(Product product) {
+            String id = product.getId();
+            if (currentId != null && !currentId.equals(id)) {
+                flush();
+            }
+            if (current.isEmpty()) {
+                long keyHash = FingerprintStore.hashKey(id);
+                if (emitted.contains(keyHash)) {
+                    outOfOrderGroups++;
+                } else if (emitted.size() < MAX_TRACKED_PRODUCTS) {
+                    emitted.add(keyHash);
+                }
+            }
+            currentId = id;
+            current.add(product);
+        }
+
+        @Override
+        public void finish() {
+            flush();
+            if (outOfOrderGroups > 0) {
+                System.err.println("Warning: " + outOfOrderGroups + " product groups were not contiguous in the feed; " +
+                                 "set product.ingest.variants.mode=spill for unsorted feeds");
+            }
+        }
+
+        private void flush() {
+            if (!current.isEmpty()) {
+                emit(new ArrayList<>(current));
+                current.clear();
+            }
+        }
+    }
+
+    /**
+     * Hash-partitions rows to disk, then groups each partition in memory
+     */
+    private class SpillSession extends GroupingSession {
+
+        private final Path directory;
+        private final BufferedWriter[] writers;
+
+        private SpillSession(Consumer<Product> downstream) throws IOException {
+            super(downstream);
+            Files.createDirectories(Paths.get(workDir));
+            this.directory = Files.createTempDirectory(Paths.get(workDir), "variants-");
+            this.writers = new BufferedWriter[Math.max(1, spillPartitions)];
+        }
+
+        @Override
+        public void accept(Product product) {
+            int partition = Math.floorMod(product.getId().hashCode(), writers.length);
+            try {
+                if (writers[partition] == null) {
+                    writers[partition] = Files.newBufferedWriter(partitionFile(partition), StandardCharsets.UTF_8);
+                }
+                writers[partition].write(objectMapper.writeValueAsString(product));
+                writers[partition].newLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            try {
+                for (int partition = 0; partition < writers.length; partition++) {
+                    if (writers[partition] == null) {
+                        continue;
+                    }
+                    writers[partition].close();
+                    groupPartition(partitionFile(partition));
+                }
+            } finally {
+                deleteFiles();
+            }
+        }
+
+        @Override
+        public void abort() throws IOException {
+            for (BufferedWriter writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+            deleteFiles();
+        }
+
+        private void deleteFiles() throws IOException {
+            for (int partition = 0; partition < writers.length; partition++) {
+                Files.deleteIfExists(partitionFile(partition));
+            }
+            Files.deleteIfExists(directory);
+        }
+
+        private void groupPartition(Path file) throws IOException {
+            // Insertion order keeps products in feed order within the partition
+            Map<String, List<Product>> rowsById = new LinkedHashMap<>();
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Product product = objectMapper.readValue(line, Product.class);
+                    rowsById.computeIfAbsent(product.getId(), id -> new ArrayList<>()).add(product);
+                }
+            }
+            for (List<Product> rows : rowsById.values()) {
+                emit(rows);
+            }
+        }
+
+        private Path partitionFile(int partition) {
+            return directory.resolve("partition-" + partition + ".jsonl");
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.productservice.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Lookups that must not count towards the hit statistics of the bounded cache
+ */
+class BoundedCacheTest {
+
+    @Test
+    void quietLookupsLeaveHitAndMissCountsAlone() {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 10, 60, TimeUnit.SECONDS);
+        cache.put("a", "1");
+
+        assertEquals("1", cache.getIfPresentQuietly("a"));
+        assertNull(cache.getIfPresentQuietly("b"));
+
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(0L, stats.get("hits"));
+        assertEquals(0L, stats.get("misses"));
+
+        cache.get("a");
+        cache.get("b");
+        stats = cache.getStats();
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+    }
+
+    @Test
+    void quietLookupsDropExpiredEntries() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 10, 1, TimeUnit.MILLISECONDS);
+        cache.put("a", "1");
+        Thread.sleep(5);
+
+        assertNull(cache.getIfPresentQuietly("a"));
+        assertEquals(0, cache.size());
+        assertEquals(0L, cache.getStats().get("misses"));
+    }
+}
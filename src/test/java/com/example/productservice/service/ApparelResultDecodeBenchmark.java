@@ -0,0 +1,136 @@
+package com.example.productservice.service;
+
+import com.azure.search.documents.models.SearchResult;
+import com.example.productservice.model.ApparelSemanticSearchResponse.ApparelSearchResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Cost per hit of converting apparel search results: decoding the document for every field read,
+ * as convertToApparelSearchResult used to, against decoding it once.
+ *
+ * Each hit decodes like SearchResult.getDocument, which serializes the document's properties and
+ * reads them back into the requested type. Scores are per hit; -prof gc adds bytes allocated per hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApparelResultDecodeBenchmark {
+
+    /** Hits per response, as for a search with top=50 */
+    private static final int HITS = 50;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ProductService productService = new ProductService();
+    private final List<SearchResult> hits = new ArrayList<>();
+    private Method convertToApparelSearchResult;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<Map<String, Object>> documents = MappingFixtures.apparelDocuments();
+        for (int i = 0; i < HITS; i++) {
+            // Enriched fields as the apparel index returns them
+            Map<String, Object> document = new HashMap<>(documents.get(i % documents.size()));
+            document.put("reviewSentimentLabel", "positive");
+            document.put("reviewPositiveScore", 0.92);
+            document.put("keyPhrases", List.of("soft fabric", "true to size"));
+            document.put("entities", List.of("NordFields"));
+
+            // Stub-only mocks do not record invocations, so they hold no memory across iterations
+            SearchResult hit = mock(SearchResult.class, withSettings().stubOnly());
+            when(hit.getDocument(Map.class))
+                .thenAnswer(invocation -> objectMapper.readValue(objectMapper.writeValueAsBytes(document), Map.class));
+            when(hit.getScore()).thenReturn(1.0 - i / 100.0);
+            hits.add(hit);
+        }
+
+        convertToApparelSearchResult = ProductService.class.getDeclaredMethod("convertToApparelSearchResult", SearchResult.class);
+        convertToApparelSearchResult.setAccessible(true);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HITS)
+    public void decodePerField(Blackhole blackhole) {
+        for (SearchResult hit : hits) {
+            blackhole.consume(convertDecodingPerField(hit));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HITS)
+    public void decodeOnce(Blackhole blackhole) throws Exception {
+        for (SearchResult hit : hits) {
+            blackhole.consume(convertToApparelSearchResult.invoke(productService, hit));
+        }
+    }
+
+    /**
+     * The conversion before documents were decoded once, kept as the baseline
+     */
+    private static ApparelSearchResult convertDecodingPerField(SearchResult searchResult) {
+        ApparelSearchResult result = new ApparelSearchResult();
+        result.setProductId(getStringValue(searchResult, "product_id"));
+        result.setTitle(getStringValue(searchResult, "title"));
+        result.setBrand(getStringValue(searchResult, "brand"));
+        result.setColor(getStringValue(searchResult, "color"));
+        result.setSize(getStringValue(searchResult, "size"));
+        result.setMaterial(getStringValue(searchResult, "material"));
+        result.setPrice(getDoubleValue(searchResult, "price"));
+        result.setRating(getDoubleValue(searchResult, "rating"));
+        result.setDescription(getStringValue(searchResult, "description"));
+        result.setReviewText(getStringValue(searchResult, "review_text"));
+        result.setReviewSentimentLabel(getStringValue(searchResult, "reviewSentimentLabel"));
+        result.setReviewPositiveScore(getDoubleValue(searchResult, "reviewPositiveScore"));
+        result.setScore(searchResult.getScore());
+        result.setKeyPhrases(getStringListValue(searchResult, "keyPhrases"));
+        result.setEntities(getStringListValue(searchResult, "entities"));
+        result.setHighlights(searchResult.getHighlights());
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> document(SearchResult searchResult) {
+        return (Map<String, Object>) searchResult.getDocument(Map.class);
+    }
+
+    private static String getStringValue(SearchResult searchResult, String fieldName) {
+        Object value = document(searchResult).get(fieldName);
+        return value != null ? value.toString() : null;
+    }
+
+    private static Double getDoubleValue(SearchResult searchResult, String fieldName) {
+        Object value = document(searchResult).get(fieldName);
+        return value instanceof Number ? ((Number) value).doubleValue() : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> getStringListValue(SearchResult searchResult, String fieldName) {
+        Object value = document(searchResult).get(fieldName);
+        return value instanceof List ? (List<String>) value : new ArrayList<>();
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.productservice.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checkpoint advancement over chunk segments, and resuming in the middle of a product
+ */
+class CheckpointTrackerTest {
+
+    private static final String SOURCE_HASH = "0123abcd";
+
+    /** Long enough that checkpoints are only saved by explicit calls */
+    private static final long NO_AUTOMATIC_SAVE_MILLIS = 3_600_000;
+
+    private Path directory;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("checkpoint");
+        file = directory.resolve("feed.checkpoint");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    void resumesAfterTheProductStraddlingTheCheckpoint() throws IOException {
+        CheckpointTracker tracker = new CheckpointTracker(IngestionCheckpoint.open(file, SOURCE_HASH), NO_AUTOMATIC_SAVE_MILLIS);
+
+        // P1 has rows on both sides of the chunk boundary at offset 100
+        assertTrue(tracker.rowParsed("P1"));
+        assertTrue(tracker.rowParsed("P1"));
+        tracker.chunkConsumed(100);
+        assertTrue(tracker.rowParsed("P1"));
+        assertTrue(tracker.rowParsed("P2"));
+        emit(tracker, 3, "P1");
+
+        // The product is charged to the segment of its first row, which stays open until it is acknowledged
+        tracker.save();
+        assertEquals(0, IngestionCheckpoint.open(file, SOURCE_HASH).getOffset());
+
+        tracker.documentsCompleted(List.of("P1"));
+        tracker.save();
+        IngestionCheckpoint saved = IngestionCheckpoint.open(file, SOURCE_HASH);
+        assertEquals(100, saved.getOffset());
+        assertEquals("P1", saved.getCarryProductId());
+
+        // Resuming skips the remaining rows of P1, which was already indexed, and nothing after them
+        CheckpointTracker resumed = new CheckpointTracker(saved, NO_AUTOMATIC_SAVE_MILLIS);
+        assertEquals(100, resumed.getStartOffset());
+        assertFalse(resumed.rowParsed("P1"));
+        assertFalse(resumed.rowParsed("P1"));
+        assertTrue(resumed.rowParsed("P2"));
+        assertTrue(resumed.rowParsed("P1"));
+    }
+
+    @Test
+    void carriesTheLastProductOfEachChunk() throws IOException {
+        CheckpointTracker tracker = new CheckpointTracker(IngestionCheckpoint.open(file, SOURCE_HASH), NO_AUTOMATIC_SAVE_MILLIS);
+
+        tracker.rowParsed("P1");
+        tracker.chunkConsumed(50);
+        tracker.rowParsed("P2");
+        tracker.rowParsed("P3");
+        tracker.chunkConsumed(120);
+        tracker.rowParsed("P4");
+        emit(tracker, 1, "P1");
+        emit(tracker, 1, "P2");
+        emit(tracker, 1, "P3");
+        tracker.documentsCompleted(List.of("P1", "P2", "P3"));
+
+        // P4 is still buffered for grouping, so the checkpoint stops at the start of its segment
+        tracker.save();
+        IngestionCheckpoint saved = IngestionCheckpoint.open(file, SOURCE_HASH);
+        assertEquals(120, saved.getOffset());
+        assertEquals("P3", saved.getCarryProductId());
+
+        emit(tracker, 1, "P4");
+        tracker.chunkConsumed(180);
+        tracker.documentsCompleted(List.of("P4"));
+        tracker.save();
+        assertEquals(180, IngestionCheckpoint.open(file, SOURCE_HASH).getOffset());
+        assertEquals("P4", IngestionCheckpoint.open(file, SOURCE_HASH).getCarryProductId());
+    }
+
+    @Test
+    void holdsTheCheckpointUntilEveryCopyOfARepeatedKeyIsAcknowledged() throws IOException {
+        CheckpointTracker tracker = new CheckpointTracker(IngestionCheckpoint.open(file, SOURCE_HASH), NO_AUTOMATIC_SAVE_MILLIS);
+
+        tracker.rowParsed("P1");
+        emit(tracker, 1, "P1");
+        tracker.chunkConsumed(40);
+        tracker.rowParsed("P1");
+        emit(tracker, 1, "P1");
+        tracker.chunkConsumed(80);
+
+        tracker.documentCompleted("P1");
+        tracker.save();
+        assertEquals(0, IngestionCheckpoint.open(file, SOURCE_HASH).getOffset());
+
+        tracker.documentCompleted("P1");
+        tracker.save();
+        assertEquals(80, IngestionCheckpoint.open(file, SOURCE_HASH).getOffset());
+    }
+
+    @Test
+    void ignoresACheckpointOfAnotherSourceFile() throws IOException {
+        IngestionCheckpoint.open(file, SOURCE_HASH).save(100, "P1");
+
+        IngestionCheckpoint other = IngestionCheckpoint.open(file, "ffff0000");
+
+        assertEquals(0, other.getOffset());
+        assertNull(other.getCarryProductId());
+        assertTrue(new CheckpointTracker(other, NO_AUTOMATIC_SAVE_MILLIS).rowParsed("P1"));
+    }
+
+    /**
+     * Emit one grouped product built from the oldest buffered rows, as the grouping session does
+     */
+    private static void emit(CheckpointTracker tracker, int rows, String key) {
+        tracker.groupEmitted(rows);
+        tracker.documentQueued(key);
+    }
+}
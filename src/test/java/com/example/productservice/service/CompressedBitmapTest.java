@@ -0,0 +1,149 @@
+package com.example.productservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Set operations across sparse (array) and dense (bitmap) chunks, checked against BitSet
+ */
+class CompressedBitmapTest {
+
+    private static final int CHUNK = 1 << 16;
+
+    @Test
+    void combinesArrayAndBitmapChunks() {
+        Random random = new Random(42);
+        // Densities per chunk: below and above the 4096 values at which a chunk becomes a bitmap
+        double[][] densities = {
+            {0.01, 0.02, 0.5, 0.0, 0.9},
+            {0.03, 0.6, 0.01, 0.4, 0.0},
+        };
+        BitSet a = randomSet(random, densities[0]);
+        BitSet b = randomSet(random, densities[1]);
+        CompressedBitmap left = build(a);
+        CompressedBitmap right = build(b);
+
+        assertContents(a, left);
+        assertContents(b, right);
+
+        BitSet and = (BitSet) a.clone();
+        and.and(b);
+        assertContents(and, left.and(right));
+        assertContents(and, right.and(left));
+
+        BitSet or = (BitSet) a.clone();
+        or.or(b);
+        assertContents(or, left.or(right));
+        assertContents(or, right.or(left));
+
+        BitSet andNot = (BitSet) a.clone();
+        andNot.andNot(b);
+        assertContents(andNot, left.andNot(right));
+        BitSet reverse = (BitSet) b.clone();
+        reverse.andNot(a);
+        assertContents(reverse, right.andNot(left));
+    }
+
+    @Test
+    void switchesChunkKindWhenResultsCrossTheArrayLimit() {
+        // Two sparse halves of a chunk whose union is too large for an array
+        BitSet evens = new BitSet();
+        BitSet odds = new BitSet();
+        for (int i = 0; i < 3000; i++) {
+            evens.set(2 * i);
+            odds.set(2 * i + 1);
+        }
+        CompressedBitmap union = build(evens).or(build(odds));
+        assertEquals(6000, union.cardinality());
+        assertTrue(union.estimatedBytes() > 8192, "union should be a bitmap chunk");
+
+        // Two dense chunks with a small overlap shrink back to an array
+        BitSet low = new BitSet();
+        low.set(0, 5000);
+        BitSet high = new BitSet();
+        high.set(4990, 10000);
+        CompressedBitmap overlap = build(low).and(build(high));
+        assertArrayEquals(new int[] {4990, 4991, 4992, 4993, 4994, 4995, 4996, 4997, 4998, 4999}, overlap.toArray(100));
+        assertTrue(overlap.estimatedBytes() < 1024, "overlap should be an array chunk");
+
+        // Removing most of a dense chunk also leaves an array
+        BitSet tail = new BitSet();
+        tail.set(1000, 5000);
+        CompressedBitmap remainder = build(low).andNot(build(tail));
+        assertContents(difference(low, tail), remainder);
+        assertEquals(1000, remainder.cardinality());
+        assertTrue(remainder.estimatedBytes() < 4096, "remainder should be an array chunk");
+    }
+
+    @Test
+    void unitesManySetsAndAnswersLookups() {
+        List<CompressedBitmap> parts = new ArrayList<>();
+        BitSet expected = new BitSet();
+        Random random = new Random(7);
+        for (int part = 0; part < 8; part++) {
+            BitSet set = randomSet(random, new double[] {part % 2 == 0 ? 0.01 : 0.3, 0.02});
+            expected.or(set);
+            parts.add(build(set));
+        }
+        CompressedBitmap union = CompressedBitmap.orAll(parts);
+
+        assertContents(expected, union);
+        assertTrue(union.contains(expected.nextSetBit(CHUNK)));
+        assertFalse(union.contains(expected.nextClearBit(0)));
+        assertFalse(union.contains(5 * CHUNK));
+        assertArrayEquals(expected.stream().limit(3).toArray(), union.toArray(3));
+    }
+
+    @Test
+    void buildsRangesAndRejectsUnorderedValues() {
+        assertEquals(CHUNK + 10, CompressedBitmap.range(CHUNK + 10).cardinality());
+        assertTrue(CompressedBitmap.range(0).isEmpty());
+        assertTrue(CompressedBitmap.empty().and(CompressedBitmap.range(10)).isEmpty());
+
+        CompressedBitmap.Builder builder = new CompressedBitmap.Builder();
+        builder.add(5);
+        assertThrows(IllegalArgumentException.class, () -> builder.add(5));
+        assertThrows(IllegalArgumentException.class, () -> builder.add(3));
+    }
+
+    private static BitSet randomSet(Random random, double[] densities) {
+        BitSet set = new BitSet();
+        for (int chunk = 0; chunk < densities.length; chunk++) {
+            for (int low = 0; low < CHUNK; low++) {
+                if (random.nextDouble() < densities[chunk]) {
+                    set.set(chunk * CHUNK + low);
+                }
+            }
+        }
+        return set;
+    }
+
+    private static BitSet difference(BitSet a, BitSet b) {
+        BitSet result = (BitSet) a.clone();
+        result.andNot(b);
+        return result;
+    }
+
+    private static CompressedBitmap build(BitSet set) {
+        CompressedBitmap.Builder builder = new CompressedBitmap.Builder();
+        set.stream().forEach(builder::add);
+        return builder.build();
+    }
+
+    private static void assertContents(BitSet expected, CompressedBitmap actual) {
+        assertEquals(expected.cardinality(), actual.cardinality());
+        List<Integer> values = new ArrayList<>();
+        actual.forEach(values::add);
+        assertEquals(expected.stream().boxed().toList(), values);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.productservice.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second of the RFC 4180 tokenizer and the streaming parser against the line parser they
+ * replaced, on feeds made by repeating the rows of a sample file in datafiles.
+ *
+ * Scores are rows per second; -prof gc adds bytes allocated per row (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvParseBenchmark {
+
+    /** Data rows per invocation */
+    private static final int ROWS = 10_000;
+
+    @Param({"product_feed", "apparel"})
+    public String feed;
+
+    private final CsvParserService parser = new CsvParserService();
+    private Map<String, String> fieldMapping;
+    private byte[] data;
+
+    @Setup
+    public void setUp() throws IOException {
+        String file;
+        if ("apparel".equals(feed)) {
+            file = "datafiles/Sample_Apparel_Dataset__30_rows_.csv";
+            fieldMapping = parser.createCustomFieldMapping(
+                "product_id:id,title:name,brand:brand,category:category,color:color,size:size,material:material," +
+                "price:price,rating:rating,description:description,review_text:review_text");
+        } else {
+            file = "datafiles/product_feed.csv";
+            fieldMapping = parser.getProductFeedFieldMapping();
+        }
+
+        List<String> lines = Files.readAllLines(Path.of(file), StandardCharsets.UTF_8);
+        List<String> rows = lines.subList(1, lines.size()).stream().filter(line -> !line.isBlank()).toList();
+        StringBuilder csv = new StringBuilder(lines.get(0)).append('\n');
+        for (int i = 0; i < ROWS; i++) {
+            csv.append(rows.get(i % rows.size())).append('\n');
+        }
+        data = csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void splitLines(Blackhole blackhole) throws IOException {
+        try (BufferedReader reader = new BufferedReader(reader())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                blackhole.consume(LegacyCsvParser.parseCsvLine(line));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void tokenize(Blackhole blackhole) throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(reader());
+        while (tokenizer.nextRecord()) {
+            blackhole.consume(tokenizer.getFieldCount());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void parseWithLineParser(Blackhole blackhole) throws IOException {
+        blackhole.consume(LegacyCsvParser.parse(reader(), fieldMapping));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void parseCsvStream(Blackhole blackhole) throws IOException {
+        blackhole.consume(parser.parseCsvStream(new ByteArrayInputStream(data), fieldMapping, blackhole::consume));
+    }
+
+    private Reader reader() {
+        return new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8);
+    }
+}
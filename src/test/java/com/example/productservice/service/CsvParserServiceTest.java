@@ -0,0 +1,128 @@
+package com.example.productservice.service;
+
+import com.example.productservice.model.Product;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Streaming parse of feeds far larger than what the parser may hold.
+ *
+ * The bounded-memory run is tagged "large" and only runs with the large-tests
+ * Maven profile (mvn test -P dev,large-tests), which gives it a 256 MB heap;
+ * its feed defaults to 4 GB and can be sized with -Dingest.test.feed-mb.
+ */
+class CsvParserServiceTest {
+
+    /** Heap growth allowed while streaming, independent of the feed size */
+    private static final long MAX_HEAP_GROWTH_BYTES = 64L * 1024 * 1024;
+
+    private final CsvParserService parser = new CsvParserService();
+
+    @Test
+    @Tag("large")
+    void streamsLargeFeedInBoundedMemory() throws Exception {
+        long feedBytes = Long.getLong("ingest.test.feed-mb", 4096) * 1024 * 1024;
+        long baseline = usedHeapAfterGc();
+
+        long[] rows = new long[1];
+        long[] maxGrowth = new long[1];
+        List<WeakReference<Product>> sampled = new ArrayList<>();
+        GeneratedFeed feed = new GeneratedFeed(feedBytes);
+        CsvParserService.ParseStats stats = parser.parseCsvStream(feed, parser.getProductFeedFieldMapping(),
+            product -> {
+                rows[0]++;
+                if (rows[0] % 10_000 == 0) {
+                    sampled.add(new WeakReference<>(product));
+                }
+                if (rows[0] % 250_000 == 0) {
+                    maxGrowth[0] = Math.max(maxGrowth[0], usedHeapAfterGc() - baseline);
+                }
+            });
+
+        assertEquals(feed.getRows(), rows[0]);
+        assertEquals(feed.getRows(), stats.getRowsParsed());
+        assertEquals(0, stats.getRowsSkipped());
+        assertTrue(maxGrowth[0] < MAX_HEAP_GROWTH_BYTES, "heap grew by " + maxGrowth[0] + " bytes while streaming");
+
+        // Nothing handed to the consumer may still be reachable from the parser
+        System.gc();
+        for (WeakReference<Product> reference : sampled) {
+            assertNull(reference.get(), "parser retained a product");
+        }
+    }
+
+    @Test
+    void streamsRowsInFeedOrder() throws Exception {
+        List<String> ids = new ArrayList<>();
+        parser.parseCsvStream(new GeneratedFeed(64 * 1024), parser.getProductFeedFieldMapping(), product -> ids.add(product.getId()));
+
+        assertTrue(ids.size() > 100);
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(GeneratedFeed.productId(i), ids.get(i));
+        }
+    }
+
+    @Test
+    void mapsRowsLikeLineParser() throws Exception {
+        Map<String, String> apparelMapping = parser.createCustomFieldMapping(
+            "product_id:id,title:name,brand:brand,category:category,color:color,size:size,material:material," +
+            "price:price,rating:rating,description:description,review_text:review_text");
+        assertSameProducts(Files.readString(Path.of("datafiles/product_feed.csv")), parser.getProductFeedFieldMapping(), false);
+        assertSameProducts(Files.readString(Path.of("datafiles/Sample_Apparel_Dataset__30_rows_.csv")), apparelMapping, false);
+
+        // Every typed field, a repeated header and two columns bound to the same field
+        Map<String, String> mapping = parser.createCustomFieldMapping(
+            "id:id,name:name,title:name,price:price,currency:currency,tags:tags,in_stock:inStock," +
+            "stock_quantity:stockQuantity,created_at:createdAt,updated_at:updatedAt,maker:manufacturer,model:model," +
+            "specs:specs,rating:rating,season:season,note:note");
+        String csv = "id,name,title,price,currency,tags,in_stock,stock_quantity,created_at,updated_at,maker,model,specs,rating,season,note,note\n" +
+                     "A1,Trail Runner,Trail Runner GTX,\"$1,299.99\",EUR,run;trail,yes,12,2024-02-29 10:15:00,2024-03-01 08:00:00,Fabrikam,TR-1,waterproof;light,4.5,winter,first,second\n" +
+                     "A2, Road Shoe ,,-19.5,,,0,7,2023-11-30 23:59:59,2023-12-01 00:00:00,,,,n/a,, ,last\n" +
+                     "A3,Sandal,Sandal Pro,12,,beach,Y,,2024-06-30 12:00:00,2024-02-30 12:00:00,Contoso,S-3,,3,summer,x,\n";
+        assertSameProducts(csv, mapping, true);
+    }
+
+    private void assertSameProducts(String csv, Map<String, String> mapping, boolean withDates) throws Exception {
+        List<Product> expected = LegacyCsvParser.parse(new StringReader(csv), mapping);
+        List<Product> actual = new ArrayList<>();
+        parser.parseCsvStream(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), mapping, actual::add);
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(describe(expected.get(i), withDates), describe(actual.get(i), withDates));
+        }
+    }
+
+    private static String describe(Product product, boolean withDates) {
+        return product.getId() + "|" + product.getName() + "|" + product.getDescription() + "|" + product.getBrand() + "|" +
+               product.getCategory() + "|" + (product.getPrice() != null ? product.getPrice().toPlainString() : null) + "|" +
+               product.getCurrency() + "|" + product.getSku() + "|" + product.getImage() + "|" + product.getTags() + "|" +
+               product.isInStock() + "|" + product.getStockQuantity() + "|" + product.getManufacturer() + "|" +
+               product.getModel() + "|" + product.getSpecifications() + "|" + new TreeMap<>(product.getCustomAttributes() != null
+                   ? product.getCustomAttributes() : Map.of()) +
+               (withDates ? "|" + product.getCreatedAt() + "|" + product.getUpdatedAt() : "");
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.productservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * RFC 4180 tokenizing, and parity with the line parser it replaced on the sample feeds
+ */
+class CsvTokenizerTest {
+
+    @Test
+    void splitsQuotedFieldsAndEscapedQuotes() throws IOException {
+        List<String[]> records = records("a,\"b,c\",\"d \"\"e\"\"\",\"\"\n");
+
+        assertEquals(1, records.size());
+        assertArrayEquals(new String[] {"a", "b,c", "d \"e\"", ""}, records.get(0));
+    }
+
+    @Test
+    void keepsLineBreaksInsideQuotedFields() throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(new StringReader("id,text\n1,\"first\r\nsecond\nthird\"\n2,plain\n"));
+
+        assertTrue(tokenizer.nextRecord());
+        assertEquals(1, tokenizer.getLineNumber());
+        assertTrue(tokenizer.nextRecord());
+        assertEquals(2, tokenizer.getLineNumber());
+        assertArrayEquals(new String[] {"1", "first\r\nsecond\nthird"}, tokenizer.getFields());
+        assertTrue(tokenizer.nextRecord());
+        assertEquals(5, tokenizer.getLineNumber());
+        assertArrayEquals(new String[] {"2", "plain"}, tokenizer.getFields());
+        assertFalse(tokenizer.nextRecord());
+    }
+
+    @Test
+    void acceptsLfCrlfAndCrTerminators() throws IOException {
+        List<String[]> records = records("a,b\r\nc,d\re,f\ng,h");
+
+        assertEquals(4, records.size());
+        assertArrayEquals(new String[] {"c", "d"}, records.get(1));
+        assertArrayEquals(new String[] {"e", "f"}, records.get(2));
+        assertArrayEquals(new String[] {"g", "h"}, records.get(3));
+    }
+
+    @Test
+    void trimsFieldsAndReportsBlankRecords() throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(" a , \" b \" ,\n\n   \nc\n"));
+
+        assertTrue(tokenizer.nextRecord());
+        assertEquals(3, tokenizer.getFieldCount());
+        assertArrayEquals(new String[] {"a", "b", ""}, tokenizer.getFields());
+        assertTrue(tokenizer.isBlankField(2));
+        assertFalse(tokenizer.isBlankRecord());
+        assertTrue(tokenizer.nextRecord());
+        assertTrue(tokenizer.isBlankRecord());
+        assertTrue(tokenizer.nextRecord());
+        assertTrue(tokenizer.isBlankRecord());
+        assertTrue(tokenizer.nextRecord());
+        assertEquals("c", tokenizer.getField(0));
+        assertFalse(tokenizer.nextRecord());
+    }
+
+    @Test
+    void readsAnInMemoryRange() throws IOException {
+        char[] chars = "skip\nx,y\nz,w\nrest".toCharArray();
+        CsvTokenizer tokenizer = new CsvTokenizer(chars, 5, 8, 2);
+
+        assertTrue(tokenizer.nextRecord());
+        assertEquals(2, tokenizer.getLineNumber());
+        assertArrayEquals(new String[] {"x", "y"}, tokenizer.getFields());
+        assertTrue(tokenizer.nextRecord());
+        assertArrayEquals(new String[] {"z", "w"}, tokenizer.getFields());
+        assertFalse(tokenizer.nextRecord());
+    }
+
+    @Test
+    void handlesRecordsLongerThanTheBuffers() throws IOException {
+        StringBuilder line = new StringBuilder();
+        String[] expected = new String[100];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = "field-" + i + "-" + "x".repeat(200);
+            line.append(i > 0 ? "," : "").append(expected[i]);
+        }
+
+        List<String[]> records = records(line + "\n" + line + "\n");
+
+        assertEquals(2, records.size());
+        assertArrayEquals(expected, records.get(1));
+    }
+
+    @Test
+    void matchesLineParserOnSampleFeeds() throws IOException {
+        for (String feed : List.of("datafiles/product_feed.csv", "datafiles/Sample_Apparel_Dataset__30_rows_.csv")) {
+            String content = Files.readString(Path.of(feed), StandardCharsets.UTF_8);
+
+            List<String[]> expected = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        expected.add(LegacyCsvParser.parseCsvLine(line));
+                    }
+                }
+            }
+            List<String[]> actual = records(content);
+
+            assertEquals(expected.size(), actual.size(), feed);
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals(expected.get(i), actual.get(i), feed + " record " + i);
+            }
+        }
+    }
+
+    /**
+     * Fields of every non-blank record
+     */
+    private static List<String[]> records(String csv) throws IOException {
+        CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(csv));
+        List<String[]> records = new ArrayList<>();
+        while (tokenizer.nextRecord()) {
+            if (!tokenizer.isBlankRecord()) {
+                records.add(tokenizer.getFields());
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.productservice.service;
+
+import com.example.productservice.model.ApparelProduct;
+import com.example.productservice.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per document of DocumentMappingService's direct binding against the JSON string round trip it
+ * replaced, in both directions, on the products of datafiles/product_feed.csv and the apparel sample.
+ *
+ * The documents are the ones DocumentMappingServiceTest checks for parity. Scores are per document;
+ * -prof gc adds bytes allocated per document.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentMappingBenchmark {
+
+    /** Documents mapped per invocation, cycling through the fixtures */
+    private static final int DOCUMENTS = 100;
+
+    private final DocumentMappingService mappingService = new DocumentMappingService();
+
+    /** Mapper configured as the service was before direct binding */
+    private final ObjectMapper legacyMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private List<Product> products;
+    private final List<Map<String, Object>> productDocuments = new ArrayList<>();
+    private List<Map<String, Object>> apparelDocuments;
+
+    @Setup
+    public void setUp() throws Exception {
+        products = MappingFixtures.feedProducts();
+        for (Product product : products) {
+            productDocuments.add(mappingService.mapProductToDocument(product));
+        }
+        apparelDocuments = MappingFixtures.apparelDocuments();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void productToDocumentJsonRoundTrip(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < DOCUMENTS; i++) {
+            Product product = products.get(i % products.size());
+            blackhole.consume(legacyMapper.readValue(legacyMapper.writeValueAsString(product), Map.class));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void productToDocumentDirect(Blackhole blackhole) {
+        for (int i = 0; i < DOCUMENTS; i++) {
+            blackhole.consume(mappingService.mapProductToDocument(products.get(i % products.size())));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void documentToProductJsonRoundTrip(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < DOCUMENTS; i++) {
+            Map<String, Object> document = productDocuments.get(i % productDocuments.size());
+            blackhole.consume(legacyMapper.readValue(legacyMapper.writeValueAsString(document), Product.class));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void documentToProductDirect(Blackhole blackhole) {
+        for (int i = 0; i < DOCUMENTS; i++) {
+            blackhole.consume(mappingService.mapDocumentToProduct(productDocuments.get(i % productDocuments.size())));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void apparelDocumentToProductJsonRoundTrip(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < DOCUMENTS; i++) {
+            Map<String, Object> document = apparelDocuments.get(i % apparelDocuments.size());
+            blackhole.consume(legacyMapper.readValue(legacyMapper.writeValueAsString(document), ApparelProduct.class));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DOCUMENTS)
+    public void apparelDocumentToProductDirect(Blackhole blackhole) {
+        for (int i = 0; i < DOCUMENTS; i++) {
+            blackhole.consume(mappingService.mapDocumentToApparelProduct(apparelDocuments.get(i % apparelDocuments.size())));
+        }
+    }
+}
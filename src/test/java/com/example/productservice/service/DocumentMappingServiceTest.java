@@ -0,0 +1,111 @@
+package com.example.productservice.service;
+
+import com.example.productservice.model.ApparelProduct;
+import com.example.productservice.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Direct binding in DocumentMappingService against the JSON string round trip it replaced,
+ * on documents built from the sample feeds in datafiles
+ */
+class DocumentMappingServiceTest {
+
+    private final DocumentMappingService mappingService = new DocumentMappingService();
+
+    /** Mapper configured as the service was before direct binding, used as the reference */
+    private final ObjectMapper legacyMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    void productDocumentsMatchJsonRoundTrip() throws Exception {
+        List<Product> products = MappingFixtures.feedProducts();
+        assertFalse(products.isEmpty());
+
+        for (Product product : products) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> expected = legacyMapper.readValue(legacyMapper.writeValueAsString(product), Map.class);
+            Map<String, Object> document = mappingService.mapProductToDocument(product);
+
+            // The index rejects the JSON-LD properties and needs dates with an offset
+            assertTrue(document.keySet().stream().noneMatch(name -> name.startsWith("@")), document.keySet().toString());
+            assertEquals("2024-05-01T12:30:15Z", document.get("createdAt"));
+            assertEquals("2024-05-01T12:30:15Z", document.get("updatedAt"));
+
+            expected.remove("@context");
+            expected.remove("@type");
+            expected.remove("createdAt");
+            expected.remove("updatedAt");
+            Map<String, Object> actual = new HashMap<>(document);
+            actual.remove("createdAt");
+            actual.remove("updatedAt");
+            assertEquals(normalize(expected), normalize(actual), product.getId());
+        }
+    }
+
+    @Test
+    void productsBoundFromDocumentsMatchJsonRoundTrip() throws Exception {
+        for (Product product : MappingFixtures.feedProducts()) {
+            Map<String, Object> document = mappingService.mapProductToDocument(product);
+
+            Product expected = legacyMapper.readValue(legacyMapper.writeValueAsString(document), Product.class);
+            Product actual = mappingService.mapDocumentToProduct(document);
+
+            assertEquals(legacyMapper.writeValueAsString(expected), legacyMapper.writeValueAsString(actual));
+            assertEquals(legacyMapper.writeValueAsString(product), legacyMapper.writeValueAsString(actual));
+            assertEquals(MappingFixtures.CREATED_AT, actual.getCreatedAt());
+        }
+    }
+
+    @Test
+    void apparelProductsMatchJsonRoundTrip() throws Exception {
+        List<Map<String, Object>> documents = MappingFixtures.apparelDocuments();
+        assertEquals(30, documents.size());
+
+        for (Map<String, Object> document : documents) {
+            ApparelProduct expected = legacyMapper.readValue(legacyMapper.writeValueAsString(document), ApparelProduct.class);
+            ApparelProduct actual = mappingService.mapDocumentToApparelProduct(document);
+            assertEquals(legacyMapper.writeValueAsString(expected), legacyMapper.writeValueAsString(actual));
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> expectedDocument = legacyMapper.readValue(legacyMapper.writeValueAsString(actual), Map.class);
+            expectedDocument.remove("@context");
+            expectedDocument.remove("@type");
+            assertEquals(normalize(expectedDocument), normalize(mappingService.mapApparelProductToDocument(actual)));
+        }
+    }
+
+    /**
+     * Compare numbers by value, since direct binding keeps BigDecimal where the JSON text round trip produced Double
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Map) {
+            Map<String, Object> normalized = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                normalized.put(String.valueOf(entry.getKey()), normalize(entry.getValue()));
+            }
+            return normalized;
+        }
+        if (value instanceof List) {
+            List<Object> normalized = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                normalized.add(normalize(element));
+            }
+            return normalized;
+        }
+        return value;
+    }
+}
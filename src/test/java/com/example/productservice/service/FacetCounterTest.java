@@ -0,0 +1,136 @@
+package com.example.productservice.service;
+
+import com.example.productservice.model.ApparelProduct;
+import com.example.productservice.model.ApparelSemanticSearchRequest;
+import com.example.productservice.model.ApparelSemanticSearchResponse.FacetValue;
+import com.example.productservice.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Facet counts over the columnar catalog, checked against counting the products one by one
+ */
+class FacetCounterTest {
+
+    private static final String[] BRANDS = {"Contoso", "Fabrikam", "Northwind", "Tailspin"};
+    private static final String[] COLORS = {"Red", "Blue", "Black"};
+    private static final String[] SENTIMENTS = {"positive", "neutral", "negative", "mixed"};
+
+    private final List<Product> products = new ArrayList<>();
+    private ColumnarCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        ColumnarCatalog.Builder builder = new ColumnarCatalog.Builder();
+        for (int i = 0; i < 500; i++) {
+            ApparelProduct product = new ApparelProduct("A" + i, "Jacket " + i, BRANDS[i % 4], COLORS[i % 3],
+                                                        i % 2 == 0 ? "M" : "L", "Nylon",
+                                                        new BigDecimal(5 + (i * 7) % 120), 1 + (i % 9) * 0.5,
+                                                        "Jacket", null);
+            if (i % 5 != 0) {
+                // Every fifth product has no sentiment; the labels occur in the ratio 8:4:3:1
+                int slot = i % 20;
+                product.addCustomAttribute("reviewSentimentLabel", SENTIMENTS[slot < 10 ? 0 : slot < 15 ? 1 : slot < 19 ? 2 : 3]);
+            }
+            products.add(product);
+            builder.add(product, StoredFields.encode(product));
+        }
+        catalog = builder.build();
+    }
+
+    @Test
+    void countsDefaultFacetsOverEveryProduct() {
+        assertDefaultFacetsMatch(catalog.all());
+    }
+
+    @Test
+    void countsDefaultFacetsOverPartOfTheCatalog() {
+        assertDefaultFacetsMatch(catalog.select(doc -> doc % 3 == 1 || doc > 450));
+    }
+
+    @Test
+    void countsTheTopSentimentLabels() {
+        Map<String, List<FacetValue>> facets = FacetCounter.count(catalog, catalog.all(), List.of("reviewSentimentLabel,count:3"));
+
+        List<FacetValue> sentiment = facets.get("reviewSentimentLabel");
+        assertEquals(3, sentiment.size());
+        Map<String, Long> expected = countValues(catalog.all(), "reviewSentimentLabel");
+        assertEquals(4, expected.size());
+        long total = 0;
+        for (FacetValue value : sentiment) {
+            assertEquals(expected.get(value.getValue()), value.getCount());
+            total += value.getCount();
+        }
+        // Ordered by count, leaving out the least frequent label
+        assertEquals(List.of("positive", "neutral", "negative"), List.of(sentiment.get(0).getValue(),
+                     sentiment.get(1).getValue(), sentiment.get(2).getValue()));
+        assertEquals(375, total);
+    }
+
+    @Test
+    void skipsFacetsOnFieldsWithoutAColumn() {
+        Map<String, List<FacetValue>> facets = FacetCounter.count(catalog, catalog.all(), List.of("keyPhrases", "brand,count:1"));
+
+        assertEquals(List.of("brand"), new ArrayList<>(facets.keySet()));
+        assertEquals(1, facets.get("brand").size());
+    }
+
+    private void assertDefaultFacetsMatch(CompressedBitmap matches) {
+        List<String> expressions = new ApparelSemanticSearchRequest("jacket").getFacets();
+        assertTrue(expressions.contains("reviewSentimentLabel,count:3"));
+
+        Map<String, List<FacetValue>> facets = FacetCounter.count(catalog, matches, expressions);
+
+        for (String field : List.of("brand", "color", "size", "material", "reviewSentimentLabel")) {
+            Map<String, Long> expected = countValues(matches, field);
+            for (FacetValue value : facets.get(field)) {
+                assertEquals(expected.get(value.getValue()), value.getCount(), field + " " + value.getValue());
+            }
+            assertEquals(Math.min(expected.size(), field.equals("reviewSentimentLabel") ? 3 : 10), facets.get(field).size(), field);
+        }
+        assertEquals(countIntervals(matches, "price", 25), asMap(facets.get("price")));
+        assertEquals(countIntervals(matches, "rating", 0.5), asMap(facets.get("rating")));
+    }
+
+    private Map<String, Long> countValues(CompressedBitmap matches, String field) {
+        ColumnarCatalog.Attribute attribute = ColumnarCatalog.Attribute.forField(field);
+        Map<String, Long> counts = new LinkedHashMap<>();
+        matches.forEach(doc -> {
+            String value = ColumnarCatalog.stringValue(products.get(doc), attribute);
+            if (value != null) {
+                counts.merge(value, 1L, Long::sum);
+            }
+        });
+        return counts;
+    }
+
+    private Map<String, Long> countIntervals(CompressedBitmap matches, String field, double interval) {
+        ColumnarCatalog.Measure measure = ColumnarCatalog.Measure.forField(field);
+        Map<String, Long> counts = new TreeMap<>();
+        matches.forEach(doc -> {
+            double value = ColumnarCatalog.numericValue(products.get(doc), measure);
+            String bucket = BigDecimal.valueOf(Math.floor(value / interval)).multiply(BigDecimal.valueOf(interval))
+                .stripTrailingZeros().toPlainString();
+            counts.merge(bucket.equals("0.0") ? "0" : bucket, 1L, Long::sum);
+        });
+        return counts;
+    }
+
+    private static Map<String, Long> asMap(List<FacetValue> facet) {
+        Map<String, Long> counts = new TreeMap<>();
+        for (FacetValue value : facet) {
+            counts.put(value.getValue(), value.getCount());
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.productservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compression detection and streaming decompression of CSV feeds
+ */
+class FeedInputTest {
+
+    private static final byte[] CSV = ("product_id,product_name,brand\n" +
+                                       "P1,Runner Flex,Fabrikam\n" +
+                                       "P2,\"Trail, Pro\",Contoso\n").getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void passesPlainCsvThrough() throws IOException {
+        FeedInput input = FeedInput.open(new ByteArrayInputStream(CSV));
+
+        assertEquals(FeedInput.NONE, input.getCompression());
+        assertFalse(input.isCompressed());
+        assertArrayEquals(CSV, input.readAllBytes());
+        assertEquals(CSV.length, input.getCompressedBytes());
+        assertEquals(CSV.length, input.getUncompressedBytes());
+    }
+
+    @Test
+    void inflatesGzip() throws IOException {
+        byte[] gzip = gzip(CSV);
+        AtomicLong rawBytes = new AtomicLong();
+        FeedInput input = FeedInput.open(new ByteArrayInputStream(gzip), rawBytes::addAndGet);
+
+        assertEquals(FeedInput.GZIP, input.getCompression());
+        assertTrue(input.isCompressed());
+        assertArrayEquals(CSV, input.readAllBytes());
+        assertEquals(gzip.length, input.getCompressedBytes());
+        assertEquals(gzip.length, rawBytes.get());
+        assertEquals(CSV.length, input.getUncompressedBytes());
+    }
+
+    @Test
+    void inflatesEveryMemberOfMultiMemberGzip() throws IOException {
+        // Concatenated gzip files, as produced by compressing a feed in parts
+        ByteArrayOutputStream members = new ByteArrayOutputStream();
+        members.write(gzip(CSV));
+        members.write(gzip("P3,Sandal,Northwind\n".getBytes(StandardCharsets.UTF_8)));
+
+        FeedInput input = FeedInput.open(new ByteArrayInputStream(members.toByteArray()));
+
+        assertEquals(FeedInput.GZIP, input.getCompression());
+        assertEquals(new String(CSV, StandardCharsets.UTF_8) + "P3,Sandal,Northwind\n",
+                     new String(input.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void inflatesZlib() throws IOException {
+        ByteArrayOutputStream zlib = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(zlib)) {
+            out.write(CSV);
+        }
+
+        FeedInput input = FeedInput.open(new ByteArrayInputStream(zlib.toByteArray()));
+
+        assertEquals(FeedInput.ZLIB, input.getCompression());
+        assertArrayEquals(CSV, input.readAllBytes());
+    }
+
+    @Test
+    void rejectsZstd() {
+        byte[] zstd = {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd, 0x00, 0x58, 0x01, 0x00};
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+            () -> FeedInput.open(new ByteArrayInputStream(zstd)));
+        assertTrue(error.getMessage().contains("zstd"), error.getMessage());
+    }
+
+    @Test
+    void doesNotMistakeTextForZlib() {
+        // "x " passes the zlib header checksum but sets the preset dictionary bit
+        assertEquals(FeedInput.NONE, FeedInput.detect("x ,y\n".getBytes(StandardCharsets.US_ASCII), 5));
+        assertEquals(FeedInput.NONE, FeedInput.detect("x".getBytes(StandardCharsets.US_ASCII), 1));
+        assertEquals(FeedInput.NONE, FeedInput.detect(new byte[0], 0));
+    }
+
+    @Test
+    void acceptsOnlyDetectableFileNames() {
+        assertTrue(FeedInput.isSupportedFileName("feed.csv"));
+        assertTrue(FeedInput.isSupportedFileName("FEED.CSV.GZ"));
+        assertTrue(FeedInput.isSupportedFileName("feed.csv.zlib"));
+        assertFalse(FeedInput.isSupportedFileName("feed.csv.deflate"));
+        assertFalse(FeedInput.isSupportedFileName("feed.csv.zst"));
+        assertFalse(FeedInput.isSupportedFileName(null));
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+            out.write(content);
+        }
+        return gzip.toByteArray();
+    }
+}
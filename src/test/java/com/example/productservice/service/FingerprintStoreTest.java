@@ -0,0 +1,164 @@
+package com.example.productservice.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replay of the fingerprint log and the open-addressing table behind it
+ */
+class FingerprintStoreTest {
+
+    /** Home slots are taken from the low bits of the key hash while the table has its initial capacity */
+    private static final int INITIAL_MASK = (1 << 16) - 1;
+
+    private Path directory;
+    private Path logFile;
+    private FingerprintStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("fingerprints");
+        logFile = directory.resolve("fingerprints.log");
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void replaysRecordsAndDeletesAfterRestart() throws IOException {
+        store.recordAll(List.of("P1", "P2", "P3"), new long[] {11, 12, 13});
+        store.recordAll(List.of("P2"), new long[] {22});
+        store.removeAll(List.of("P3"));
+
+        FingerprintStore reopened = reopen();
+
+        assertEquals(2, reopened.size());
+        assertTrue(reopened.isUnchanged(FingerprintStore.hashKey("P1"), 11));
+        assertTrue(reopened.isUnchanged(FingerprintStore.hashKey("P2"), 22));
+        assertFalse(reopened.isUnchanged(FingerprintStore.hashKey("P2"), 12));
+        assertFalse(reopened.isUnchanged(FingerprintStore.hashKey("P3"), 13));
+    }
+
+    @Test
+    void dropsTornLastRecordOnReplay() throws IOException {
+        store.recordAll(List.of("P1", "P2"), new long[] {11, 12});
+        long validLength = Files.size(logFile);
+        store.recordAll(List.of("P3-with-a-longer-key"), new long[] {13});
+        store.close();
+
+        // A crash in the middle of the last record leaves part of it behind
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(logFile) - 5);
+        }
+        store = open();
+
+        assertEquals(2, store.size());
+        assertFalse(store.isUnchanged(FingerprintStore.hashKey("P3-with-a-longer-key"), 13));
+        assertEquals(validLength, Files.size(logFile));
+
+        // Records appended after the truncation replay cleanly
+        store.recordAll(List.of("P4"), new long[] {14});
+        FingerprintStore reopened = reopen();
+        assertEquals(3, reopened.size());
+        assertTrue(reopened.isUnchanged(FingerprintStore.hashKey("P1"), 11));
+        assertTrue(reopened.isUnchanged(FingerprintStore.hashKey("P4"), 14));
+    }
+
+    @Test
+    void keepsCollidingKeysReachableAcrossDeleteAndReAdd() throws IOException {
+        // Three keys with the same home slot and one homed in the slot the chain runs into
+        List<String> chain = keysWithHomeSlot(slotOf("seed"), 3);
+        String neighbour = keysWithHomeSlot((slotOf(chain.get(0)) + 1) & INITIAL_MASK, 1).get(0);
+        List<String> keys = new ArrayList<>(chain);
+        keys.add(neighbour);
+        store.recordAll(keys, new long[] {1, 2, 3, 4});
+
+        // Deleting the head of the chain shifts the others back, so they are still found
+        store.removeAll(List.of(chain.get(0)));
+        assertFalse(store.isUnchanged(FingerprintStore.hashKey(chain.get(0)), 1));
+        assertFingerprints(store, Map.of(chain.get(1), 2L, chain.get(2), 3L, neighbour, 4L));
+
+        store.removeAll(List.of(chain.get(2)));
+        assertFingerprints(store, Map.of(chain.get(1), 2L, neighbour, 4L));
+
+        store.recordAll(List.of(chain.get(0), chain.get(2)), new long[] {5, 6});
+        assertEquals(4, store.size());
+        assertFingerprints(store, Map.of(chain.get(0), 5L, chain.get(1), 2L, chain.get(2), 6L, neighbour, 4L));
+
+        assertFingerprints(reopen(), Map.of(chain.get(0), 5L, chain.get(1), 2L, chain.get(2), 6L, neighbour, 4L));
+    }
+
+    @Test
+    void reportsEachKeyMissingFromAFeedOnce() throws IOException {
+        store.recordAll(List.of("P1", "P2", "P3"), new long[] {1, 2, 3});
+        store.recordAll(List.of("P2"), new long[] {20});
+        store.removeAll(List.of("P3"));
+
+        FingerprintStore.KeyHashSet seen = new FingerprintStore.KeyHashSet();
+        seen.add(FingerprintStore.hashKey("P1"));
+        List<String> stale = new ArrayList<>();
+        store.forEachKeyNotIn(seen, stale::add);
+
+        assertEquals(List.of("P2"), stale);
+    }
+
+    private FingerprintStore open() throws IOException {
+        FingerprintStore opened = new FingerprintStore();
+        ReflectionTestUtils.setField(opened, "enabled", true);
+        ReflectionTestUtils.setField(opened, "storeFile", logFile.toString());
+        opened.open();
+        return opened;
+    }
+
+    private FingerprintStore reopen() throws IOException {
+        store.close();
+        store = open();
+        return store;
+    }
+
+    private static void assertFingerprints(FingerprintStore store, Map<String, Long> expected) {
+        assertEquals(expected.size(), store.size());
+        for (Map.Entry<String, Long> entry : expected.entrySet()) {
+            assertTrue(store.isUnchanged(FingerprintStore.hashKey(entry.getKey()), entry.getValue()), entry.getKey());
+        }
+    }
+
+    private static int slotOf(String key) {
+        return (int) FingerprintStore.hashKey(key) & INITIAL_MASK;
+    }
+
+    private static List<String> keysWithHomeSlot(int slot, int count) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; keys.size() < count; i++) {
+            if (slotOf("K" + i) == slot) {
+                keys.add("K" + i);
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.productservice.service;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A product_feed.csv shaped feed of at least the given size, generated as it is read.
+ * Each row is a product of its own, so grouping emits one document per row.
+ */
+final class GeneratedFeed extends InputStream {
+
+    static final String HEADER = "product_id,product_name,brand,category_id,category_name,category_description," +
+                                 "sku_id,sku_name,sku_image,sku_description,color,aggregateRating\n";
+
+    private final long bytes;
+    private byte[] line = HEADER.getBytes(StandardCharsets.UTF_8);
+    private int position;
+    private long produced;
+    private int rows;
+
+    GeneratedFeed(long bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Rows generated so far; all of them once the feed is read to the end
+     */
+    int getRows() {
+        return rows;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public int read() {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (position == line.length) {
+            if (produced >= bytes) {
+                return -1;
+            }
+            line = row(rows++).getBytes(StandardCharsets.UTF_8);
+            position = 0;
+        }
+        int count = Math.min(length, line.length - position);
+        System.arraycopy(line, position, buffer, offset, count);
+        position += count;
+        produced += count;
+        return count;
+    }
+
+    static String productId(int row) {
+        return "P" + (10_000_000 + row);
+    }
+
+    private static String row(int row) {
+        String id = productId(row);
+        int category = row % 40;
+        return id + ",Runner Flex " + row + ",Brand " + (row % 25) + ",CAT-" + category + ",Category " + category +
+               ",\"Footwear for running, jogging and walking.\",SKU" + row + ",Runner Flex " + row + " - Blue," +
+               "https://cdn.example.com/images/sku" + row + ".jpg,\"Runner Flex " + row + " in Blue, rated \"\"great\"\".\"," +
+               "Blue," + (row % 5) + ".5\n";
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.productservice.service;
+
+import com.example.productservice.model.Product;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The line-based CSV parser that CsvTokenizer and CsvBindingPlan replaced, kept as the reference for parity tests.
+ * It splits physical lines, so it only agrees with the tokenizer on feeds without escaped quotes or quoted line breaks.
+ */
+final class LegacyCsvParser {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private LegacyCsvParser() {
+    }
+
+    static List<Product> parse(Reader input, Map<String, String> fieldMapping) throws IOException {
+        List<Product> products = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(input)) {
+            String line;
+            String[] headers = null;
+
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                if (headers == null) {
+                    headers = parseCsvLine(line);
+                    continue;
+                }
+                String[] values = parseCsvLine(line);
+                if (values.length != headers.length) {
+                    continue;
+                }
+                Product product = mapCsvRowToProduct(headers, values, fieldMapping);
+                if (product != null) {
+                    products.add(product);
+                }
+            }
+        }
+
+        return products;
+    }
+
+    static String[] parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        boolean inQuotes = false;
+        StringBuilder currentField = new StringBuilder();
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+
+            if (c == '"') {
+                inQuotes = !inQuotes;
+            } else if (c == ',' && !inQuotes) {
+                fields.add(currentField.toString().trim());
+                currentField = new StringBuilder();
+            } else {
+                currentField.append(c);
+            }
+        }
+
+        fields.add(currentField.toString().trim());
+
+        return fields.toArray(new String[0]);
+    }
+
+    private static Product mapCsvRowToProduct(String[] headers, String[] values, Map<String, String> fieldMapping) {
+        try {
+            Product product = new Product();
+
+            Map<String, String> rowData = new HashMap<>();
+            for (int i = 0; i < headers.length && i < values.length; i++) {
+                rowData.put(headers[i].trim(), values[i].trim());
+            }
+
+            for (Map.Entry<String, String> mapping : fieldMapping.entrySet()) {
+                String value = rowData.get(mapping.getKey());
+                if (value != null && !value.isEmpty()) {
+                    setProductField(product, mapping.getValue(), value);
+                }
+            }
+
+            if (product.getId() == null || product.getId().isEmpty()) {
+                product.setId(UUID.randomUUID().toString());
+            }
+            if (product.getCreatedAt() == null) {
+                product.setCreatedAt(LocalDateTime.now());
+            }
+            if (product.getUpdatedAt() == null) {
+                product.setUpdatedAt(LocalDateTime.now());
+            }
+            if (product.getCurrency() == null || product.getCurrency().isEmpty()) {
+                product.setCurrency("USD");
+            }
+
+            return product;
+
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static void setProductField(Product product, String fieldName, String value) {
+        try {
+            switch (fieldName.toLowerCase()) {
+                case "id":
+                    product.setId(value);
+                    break;
+                case "name":
+                    product.setName(value);
+                    break;
+                case "description":
+                    product.setDescription(value);
+                    break;
+                case "brand":
+                    product.setBrand(value);
+                    break;
+                case "category":
+                    product.setCategory(value);
+                    break;
+                case "price":
+                    product.setPrice(new BigDecimal(value.replaceAll("[^\\d.-]", "")));
+                    break;
+                case "currency":
+                    product.setCurrency(value);
+                    break;
+                case "sku":
+                    product.setSku(value);
+                    break;
+                case "image":
+                    product.setImage(value);
+                    break;
+                case "tags":
+                    product.setTags(Arrays.asList(value.split(";")));
+                    break;
+                case "instock":
+                case "in_stock":
+                case "in-stock":
+                    product.setInStock(Boolean.parseBoolean(value) ||
+                                       value.equalsIgnoreCase("yes") ||
+                                       value.equalsIgnoreCase("y") ||
+                                       value.equals("1"));
+                    break;
+                case "stockquantity":
+                case "stock_quantity":
+                case "stock-quantity":
+                    product.setStockQuantity(Integer.parseInt(value));
+                    break;
+                case "manufacturer":
+                    product.setManufacturer(value);
+                    break;
+                case "model":
+                    product.setModel(value);
+                    break;
+                case "specifications":
+                case "specs":
+                    product.setSpecifications(Arrays.asList(value.split(";")));
+                    break;
+                case "createdat":
+                case "created_at":
+                case "created-at":
+                    product.setCreatedAt(LocalDateTime.parse(value, DATE_FORMATTER));
+                    break;
+                case "updatedat":
+                case "updated_at":
+                case "updated-at":
+                    product.setUpdatedAt(LocalDateTime.parse(value, DATE_FORMATTER));
+                    break;
+                case "color":
+                    product.addCustomAttribute("color", value);
+                    break;
+                case "rating":
+                    try {
+                        product.addCustomAttribute("rating", Double.parseDouble(value));
+                    } catch (NumberFormatException e) {
+                        product.addCustomAttribute("rating", value);
+                    }
+                    break;
+                case "categoryid":
+                case "category_id":
+                    product.addCustomAttribute("categoryId", value);
+                    break;
+                default:
+                    product.addCustomAttribute(fieldName, value);
+                    break;
+            }
+        } catch (Exception e) {
+            // The row keeps the fields that did parse
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.productservice.service;
+
+import com.example.productservice.cache.BoundedCache;
+import com.example.productservice.model.ApparelProduct;
+import com.example.productservice.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Search and lookups over the stored fields of the local catalog
+ */
+class LocalSearchEngineTest {
+
+    private LocalSearchEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new LocalSearchEngine();
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        ReflectionTestUtils.setField(engine, "maxProducts", 3);
+        ReflectionTestUtils.setField(engine, "facetCache", new BoundedCache<>("local-facets", 0, 0, TimeUnit.SECONDS));
+
+        engine.upsertAll(List.of(
+            product("P1", "Runner Flex", "Fabrikam", "49.99"),
+            apparel("A1", "Trail Runner Jacket", "Contoso", "Red", "89.50"),
+            product("P2", "Road Sandal", "Contoso", "19.00")));
+    }
+
+    @Test
+    void returnsDecodedProductsForHitsAndLookups() {
+        List<LocalSearchEngine.Hit> hits = engine.search("runner", 10);
+
+        // The jacket has the shorter description, so it ranks first
+        assertEquals(List.of("A1", "P1"), ids(hits));
+        ApparelProduct jacket = (ApparelProduct) hits.get(0).getProduct();
+        assertEquals("Red", jacket.getColor());
+        assertEquals(new BigDecimal("89.50"), jacket.getPrice());
+
+        assertEquals("Road Sandal", engine.getProduct("P2").getName());
+        assertNotSame(engine.getProduct("P2"), engine.getProduct("P2"));
+        assertNull(engine.getProduct("missing"));
+    }
+
+    @Test
+    void answersColumnLookupsInCatalogOrder() {
+        assertEquals(List.of("A1", "P2"), productIds(engine.findEqual(ColumnarCatalog.Attribute.BRAND, "Contoso", 10)));
+        assertEquals(List.of("A1"), productIds(engine.findEqual(ColumnarCatalog.Attribute.COLOR, "Red", 10)));
+        assertEquals(List.of("P1", "P2"), productIds(engine.findInRange(ColumnarCatalog.Measure.PRICE, 10, 50, 10)));
+    }
+
+    @Test
+    void upsertKeepsPositionAndTakesTheNewFields() {
+        engine.upsertAll(List.of(product("P1", "Runner Flex", "Northwind", "59.99")));
+
+        assertEquals(3, engine.size());
+        assertEquals(List.of("P1", "A1", "P2"), ids(engine.search("*", 10)));
+        assertEquals(List.of("P1"), productIds(engine.findEqual(ColumnarCatalog.Attribute.BRAND, "Northwind", 10)));
+        assertEquals(List.of(), productIds(engine.findEqual(ColumnarCatalog.Attribute.BRAND, "Fabrikam", 10)));
+        assertEquals(new BigDecimal("59.99"), engine.getProduct("P1").getPrice());
+    }
+
+    @Test
+    void replacingUpdateDropsMissingProducts() {
+        LocalSearchEngine.Update update = engine.beginUpdate();
+        update.add(product("P3", "Runner Lite", "Fabrikam", "39.00"));
+        update.commit(true);
+
+        assertEquals(1, engine.size());
+        assertEquals(List.of("P3"), ids(engine.search("runner", 10)));
+        assertNull(engine.getProduct("P1"));
+    }
+
+    @Test
+    void leavesCatalogAloneWhenAnUpdateExceedsTheLimit() {
+        engine.upsertAll(List.of(product("P3", "Runner Lite", "Fabrikam", "39.00")));
+
+        assertEquals(3, engine.size());
+        assertNull(engine.getProduct("P3"));
+    }
+
+    private static Product product(String id, String name, String brand, String price) {
+        Product product = new Product(id, name, "Footwear for running and walking", new BigDecimal(price));
+        product.setBrand(brand);
+        product.setCategory("Footwear");
+        return product;
+    }
+
+    private static ApparelProduct apparel(String id, String title, String brand, String color, String price) {
+        return new ApparelProduct(id, title, brand, color, "M", "Nylon", new BigDecimal(price), "Light rain jacket");
+    }
+
+    private static List<String> ids(List<LocalSearchEngine.Hit> hits) {
+        List<String> ids = new ArrayList<>();
+        for (LocalSearchEngine.Hit hit : hits) {
+            ids.add(hit.getProduct().getId());
+        }
+        return ids;
+    }
+
+    private static List<String> productIds(List<Product> products) {
+        List<String> ids = new ArrayList<>();
+        for (Product product : products) {
+            ids.add(product.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.productservice.service;
+
+import com.example.productservice.model.Product;
+
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Products and search documents built from the sample feeds in datafiles, shared by the mapping tests and benchmarks
+ */
+final class MappingFixtures {
+
+    static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 5, 1, 12, 30, 15);
+
+    private MappingFixtures() {
+    }
+
+    /**
+     * Products of datafiles/product_feed.csv, with the price and dates the feed does not carry
+     */
+    static List<Product> feedProducts() throws Exception {
+        CsvParserService parser = new CsvParserService();
+        List<Product> products = new ArrayList<>();
+        parser.parseCsvStream(Files.newInputStream(Path.of("datafiles/product_feed.csv")),
+            parser.getProductFeedFieldMapping(), products::add);
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            product.setPrice(new BigDecimal("19.99").add(BigDecimal.valueOf(i)));
+            product.setCurrency("USD");
+            product.setCreatedAt(CREATED_AT);
+            product.setUpdatedAt(CREATED_AT);
+            product.setTags(List.of("feed", "row-" + i));
+        }
+        return products;
+    }
+
+    /**
+     * Documents shaped as the apparel index returns them, from datafiles/Sample_Apparel_Dataset__30_rows_.csv
+     */
+    static List<Map<String, Object>> apparelDocuments() throws Exception {
+        List<Map<String, Object>> documents = new ArrayList<>();
+        try (Reader reader = Files.newBufferedReader(Path.of("datafiles/Sample_Apparel_Dataset__30_rows_.csv"), StandardCharsets.UTF_8)) {
+            CsvTokenizer tokenizer = new CsvTokenizer(reader);
+            String[] headers = null;
+            while (tokenizer.nextRecord()) {
+                if (tokenizer.isBlankRecord()) {
+                    continue;
+                }
+                if (headers == null) {
+                    headers = tokenizer.getFields();
+                    continue;
+                }
+                Map<String, Object> document = new HashMap<>();
+                for (int i = 0; i < headers.length; i++) {
+                    String value = tokenizer.getField(i);
+                    boolean numeric = headers[i].equals("price") || headers[i].equals("rating");
+                    document.put(headers[i], numeric ? (Object) Double.valueOf(value) : value);
+                }
+                documents.add(document);
+            }
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.productservice.service;
+
+import com.example.productservice.model.ApparelProduct;
+import com.example.productservice.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Parsing of OData filters, and agreement between testing single products and evaluating on the catalog
+ */
+class ODataFilterCompilerTest {
+
+    private final List<Product> products = new ArrayList<>();
+    private ColumnarCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        add(apparel("A1", "Contoso", "Red", 49.0, 4.5, "Runs small"));
+        add(apparel("A2", "Fabrikam", "Blue", 120.0, null, null));
+        add(apparel("A3", "O'Neill", "Red", 75.0, 3.0, "Warm"));
+        add(apparel("A4", "Contoso Ltd", null, 15.0, 5.0, null));
+        add(apparel("A5", "Fabrikam", "Red", 220.0, 2.0, "Itchy"));
+        Product plain = new Product("P1", "Gift Card", "Store credit", null);
+        plain.setBrand("Contoso");
+        plain.setStockQuantity(3);
+        add(plain);
+
+        ColumnarCatalog.Builder builder = new ColumnarCatalog.Builder();
+        for (Product product : products) {
+            builder.add(product, StoredFields.encode(product));
+        }
+        catalog = builder.build();
+    }
+
+    @Test
+    void bindsNotTighterThanAndAndAndTighterThanOr() {
+        assertMatches("brand eq 'Contoso' or brand eq 'Fabrikam' and color eq 'Red'", "A1", "A5", "P1");
+        assertMatches("brand eq 'Contoso' or (brand eq 'Fabrikam' and color eq 'Red')", "A1", "A5", "P1");
+        assertMatches("(brand eq 'Contoso' or brand eq 'Fabrikam') and color eq 'Red'", "A1", "A5");
+        assertMatches("not brand eq 'Fabrikam' and color eq 'Red'", "A1", "A3");
+        assertMatches("not (brand eq 'Fabrikam' and color eq 'Red')", "A1", "A2", "A3", "A4", "P1");
+        assertMatches("not not color eq 'Blue'", "A2");
+    }
+
+    @Test
+    void splitsSearchInOnSpacesAndCommasUnlessDelimitersAreGiven() {
+        // "Contoso Ltd" is split into two values by default
+        assertMatches("search.in(brand, 'Contoso Ltd, Fabrikam')", "A1", "A2", "A5", "P1");
+        assertMatches("search.in(brand, 'Contoso Ltd|Fabrikam', '|')", "A2", "A4", "A5");
+        assertMatches("search.in(brand, 'Contoso Ltd', '')", "A4");
+        assertMatches("search.in(product_id, 'A1;P1;X9', ';')", "A1", "P1");
+        assertMatches("search.in(color, ',, ,')");
+    }
+
+    @Test
+    void unescapesDoubledQuotes() {
+        assertMatches("brand eq 'O''Neill'", "A3");
+        assertMatches("search.in(brand, 'O''Neill|Fabrikam', '|')", "A2", "A3", "A5");
+        assertMatches("review_text eq 'Runs small' or review_text eq ''''", "A1");
+    }
+
+    @Test
+    void comparesWithNullAsMissing() {
+        assertMatches("color eq null", "A4", "P1");
+        assertMatches("color ne null", "A1", "A2", "A3", "A5");
+        assertMatches("rating eq null", "A2", "P1");
+        assertMatches("rating ne null", "A1", "A3", "A4", "A5");
+        assertMatches("review_text eq null", "A2", "A4", "P1");
+        // A comparison with a missing value is false, except for ne
+        assertMatches("color ne 'Red'", "A2", "A4", "P1");
+        assertMatches("rating lt 3", "A5");
+        assertMatches("price ge 100", "A2", "A5");
+        assertMatches("price le 15 or price eq null", "A4", "P1");
+    }
+
+    @Test
+    void comparesFieldsWithoutAColumn() {
+        assertMatches("stockQuantity gt 0", "P1");
+        assertMatches("product_id ge 'A4' and product_id lt 'B'", "A4", "A5");
+        assertMatches("inStock", "A1", "A2", "A3", "A4", "A5", "P1");
+        assertMatches("not inStock");
+    }
+
+    @Test
+    void rejectsMalformedFilters() {
+        for (String filter : List.of("brand eq", "brand eq 'Contoso", "(brand eq 'Contoso'", "brand eq 'a' 'b'",
+                                     "price eq 'cheap'", "brand eq 5", "geo.distance(location, 1) lt 5",
+                                     "search.in(brand)", "brand eq 'a' & color eq 'b'")) {
+            IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> ODataFilterCompiler.parse(filter));
+            assertTrue(error.getMessage().startsWith("Invalid OData filter '" + filter + "'"), error.getMessage());
+        }
+    }
+
+    /**
+     * Check the products a filter selects, both from the catalog and product by product
+     */
+    private void assertMatches(String filter, String... expectedIds) {
+        ODataFilter compiled = ODataFilterCompiler.parse(filter);
+
+        List<String> tested = new ArrayList<>();
+        for (Product product : products) {
+            if (compiled.test(product)) {
+                tested.add(product.getId());
+            }
+        }
+        List<String> evaluated = new ArrayList<>();
+        compiled.evaluate(catalog).forEach(doc -> evaluated.add(products.get(doc).getId()));
+
+        assertEquals(List.of(expectedIds), tested, filter);
+        assertEquals(tested, evaluated, filter);
+    }
+
+    private void add(Product product) {
+        products.add(product);
+    }
+
+    private static ApparelProduct apparel(String id, String brand, String color, double price, Double rating, String reviewText) {
+        return new ApparelProduct(id, "Jacket " + id, brand, color, "M", "Nylon",
+                                  BigDecimal.valueOf(price), rating, "Jacket", reviewText);
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.productservice.service;
+
+import com.azure.search.documents.models.IndexAction;
+import com.example.productservice.cache.SearchCacheManager;
+import com.example.productservice.model.IngestionResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Streaming a generated feed through parse, grouping, mapping and the index writer into a stub sink.
+ *
+ * The multi-GB run is tagged "large" and only runs with the large-tests Maven
+ * profile (mvn test -P dev,large-tests), which gives it a 256 MB heap; its
+ * feed defaults to 4 GB and can be sized with -Dingest.test.feed-mb.
+ */
+class ProductIngestionServiceTest {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int PARALLELISM = 2;
+
+    /** Generated rows that fit in the stream and tokenizer buffers of the parser */
+    private static final int READ_BUFFER_ROWS = 256 * 1024 / 200;
+
+    private final ProductIngestionService ingestionService = new ProductIngestionService();
+    private final CsvParserService csvParserService = new CsvParserService();
+    private final SearchIndexWriter searchIndexWriter = new SearchIndexWriter();
+
+    private final AtomicLong documentsSent = new AtomicLong();
+    private final AtomicLong documentsAcknowledged = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(searchIndexWriter, "keyField", "product_id");
+        ReflectionTestUtils.setField(searchIndexWriter, "maxBatchDocuments", BATCH_SIZE);
+        ReflectionTestUtils.setField(searchIndexWriter, "maxBatchBytes", 8L * 1024 * 1024);
+        ReflectionTestUtils.setField(searchIndexWriter, "parallelism", PARALLELISM);
+        ReflectionTestUtils.setField(searchIndexWriter, "maxRetries", 3);
+        ReflectionTestUtils.setField(searchIndexWriter, "retryBackoffMillis", 20L);
+        ReflectionTestUtils.setField(searchIndexWriter, "minBatchDocuments", 1);
+        ReflectionTestUtils.setField(searchIndexWriter, "targetLatencyMillis", 5000L);
+        searchIndexWriter.start();
+
+        ReflectionTestUtils.setField(csvParserService, "chunkSizeBytes", 8L * 1024 * 1024);
+        ReflectionTestUtils.setField(csvParserService, "maxInFlightBytes", 32L * 1024 * 1024);
+
+        VariantGroupingService variantGroupingService = new VariantGroupingService();
+        ReflectionTestUtils.setField(variantGroupingService, "mode", "sorted");
+
+        // Delta ingestion and the local catalog are off, so every row is sent and nothing is kept
+        ProductService productService = new ProductService();
+        ReflectionTestUtils.setField(productService, "searchCacheManager", new SearchCacheManager());
+        ReflectionTestUtils.invokeMethod(productService, "initCaches");
+
+        ReflectionTestUtils.setField(ingestionService, "csvParserService", csvParserService);
+        ReflectionTestUtils.setField(ingestionService, "documentMappingService", new DocumentMappingService());
+        ReflectionTestUtils.setField(ingestionService, "searchIndexWriter", searchIndexWriter);
+        ReflectionTestUtils.setField(ingestionService, "productService", productService);
+        ReflectionTestUtils.setField(ingestionService, "fingerprintStore", new FingerprintStore());
+        ReflectionTestUtils.setField(ingestionService, "variantGroupingService", variantGroupingService);
+        ReflectionTestUtils.setField(ingestionService, "localSearchEngine", new LocalSearchEngine());
+        ReflectionTestUtils.setField(ingestionService, "keyField", "product_id");
+        ReflectionTestUtils.setField(ingestionService, "parallelThresholdBytes", Long.MAX_VALUE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        searchIndexWriter.stop();
+    }
+
+    @Test
+    void indexesEveryRowOfAStreamedUpload() throws Exception {
+        GeneratedFeed feed = new GeneratedFeed(2L * 1024 * 1024);
+        List<String> keys = new ArrayList<>();
+        long[] maxReadAhead = new long[1];
+        sendTo(actions -> {
+            synchronized (keys) {
+                for (IndexAction<Map<String, Object>> action : actions) {
+                    keys.add(String.valueOf(action.getDocument().get("product_id")));
+                }
+                maxReadAhead[0] = Math.max(maxReadAhead[0], feed.getRows() - documentsAcknowledged.get());
+            }
+            sleep(1);
+            return null;
+        });
+
+        IngestionResult result = ingestionService.ingestCsvUpload(upload(feed), csvParserService.getProductFeedFieldMapping(), false);
+
+        assertEquals(feed.getRows(), result.getRowsParsed());
+        assertEquals(0, result.getRowsSkipped());
+        assertEquals(feed.getRows(), result.getProducts());
+        assertEquals(feed.getRows(), result.getIndexing().getDocumentsIndexed());
+        assertEquals(0, result.getIndexing().getDocumentsFailed());
+        assertEquals(feed.getRows(), keys.size());
+        assertEquals(GeneratedFeed.productId(0), keys.get(0));
+
+        // The writer holds back the parser, which only reads ahead by the batches in flight, the one
+        // being filled and what fits in its read buffers
+        assertTrue(maxReadAhead[0] <= (PARALLELISM + 1) * BATCH_SIZE + READ_BUFFER_ROWS,
+                   maxReadAhead[0] + " rows read ahead of the index");
+    }
+
+    @Test
+    @Tag("large")
+    void streamsMultiGigabyteUploadInBoundedHeap() throws Exception {
+        List<WeakReference<Map<String, Object>>> sampled = new ArrayList<>();
+        sendTo(actions -> {
+            if (documentsSent.get() % 100_000 < actions.size()) {
+                synchronized (sampled) {
+                    sampled.add(new WeakReference<>(actions.get(0).getDocument()));
+                }
+            }
+            return null;
+        });
+
+        GeneratedFeed feed = new GeneratedFeed(Long.getLong("ingest.test.feed-mb", 4096) * 1024 * 1024);
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        assertTrue(maxHeap < feed.getBytes() / 4, "heap of " + maxHeap + " bytes is too large to show streaming");
+
+        IngestionResult result = ingestionService.ingestCsvUpload(upload(feed), csvParserService.getProductFeedFieldMapping(), false);
+
+        assertEquals(feed.getRows(), result.getRowsParsed());
+        assertEquals(feed.getRows(), result.getIndexing().getDocumentsIndexed());
+        assertEquals(0, result.getIndexing().getDocumentsFailed());
+
+        // No document handed to the sink may still be reachable from the pipeline
+        System.gc();
+        for (WeakReference<Map<String, Object>> reference : sampled) {
+            assertNull(reference.get(), "pipeline retained a document");
+        }
+    }
+
+    /**
+     * Send batches to a sink that acknowledges every document after the given hook has seen the batch
+     */
+    private void sendTo(IndexBatchSink hook) {
+        ReflectionTestUtils.setField(searchIndexWriter, "sink", (IndexBatchSink) actions -> {
+            documentsSent.addAndGet(actions.size());
+            hook.send(actions);
+            List<IndexBatchSink.DocumentResult> results = new ArrayList<>(actions.size());
+            for (IndexAction<Map<String, Object>> action : actions) {
+                results.add(new IndexBatchSink.DocumentResult(String.valueOf(action.getDocument().get("product_id")),
+                                                              true, 200, null));
+            }
+            documentsAcknowledged.addAndGet(actions.size());
+            return new IndexBatchSink.BatchResult(results, -1);
+        });
+    }
+
+    /**
+     * An upload whose content can only be streamed, so spooling it to disk or into memory fails the test
+     */
+    private static MultipartFile upload(GeneratedFeed feed) {
+        return new MultipartFile() {
+            @Override
+            public String getName() {
+                return "file";
+            }
+
+            @Override
+            public String getOriginalFilename() {
+                return "product_feed.csv";
+            }
+
+            @Override
+            public String getContentType() {
+                return "text/csv";
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return false;
+            }
+
+            @Override
+            public long getSize() {
+                return feed.getBytes();
+            }
+
+            @Override
+            public byte[] getBytes() {
+                throw new UnsupportedOperationException("upload was read into memory");
+            }
+
+            @Override
+            public InputStream getInputStream() {
+                return feed;
+            }
+
+            @Override
+            public void transferTo(File dest) {
+                throw new UnsupportedOperationException("upload was spooled to " + dest);
+            }
+        };
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
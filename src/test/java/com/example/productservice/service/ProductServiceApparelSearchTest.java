@@ -0,0 +1,240 @@
+package com.example.productservice.service;
+
+import com.azure.core.http.HttpHeaders;
+import com.azure.core.http.rest.SimpleResponse;
+import com.azure.search.documents.SearchClient;
+import com.azure.search.documents.models.SearchOptions;
+import com.azure.search.documents.models.SearchResult;
+import com.azure.search.documents.util.SearchPagedIterable;
+import com.azure.search.documents.util.SearchPagedResponse;
+import com.example.productservice.cache.SearchCacheManager;
+import com.example.productservice.model.ApparelSemanticSearchRequest;
+import com.example.productservice.model.ApparelSemanticSearchResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Apparel semantic search against a stand-in search client, whose paged results count every page fetched
+ */
+class ProductServiceApparelSearchTest {
+
+    private ProductService productService;
+    private SearchCacheManager searchCacheManager;
+    private SearchClient apparelSearchClient;
+
+    /** Results per page of the stand-in index */
+    private static final int PAGE_SIZE = 5;
+
+    /** Number of pages fetched from the stand-in index, first pages included */
+    private final AtomicInteger pageFetches = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        searchCacheManager = new SearchCacheManager();
+        apparelSearchClient = mock(SearchClient.class);
+
+        productService = new ProductService();
+        ReflectionTestUtils.setField(productService, "apparelSearchClient", apparelSearchClient);
+        ReflectionTestUtils.setField(productService, "searchCacheManager", searchCacheManager);
+        ReflectionTestUtils.setField(productService, "localSearchEngine", mock(LocalSearchEngine.class));
+        ReflectionTestUtils.setField(productService, "searchCacheMaxEntries", 100L);
+        ReflectionTestUtils.setField(productService, "searchCacheTtlSeconds", 60L);
+        ReflectionTestUtils.setField(productService, "semanticCacheMaxWeight", 1000L);
+        ReflectionTestUtils.setField(productService, "semanticCacheTtlSeconds", 60L);
+        ReflectionTestUtils.setField(productService, "productCacheMaxEntries", 100L);
+        ReflectionTestUtils.setField(productService, "productCacheTtlSeconds", 60L);
+        ReflectionTestUtils.setField(productService, "missingProductCacheMaxEntries", 100L);
+        ReflectionTestUtils.setField(productService, "missingProductCacheTtlSeconds", 60L);
+        ReflectionTestUtils.setField(productService, "coalesceTimeoutMillis", 10_000L);
+        productService.initCaches();
+    }
+
+    @Test
+    void fetchesEachPageOnce() {
+        List<SearchResult> hits = searchResults(12);
+        SearchPagedIterable pages = pagedResults(hits, 40L);
+        when(apparelSearchClient.search(anyString(), any(SearchOptions.class), any())).thenReturn(pages);
+
+        ApparelSemanticSearchResponse response = productService.performApparelSemanticSearch(request("linen shirt"));
+
+        // Three pages of 5, 5 and 2; the total comes with the first page, so it costs no further fetch
+        assertEquals(3, pageFetches.get(), "each page must be fetched exactly once");
+        assertEquals(12, response.getResults().size());
+        assertEquals(40, response.getTotalResults().longValue());
+        for (int i = 0; i < hits.size(); i++) {
+            assertEquals("P" + i, response.getResults().get(i).getProductId());
+        }
+    }
+
+    @Test
+    void countsReturnedResultsWhenTheIndexReportsNoTotal() {
+        when(apparelSearchClient.search(anyString(), any(SearchOptions.class), any()))
+            .thenReturn(pagedResults(searchResults(7), null));
+
+        ApparelSemanticSearchResponse response = productService.performApparelSemanticSearch(request("linen shirt"));
+
+        assertEquals(2, pageFetches.get());
+        assertEquals(7, response.getTotalResults().longValue());
+        assertNull(response.getFacets());
+    }
+
+    @Test
+    void decodesEachDocumentOnce() {
+        List<SearchResult> hits = searchResults(5);
+        SearchPagedIterable pages = pagedResults(hits, 5L);
+        when(apparelSearchClient.search(anyString(), any(SearchOptions.class), any())).thenReturn(pages);
+
+        ApparelSemanticSearchResponse response = productService.performApparelSemanticSearch(request("linen shirt"));
+
+        for (SearchResult hit : hits) {
+            verify(hit, times(1)).getDocument(Map.class);
+        }
+        ApparelSemanticSearchResponse.ApparelSearchResult result = response.getResults().get(2);
+        assertEquals("P2", result.getProductId());
+        assertEquals("Product 2", result.getTitle());
+        assertEquals("Contoso", result.getBrand());
+        assertEquals("Blue", result.getColor());
+        assertEquals("M", result.getSize());
+        assertEquals("Linen", result.getMaterial());
+        assertEquals(12.0, result.getPrice(), 0.0);
+        assertEquals(4.5, result.getRating(), 0.0);
+        assertEquals(0.98, result.getScore(), 1e-9);
+        assertEquals(List.of("summer", "linen"), result.getKeyPhrases());
+        assertEquals(List.of(), result.getEntities());
+        assertNull(result.getDescription());
+        assertNull(result.getReviewPositiveScore());
+    }
+
+    @Test
+    void servesRepeatedSearchFromCacheUntilInvalidated() {
+        when(apparelSearchClient.search(anyString(), any(SearchOptions.class), any()))
+            .thenAnswer(invocation -> pagedResults(searchResults(3), 3L));
+
+        ApparelSemanticSearchResponse first = productService.performApparelSemanticSearch(request("wool coat"));
+        ApparelSemanticSearchResponse second = productService.performApparelSemanticSearch(request("wool coat"));
+
+        verify(apparelSearchClient, times(1)).search(anyString(), any(SearchOptions.class), any());
+        assertEquals(3, first.getResults().size());
+        assertEquals(3, second.getResults().size());
+
+        // Callers get copies, so altering one response leaves the cached entry intact
+        second.getResults().clear();
+        assertEquals(3, productService.performApparelSemanticSearch(request("wool coat")).getResults().size());
+
+        searchCacheManager.invalidateAll();
+        productService.performApparelSemanticSearch(request("wool coat"));
+        verify(apparelSearchClient, times(2)).search(anyString(), any(SearchOptions.class), any());
+    }
+
+    @Test
+    void coalescesConcurrentIdenticalSearches() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(apparelSearchClient.search(anyString(), any(SearchOptions.class), any())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return pagedResults(searchResults(4), 4L);
+        });
+
+        int callers = 6;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<ApparelSemanticSearchResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                responses.add(executor.submit(() -> productService.performApparelSemanticSearch(request("denim jacket"))));
+            }
+
+            // Hold the leader's remote call until every other caller has joined it
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (coalescedSemanticSearches() < callers - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<ApparelSemanticSearchResponse> response : responses) {
+                assertEquals(4, response.get(10, TimeUnit.SECONDS).getResults().size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(callers - 1, coalescedSemanticSearches());
+        verify(apparelSearchClient, times(1)).search(anyString(), any(SearchOptions.class), any());
+        assertEquals(1, pageFetches.get());
+    }
+
+    private long coalescedSemanticSearches() {
+        for (Map<String, Object> stats : searchCacheManager.getFlightStats()) {
+            if ("semantic-search".equals(stats.get("name"))) {
+                return (Long) stats.get("coalesced");
+            }
+        }
+        throw new AssertionError("semantic-search coalescer is not registered");
+    }
+
+    private static ApparelSemanticSearchRequest request(String search) {
+        ApparelSemanticSearchRequest request = new ApparelSemanticSearchRequest(search);
+        request.setTop(50);
+        return request;
+    }
+
+    /**
+     * Paged results built the way the search client builds them, from retrievers of the first and later pages,
+     * that count every page fetched
+     *
+     * @param totalCount Total reported with the first page, or null as when the count was not requested
+     */
+    private SearchPagedIterable pagedResults(List<SearchResult> hits, Long totalCount) {
+        return new SearchPagedIterable(() -> page(hits, 0, totalCount),
+                                       continuationToken -> page(hits, Integer.parseInt(continuationToken), null));
+    }
+
+    private SearchPagedResponse page(List<SearchResult> hits, int from, Long totalCount) {
+        pageFetches.incrementAndGet();
+        int to = Math.min(hits.size(), from + PAGE_SIZE);
+        String continuationToken = to < hits.size() ? String.valueOf(to) : null;
+        return new SearchPagedResponse(new SimpleResponse<>(null, 200, new HttpHeaders(), hits.subList(from, to)),
+                                       continuationToken, new HashMap<>(), totalCount, null);
+    }
+
+    static List<SearchResult> searchResults(int count) {
+        List<SearchResult> hits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> document = new HashMap<>();
+            document.put("product_id", "P" + i);
+            document.put("title", "Product " + i);
+            document.put("brand", "Contoso");
+            document.put("color", "Blue");
+            document.put("size", "M");
+            document.put("material", "Linen");
+            document.put("price", 10.0 + i);
+            document.put("rating", 4.5);
+            document.put("keyPhrases", List.of("summer", "linen"));
+
+            SearchResult hit = mock(SearchResult.class);
+            when(hit.getDocument(Map.class)).thenReturn(document);
+            when(hit.getScore()).thenReturn(1.0 - i / 100.0);
+            hits.add(hit);
+        }
+        return hits;
+    }
+}
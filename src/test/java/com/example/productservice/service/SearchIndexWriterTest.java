@@ -0,0 +1,316 @@
+package com.example.productservice.service;
+
+import com.azure.search.documents.models.IndexAction;
+import com.example.productservice.model.IndexingReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Batching, retries and backpressure of the index writer against scripted batch sinks
+ */
+class SearchIndexWriterTest {
+
+    private static final int BATCH_SIZE = 10;
+    private static final int PARALLELISM = 2;
+    private static final int MAX_RETRIES = 3;
+    private static final long RETRY_BACKOFF_MILLIS = 20;
+
+    private SearchIndexWriter writer;
+
+    /** Keys of every batch the sink received, in arrival order */
+    private final List<List<String>> sentBatches = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void boundsDocumentsInFlight() {
+        AtomicLong uploaded = new AtomicLong();
+        AtomicLong acknowledged = new AtomicLong();
+        writer = writer(actions -> {
+            sleep(2);
+            acknowledged.addAndGet(actions.size());
+            return succeeded(actions);
+        });
+
+        // The producer blocks once every slot is busy, so at most one batch waits beside those in flight
+        long maxOutstanding = 0;
+        SearchIndexWriter.IndexingSession session = writer.openSession();
+        for (int i = 0; i < 1000; i++) {
+            uploaded.incrementAndGet();
+            session.upload(document(i));
+            maxOutstanding = Math.max(maxOutstanding, uploaded.get() - acknowledged.get());
+        }
+        IndexingReport report = session.finish();
+
+        assertEquals(1000, report.getDocumentsIndexed());
+        assertTrue(maxOutstanding <= (PARALLELISM + 1) * BATCH_SIZE + 1, maxOutstanding + " documents outstanding");
+        for (List<String> batch : sentBatches) {
+            assertTrue(batch.size() <= BATCH_SIZE);
+        }
+    }
+
+    @Test
+    void retriesOnlyFailedKeys() {
+        Map<String, Integer> attempts = new HashMap<>();
+        writer = writer(actions -> {
+            List<IndexBatchSink.DocumentResult> results = new ArrayList<>();
+            for (String key : keys(actions)) {
+                int attempt;
+                synchronized (attempts) {
+                    attempt = attempts.merge(key, 1, Integer::sum);
+                }
+                boolean busy = key.endsWith("3") && attempt == 1;
+                results.add(new IndexBatchSink.DocumentResult(key, !busy, busy ? 503 : 200, busy ? "busy" : null));
+            }
+            return new IndexBatchSink.BatchResult(results, -1);
+        });
+
+        IndexingReport report = index(20);
+
+        assertEquals(20, report.getDocumentsIndexed());
+        assertEquals(0, report.getDocumentsFailed());
+        assertEquals(2, report.getRetries());
+        assertTrue(sentBatches.contains(List.of("P3")), sentBatches.toString());
+        assertTrue(sentBatches.contains(List.of("P13")), sentBatches.toString());
+        assertEquals(4, sentBatches.size());
+    }
+
+    @Test
+    void backsOffExponentiallyBetweenRetries() {
+        List<Long> sentAt = Collections.synchronizedList(new ArrayList<>());
+        writer = writer(actions -> {
+            sentAt.add(System.nanoTime());
+            if (sentAt.size() <= MAX_RETRIES) {
+                throw new IndexBatchSink.BatchRejectedException(503, -1, "Service unavailable", null);
+            }
+            return succeeded(actions);
+        });
+
+        IndexingReport report = index(1);
+
+        assertEquals(1, report.getDocumentsIndexed());
+        assertEquals(MAX_RETRIES, report.getRetries());
+        assertEquals(MAX_RETRIES, report.getThrottledBatches());
+        for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(sentAt.get(attempt + 1) - sentAt.get(attempt));
+            long backoff = RETRY_BACKOFF_MILLIS << attempt;
+            assertTrue(waitedMillis >= backoff, "retry " + attempt + " waited " + waitedMillis + "ms, expected " + backoff);
+        }
+    }
+
+    @Test
+    void waitsForRetryAfterHint() {
+        List<Long> sentAt = Collections.synchronizedList(new ArrayList<>());
+        writer = writer(actions -> {
+            sentAt.add(System.nanoTime());
+            if (sentAt.size() == 1) {
+                throw new IndexBatchSink.BatchRejectedException(429, 300, "Too many requests", null);
+            }
+            return succeeded(actions);
+        });
+
+        IndexingReport report = index(1);
+
+        assertEquals(1, report.getDocumentsIndexed());
+        assertEquals(2, sentAt.size());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(sentAt.get(1) - sentAt.get(0)) >= 300);
+    }
+
+    @Test
+    void failsKeysThatExhaustRetries() {
+        writer = writer(actions -> {
+            List<IndexBatchSink.DocumentResult> results = new ArrayList<>();
+            for (String key : keys(actions)) {
+                boolean busy = key.equals("P1");
+                results.add(new IndexBatchSink.DocumentResult(key, !busy, busy ? 503 : 200, busy ? "busy" : null));
+            }
+            return new IndexBatchSink.BatchResult(results, -1);
+        });
+
+        IndexingReport report = index(5);
+
+        assertEquals(4, report.getDocumentsIndexed());
+        assertEquals(1, report.getDocumentsFailed());
+        assertEquals(List.of("P1"), report.getFailedKeys());
+        assertEquals(1 + MAX_RETRIES, sentBatches.size());
+    }
+
+    @Test
+    void rejectsNonRetriableDocumentsWithoutRetrying() {
+        writer = writer(actions -> {
+            List<IndexBatchSink.DocumentResult> results = new ArrayList<>();
+            for (String key : keys(actions)) {
+                boolean invalid = key.equals("P2");
+                results.add(new IndexBatchSink.DocumentResult(key, !invalid, invalid ? 400 : 200, invalid ? "bad field" : null));
+            }
+            return new IndexBatchSink.BatchResult(results, -1);
+        });
+
+        IndexingReport report = index(5);
+
+        assertEquals(4, report.getDocumentsIndexed());
+        assertEquals(1, report.getDocumentsFailed());
+        assertEquals(0, report.getRetries());
+        assertEquals(1, sentBatches.size());
+    }
+
+    @Test
+    void splitsBatchesThatAreTooLarge() {
+        writer = writer(actions -> {
+            if (actions.size() > 3) {
+                throw new IndexBatchSink.BatchRejectedException(413, -1, "Request entity too large", null);
+            }
+            return succeeded(actions);
+        });
+
+        IndexingReport report = index(BATCH_SIZE);
+
+        assertEquals(BATCH_SIZE, report.getDocumentsIndexed());
+        assertEquals(0, report.getDocumentsFailed());
+        for (List<String> batch : sentBatches.subList(1, sentBatches.size())) {
+            assertTrue(batch.size() < BATCH_SIZE);
+        }
+    }
+
+    @Test
+    void backsOffOnThrottlingAndRecoversAgainstTheSimulator() {
+        writer = new SearchIndexWriter();
+        ReflectionTestUtils.setField(writer, "keyField", "product_id");
+        ReflectionTestUtils.setField(writer, "maxBatchBytes", 8L * 1024 * 1024);
+        ReflectionTestUtils.setField(writer, "maxRetries", 20);
+        ReflectionTestUtils.setField(writer, "retryBackoffMillis", RETRY_BACKOFF_MILLIS);
+        ReflectionTestUtils.setField(writer, "adaptiveEnabled", true);
+        ReflectionTestUtils.setField(writer, "initialBatchDocuments", 200);
+        ReflectionTestUtils.setField(writer, "minBatchDocuments", 10);
+        ReflectionTestUtils.setField(writer, "maxBatchDocuments", 500);
+        ReflectionTestUtils.setField(writer, "batchDocumentsStep", 50);
+        ReflectionTestUtils.setField(writer, "parallelism", 4);
+        ReflectionTestUtils.setField(writer, "initialConcurrency", 4);
+        ReflectionTestUtils.setField(writer, "decreaseFactor", 0.5);
+        ReflectionTestUtils.setField(writer, "targetLatencyMillis", 5000L);
+        ReflectionTestUtils.setField(writer, "failureRateThreshold", 0.1);
+        // A service that takes one batch at a time and 1000 documents per second
+        ReflectionTestUtils.setField(writer, "simulatorEnabled", true);
+        ReflectionTestUtils.setField(writer, "simulatorCapacity", 1000.0);
+        ReflectionTestUtils.setField(writer, "simulatorMaxConcurrentBatches", 1);
+        ReflectionTestUtils.setField(writer, "simulatorBaseLatencyMillis", 1.0);
+        ReflectionTestUtils.setField(writer, "simulatorLatencyMillisPerDocument", 0.01);
+        ReflectionTestUtils.setField(writer, "simulatorDocumentFailureRate", 0.0);
+        writer.start();
+
+        AdaptiveBatchController controller = (AdaptiveBatchController) ReflectionTestUtils.getField(writer, "controller");
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> concurrencies = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> rejections = Collections.synchronizedList(new ArrayList<>());
+        IndexBatchSink simulator = (IndexBatchSink) ReflectionTestUtils.getField(writer, "sink");
+        ReflectionTestUtils.setField(writer, "sink", (IndexBatchSink) actions -> {
+            batchSizes.add(actions.size());
+            concurrencies.add(controller.getConcurrency());
+            try {
+                return simulator.send(actions);
+            } catch (IndexBatchSink.BatchRejectedException e) {
+                rejections.add(e.getStatusCode());
+                throw e;
+            }
+        });
+
+        IndexingReport throttledRun = index(3000);
+
+        assertEquals(3000, throttledRun.getDocumentsIndexed());
+        assertEquals(0, throttledRun.getDocumentsFailed());
+        assertTrue(throttledRun.getThrottledBatches() > 0);
+        assertTrue(rejections.contains(429), "concurrency limit " + rejections);
+        assertTrue(rejections.contains(503), "capacity limit " + rejections);
+        assertTrue(Collections.min(batchSizes) < 200, "batch size " + batchSizes);
+        assertTrue(Collections.min(concurrencies) < 4, "concurrency " + concurrencies);
+
+        // Once the service has room again, batch size and then concurrency grow back to their maximum
+        ReflectionTestUtils.setField(writer, "sink",
+                                     new SimulatedIndexBatchSink("product_id", 1_000_000, 10, 0, 0, 0));
+        IndexingReport recoveredRun = index(20000);
+
+        assertEquals(20000, recoveredRun.getDocumentsIndexed());
+        assertEquals(0, recoveredRun.getThrottledBatches());
+        assertEquals(500, recoveredRun.getBatchSize());
+        assertEquals(4, recoveredRun.getConcurrency());
+    }
+
+    private IndexingReport index(int documents) {
+        SearchIndexWriter.IndexingSession session = writer.openSession();
+        for (int i = 0; i < documents; i++) {
+            session.upload(document(i));
+        }
+        return session.finish();
+    }
+
+    /**
+     * A writer with fixed batch size and concurrency that sends to the given sink
+     */
+    private SearchIndexWriter writer(IndexBatchSink sink) {
+        SearchIndexWriter writer = new SearchIndexWriter();
+        ReflectionTestUtils.setField(writer, "keyField", "product_id");
+        ReflectionTestUtils.setField(writer, "maxBatchDocuments", BATCH_SIZE);
+        ReflectionTestUtils.setField(writer, "maxBatchBytes", 8L * 1024 * 1024);
+        ReflectionTestUtils.setField(writer, "parallelism", PARALLELISM);
+        ReflectionTestUtils.setField(writer, "maxRetries", MAX_RETRIES);
+        ReflectionTestUtils.setField(writer, "retryBackoffMillis", RETRY_BACKOFF_MILLIS);
+        ReflectionTestUtils.setField(writer, "adaptiveEnabled", false);
+        ReflectionTestUtils.setField(writer, "minBatchDocuments", 1);
+        ReflectionTestUtils.setField(writer, "targetLatencyMillis", 5000L);
+        writer.start();
+
+        ReflectionTestUtils.setField(writer, "sink", (IndexBatchSink) actions -> {
+            sentBatches.add(keys(actions));
+            return sink.send(actions);
+        });
+        return writer;
+    }
+
+    private static Map<String, Object> document(int i) {
+        Map<String, Object> document = new HashMap<>();
+        document.put("product_id", "P" + i);
+        document.put("product_name", "Product " + i);
+        return document;
+    }
+
+    private static List<String> keys(List<IndexAction<Map<String, Object>>> actions) {
+        List<String> keys = new ArrayList<>(actions.size());
+        for (IndexAction<Map<String, Object>> action : actions) {
+            keys.add(String.valueOf(action.getDocument().get("product_id")));
+        }
+        return keys;
+    }
+
+    private static IndexBatchSink.BatchResult succeeded(List<IndexAction<Map<String, Object>>> actions) {
+        List<IndexBatchSink.DocumentResult> results = new ArrayList<>();
+        for (String key : keys(actions)) {
+            results.add(new IndexBatchSink.DocumentResult(key, true, 200, null));
+        }
+        return new IndexBatchSink.BatchResult(results, -1);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
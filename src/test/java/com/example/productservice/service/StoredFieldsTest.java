@@ -0,0 +1,123 @@
+package com.example.productservice.service;
+
+import com.example.productservice.model.ApparelProduct;
+import com.example.productservice.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trip of products through the stored fields the local catalog keeps
+ */
+class StoredFieldsTest {
+
+    @Test
+    void restoresEveryProductField() {
+        Product product = new Product("P1", "Runner Flex", "Footwear for running, \"jogging\" and walking", new BigDecimal("1299.990"));
+        product.setBrand("Fabrikam");
+        product.setCategory("Footwear");
+        product.setCurrency("EUR");
+        product.setSku("SKU1");
+        product.setImage("https://cdn.example.com/images/sku1.jpg");
+        product.setTags(Arrays.asList("run", null, "trail"));
+        product.setCreatedAt(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_000_000));
+        product.setUpdatedAt(LocalDateTime.of(2024, 2, 29, 10, 15));
+        product.setInStock(false);
+        product.setStockQuantity(-3);
+        product.setManufacturer("Fabrikam Ltd");
+        product.setModel("RF-1");
+        product.setSpecifications(List.of());
+
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("color", "Blue");
+        attributes.put("rating", 4.5);
+        attributes.put("reviews", 120);
+        attributes.put("views", 5_000_000_000L);
+        attributes.put("featured", true);
+        attributes.put("weight", new BigDecimal("0.85"));
+        attributes.put("sizes", List.of("42", 43, List.of()));
+        attributes.put("dimensions", Map.of("length", 30));
+        attributes.put("discontinued", null);
+        attributes.put("season", new StringBuilder("winter"));
+        product.setCustomAttributes(attributes);
+
+        Product decoded = StoredFields.decode(StoredFields.encode(product));
+
+        assertEquals(Product.class, decoded.getClass());
+        assertEquals(describe(product), describe(decoded));
+        assertEquals(new BigDecimal("1299.990"), decoded.getPrice());
+        assertEquals(5_000_000_000L, decoded.getCustomAttributes().get("views"));
+        assertEquals(120, decoded.getCustomAttributes().get("reviews"));
+        assertEquals("winter", decoded.getCustomAttributes().get("season"));
+        assertTrue(decoded.getCustomAttributes().containsKey("discontinued"));
+    }
+
+    @Test
+    void restoresApparelFieldsAndKeepsNameApartFromTitle() {
+        ApparelProduct product = new ApparelProduct("A1", "Trail Jacket", "Contoso", "Red", "M", "Nylon",
+                                                    new BigDecimal("89.5"), 4.2, "Light rain jacket", "Great fit");
+        product.setName("Trail Jacket - Red");
+
+        Product decoded = StoredFields.decode(StoredFields.encode(product));
+
+        ApparelProduct apparel = (ApparelProduct) decoded;
+        assertEquals("Trail Jacket", apparel.getTitle());
+        assertEquals("Trail Jacket - Red", apparel.getName());
+        assertEquals("Contoso", apparel.getBrand());
+        assertEquals("Red", apparel.getColor());
+        assertEquals("M", apparel.getSize());
+        assertEquals("Nylon", apparel.getMaterial());
+        assertEquals(new BigDecimal("89.5"), apparel.getPrice());
+        assertEquals(4.2, apparel.getRating());
+        assertEquals("Light rain jacket", apparel.getDescription());
+        assertEquals("Great fit", apparel.getReviewText());
+        assertEquals("ApparelProduct", apparel.getType());
+    }
+
+    @Test
+    void restoresMissingValuesAndCustomContext() {
+        Product product = new Product();
+        product.setContext("urn:example:catalog");
+        product.setType("Bundle");
+        product.setCustomAttributes(null);
+
+        Product decoded = StoredFields.decode(StoredFields.encode(product));
+
+        assertEquals(describe(product), describe(decoded));
+        assertEquals("urn:example:catalog", decoded.getContext());
+        assertEquals("Bundle", decoded.getType());
+        assertNull(decoded.getId());
+        assertNull(decoded.getPrice());
+        assertNull(decoded.getCreatedAt());
+    }
+
+    @Test
+    void decodesANewInstanceEveryTime() {
+        byte[] stored = StoredFields.encode(new Product("P1", "Runner", null, BigDecimal.ONE));
+
+        Product first = StoredFields.decode(stored);
+        first.setName("changed");
+
+        assertNotSame(first, StoredFields.decode(stored));
+        assertEquals("Runner", StoredFields.decode(stored).getName());
+    }
+
+    private static String describe(Product product) {
+        return product.getContext() + "|" + product.getType() + "|" + product.getId() + "|" + product.getName() + "|" +
+               product.getDescription() + "|" + product.getBrand() + "|" + product.getCategory() + "|" +
+               product.getPrice() + "|" + product.getCurrency() + "|" + product.getSku() + "|" + product.getImage() + "|" +
+               product.getTags() + "|" + product.getCreatedAt() + "|" + product.getUpdatedAt() + "|" +
+               product.isInStock() + "|" + product.getStockQuantity() + "|" + product.getManufacturer() + "|" +
+               product.getModel() + "|" + product.getSpecifications() + "|" + product.getCustomAttributes();
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.productservice.service;
+
+import com.example.productservice.model.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Grouping of SKU rows into parent products in sorted and spill mode
+ */
+class VariantGroupingServiceTest {
+
+    private Path workDir;
+    private final List<Product> emitted = new ArrayList<>();
+    private final List<Integer> groupSizes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        workDir = Files.createTempDirectory("variants-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(workDir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void groupsContiguousRowsInSortedMode() throws IOException {
+        VariantGroupingService.GroupingSession session = open("sorted");
+        feed(session, row("P1", "S1", "Blue", 4.0), row("P1", "S2", "Red", 3.0), row("P2", "S3", "Blue", 5.0));
+        session.finish();
+
+        assertEquals(List.of("P1", "P2"), ids(emitted));
+        assertEquals(List.of(2, 1), groupSizes);
+        assertEquals(List.of("S1", "S2"), skus(emitted.get(0)));
+        // The parent rating is the mean of its SKUs
+        assertEquals(3.5, emitted.get(0).getCustomAttribute("rating"));
+        assertEquals(5.0, emitted.get(1).getCustomAttribute("rating"));
+        assertEquals(0, session.getOutOfOrderGroups());
+    }
+
+    @Test
+    void reportsNonContiguousRowsInSortedMode() throws IOException {
+        VariantGroupingService.GroupingSession session = open("sorted");
+        feed(session, row("P1", "S1", "Blue", 4.0), row("P2", "S2", "Red", 3.0), row("P1", "S3", "Red", 2.0),
+             row("P1", "S4", "Green", 2.0), row("P2", "S5", "Blue", 1.0));
+        session.finish();
+
+        // Each contiguous run becomes its own group, so a product is emitted once per run
+        assertEquals(List.of("P1", "P2", "P1", "P2"), ids(emitted));
+        assertEquals(List.of(1, 1, 2, 1), groupSizes);
+        assertEquals(List.of("S3", "S4"), skus(emitted.get(2)));
+        assertEquals(4, session.getGroups());
+        assertEquals(2, session.getOutOfOrderGroups());
+    }
+
+    @Test
+    void groupsNonContiguousRowsAcrossSpillPartitions() throws IOException {
+        VariantGroupingService service = service("spill");
+        ReflectionTestUtils.setField(service, "spillPartitions", 3);
+        VariantGroupingService.GroupingSession session = service.open(emitted::add);
+        session.setGroupListener(groupSizes::add);
+
+        // Twenty products with their SKU rows interleaved across the feed
+        Map<String, List<String>> expected = new LinkedHashMap<>();
+        for (int round = 0; round < 3; round++) {
+            for (int product = 0; product < 20; product++) {
+                String id = "P" + product;
+                String sku = id + "-S" + round;
+                expected.computeIfAbsent(id, key -> new ArrayList<>()).add(sku);
+                session.accept(row(id, sku, round == 1 ? "Red" : "Blue", 1.0 + round));
+            }
+        }
+        assertEquals(1, workDirEntries(), "spill directory");
+        session.finish();
+
+        assertFalse(service.emitsInFeedOrder());
+        assertEquals(20, emitted.size());
+        assertEquals(20, session.getGroups());
+        for (Product parent : emitted) {
+            assertEquals(expected.get(parent.getId()), skus(parent), parent.getId());
+            assertEquals(2.0, parent.getCustomAttribute("rating"));
+            assertEquals(new BigDecimal("9.99"), parent.getPrice());
+        }
+        assertTrue(groupSizes.stream().allMatch(size -> size == 3));
+        assertEquals(0, workDirEntries(), "partition files left behind");
+    }
+
+    @Test
+    void deletesSpillFilesOnAbort() throws IOException {
+        VariantGroupingService.GroupingSession session = open("spill");
+        feed(session, row("P1", "S1", "Blue", 4.0), row("P2", "S2", "Red", 3.0));
+        session.abort();
+
+        assertTrue(emitted.isEmpty());
+        assertEquals(0, workDirEntries());
+    }
+
+    @Test
+    void passesRowsThroughWhenGroupingIsOff() throws IOException {
+        VariantGroupingService.GroupingSession session = open("off");
+        feed(session, row("P1", "S1", "Blue", 4.0), row("P1", "S2", "Red", 3.0));
+        session.finish();
+
+        assertEquals(List.of("P1", "P1"), ids(emitted));
+        assertNull(emitted.get(0).getCustomAttribute(VariantGroupingService.VARIANTS_ATTRIBUTE));
+    }
+
+    private VariantGroupingService service(String mode) {
+        VariantGroupingService service = new VariantGroupingService();
+        ReflectionTestUtils.setField(service, "mode", mode);
+        ReflectionTestUtils.setField(service, "spillPartitions", 64);
+        ReflectionTestUtils.setField(service, "workDir", workDir.toString());
+        return service;
+    }
+
+    private VariantGroupingService.GroupingSession open(String mode) throws IOException {
+        VariantGroupingService.GroupingSession session = service(mode).open(emitted::add);
+        session.setGroupListener(groupSizes::add);
+        return session;
+    }
+
+    private static void feed(VariantGroupingService.GroupingSession session, Product... rows) {
+        for (Product row : rows) {
+            session.accept(row);
+        }
+    }
+
+    private static Product row(String id, String sku, String color, double rating) {
+        Product product = new Product(id, "Runner " + id, "Footwear", new BigDecimal("9.99"));
+        product.setSku(sku);
+        product.addCustomAttribute("color", color);
+        product.addCustomAttribute("rating", rating);
+        return product;
+    }
+
+    private long workDirEntries() throws IOException {
+        try (Stream<Path> files = Files.list(workDir)) {
+            return files.count();
+        }
+    }
+
+    private static List<String> ids(List<Product> products) {
+        List<String> ids = new ArrayList<>();
+        for (Product product : products) {
+            ids.add(product.getId());
+        }
+        return ids;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> skus(Product parent) {
+        List<String> skus = new ArrayList<>();
+        for (Map<String, Object> variant : (List<Map<String, Object>>) parent.getCustomAttribute(VariantGroupingService.VARIANTS_ATTRIBUTE)) {
+            skus.add((String) variant.get("sku_id"));
+        }
+        return skus;
+    }
+}